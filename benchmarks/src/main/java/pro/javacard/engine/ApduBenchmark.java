@@ -0,0 +1,162 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import com.licel.jcardsim.base.CardInterface;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.openjdk.jmh.annotations.*;
+import pro.javacard.engine.applets.ApduCasesApplet;
+
+import javax.smartcardio.CommandAPDU;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Round trip of a single APDU through an open session, for every ISO 7816-4 case in short and
+// extended form. engineTransmit is the same case 4 APDU through JavaCardEngine.transmitCommand(),
+// which opens a session for every command. Run with "-prof gc" for allocation rates per operation.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApduBenchmark {
+    static final AID AID = AIDUtil.create("010203040506070809");
+    static final AID OTHER = AIDUtil.create("01020304050607080A");
+    static final byte[] SELECT = AIDUtil.select(AID);
+
+    static final byte[] CASE1 = apdu(ApduCasesApplet.INS_CASE1, 0, 0);
+    static final byte[] CASE2 = apdu(ApduCasesApplet.INS_CASE2, 0, 256);
+    static final byte[] CASE3 = apdu(ApduCasesApplet.INS_CASE3, 255, 0);
+    static final byte[] CASE4 = apdu(ApduCasesApplet.INS_CASE4, 255, 256);
+    static final byte[] CASE2E = apdu(ApduCasesApplet.INS_CASE2, 0, ApduCasesApplet.MAX_DATA);
+    static final byte[] CASE3E = apdu(ApduCasesApplet.INS_CASE3, ApduCasesApplet.MAX_DATA, 0);
+    static final byte[] CASE4E = apdu(ApduCasesApplet.INS_CASE4, ApduCasesApplet.MAX_DATA, ApduCasesApplet.MAX_DATA);
+
+    // Applet installed with installApplet() or installExposedApplet()
+    @Param({"isolated", "exposed"})
+    String install;
+
+    JavaCardEngine engine;
+
+    // Only one session can be open at a time, so engineTransmit does not use this
+    @State(Scope.Thread)
+    public static class Session {
+        EngineSession session;
+
+        @Setup
+        public void setUp(ApduBenchmark benchmark) {
+            session = benchmark.engine.connect();
+            check(session.transmitCommand(SELECT));
+        }
+
+        @TearDown
+        public void tearDown() {
+            session.close();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        engine = JavaCardEngine.create();
+        install(AID);
+        check(((CardInterface) engine).transmitCommand(SELECT));
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    void install(AID aid) {
+        if (install.equals("exposed")) {
+            engine.installExposedApplet(aid, ApduCasesApplet.class);
+        } else {
+            engine.installApplet(aid, ApduCasesApplet.class);
+        }
+    }
+
+    // Extended form is used when data or Le do not fit a short APDU
+    static byte[] apdu(byte ins, int lc, int le) {
+        byte[] data = new byte[lc];
+        Arrays.fill(data, (byte) 0x5A);
+        if (le == 0) {
+            return (lc == 0 ? new CommandAPDU(0x80, ins, 0x00, 0x00) : new CommandAPDU(0x80, ins, 0x00, 0x00, data)).getBytes();
+        }
+        return (lc == 0 ? new CommandAPDU(0x80, ins, 0x00, 0x00, le) : new CommandAPDU(0x80, ins, 0x00, 0x00, data, le)).getBytes();
+    }
+
+    static byte[] check(byte[] response) {
+        if (response.length < 2 || response[response.length - 2] != (byte) 0x90 || response[response.length - 1] != 0x00) {
+            throw new IllegalStateException("APDU failed");
+        }
+        return response;
+    }
+
+    @Benchmark
+    public byte[] select(Session s) {
+        return check(s.session.transmitCommand(SELECT));
+    }
+
+    @Benchmark
+    public byte[] case1(Session s) {
+        return check(s.session.transmitCommand(CASE1));
+    }
+
+    @Benchmark
+    public byte[] case2(Session s) {
+        return check(s.session.transmitCommand(CASE2));
+    }
+
+    @Benchmark
+    public byte[] case3(Session s) {
+        return check(s.session.transmitCommand(CASE3));
+    }
+
+    @Benchmark
+    public byte[] case4(Session s) {
+        return check(s.session.transmitCommand(CASE4));
+    }
+
+    @Benchmark
+    public byte[] case2Extended(Session s) {
+        return check(s.session.transmitCommand(CASE2E));
+    }
+
+    @Benchmark
+    public byte[] case3Extended(Session s) {
+        return check(s.session.transmitCommand(CASE3E));
+    }
+
+    @Benchmark
+    public byte[] case4Extended(Session s) {
+        return check(s.session.transmitCommand(CASE4E));
+    }
+
+    @Benchmark
+    public byte[] engineTransmit() {
+        // The applet stays selected between sessions
+        return check(((CardInterface) engine).transmitCommand(CASE4));
+    }
+
+    // Install and delete of a second instance of the applet
+    @Benchmark
+    public void installDelete() {
+        install(OTHER);
+        engine.deleteApplet(OTHER);
+    }
+}
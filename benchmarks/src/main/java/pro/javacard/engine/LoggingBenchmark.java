@@ -0,0 +1,77 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pro.javacard.engine.applets.BenchmarkApplet;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of disabled logging on the dispatch path: selecting between applets, with a few others installed,
+// goes through applet lookup, deselect and select, which all have trace statements with AID arguments.
+// Logging is at warn level (see simplelogger.properties). Run with "-prof gc": formatted AIDs would show
+// up as hundreds of bytes per operation. A single disabled statement in isolation shows nothing, as the
+// JIT removes unused arguments once the logger call is inlined, which the dispatch path does not get.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(LoggingBenchmark.class);
+    static final int APPLETS = 8;
+
+    JavaCardEngine engine;
+    EngineSession session;
+    byte[][] selects;
+    int next;
+
+    @Setup
+    public void setUp() {
+        if (log.isTraceEnabled()) {
+            throw new IllegalStateException("Trace logging must be disabled");
+        }
+        engine = JavaCardEngine.create();
+        for (int i = 0; i < APPLETS; i++) {
+            engine.installApplet(aid(i), BenchmarkApplet.class);
+        }
+        // The last two, so that lookups go through the others
+        selects = new byte[][]{AIDUtil.select(aid(APPLETS - 2)), AIDUtil.select(aid(APPLETS - 1))};
+        session = engine.connect();
+    }
+
+    static AID aid(int n) {
+        return AIDUtil.create(String.format("0102030405060708%02X", n));
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+        engine.close();
+    }
+
+    // Deselects the previous applet
+    @Benchmark
+    public byte[] select() {
+        next ^= 1;
+        return ApduBenchmark.check(session.transmitCommand(selects[next]));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.openjdk.jmh.annotations.*;
+import pro.javacard.engine.applets.BenchmarkApplet;
+
+import java.util.concurrent.TimeUnit;
+
+// JavaCardEngine.create(), one installApplet() and the first SELECT. firstEngine runs once per fresh
+// JVM, so it includes class loading and one-time initialization; nextEngine is the same in a warm JVM.
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    static byte[] startup() {
+        // Not a static field, so that everything it takes to create it is measured
+        AID aid = AIDUtil.create("010203040506070809");
+        try (JavaCardEngine engine = JavaCardEngine.create()) {
+            engine.installApplet(aid, BenchmarkApplet.class);
+            try (EngineSession session = engine.connect()) {
+                byte[] response = session.transmitCommand(AIDUtil.select(aid));
+                if (response.length != 2 || response[0] != (byte) 0x90) {
+                    throw new IllegalStateException("SELECT failed");
+                }
+                return response;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public byte[] firstEngine() {
+        return startup();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public byte[] nextEngine() {
+        return startup();
+    }
+}
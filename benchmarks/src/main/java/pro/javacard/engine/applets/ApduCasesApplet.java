@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.applets;
+
+import javacard.framework.*;
+import javacardx.apdu.ExtendedLength;
+
+// Applet for the APDU round trip benchmarks, with one instruction per ISO 7816-4 case. Keeps the work
+// in the applet to a minimum, so that the engine dominates. Short and extended forms use the same
+// instructions, like ApduExtendedCasesApplet of the simulator tests.
+public class ApduCasesApplet extends Applet implements ExtendedLength {
+    public static final byte INS_CASE1 = 0x01; // no data
+    public static final byte INS_CASE2 = 0x02; // Le bytes of data out
+    public static final byte INS_CASE3 = 0x03; // Lc bytes of data in
+    public static final byte INS_CASE4 = 0x04; // Lc bytes in, echoed back up to Le
+
+    public static final short MAX_DATA = 4096;
+
+    private final byte[] data = new byte[MAX_DATA];
+
+    private ApduCasesApplet() {
+        Util.arrayFillNonAtomic(data, (short) 0, MAX_DATA, (byte) 0x5A);
+    }
+
+    public static void install(byte[] bArray, short bOffset, byte bLength) {
+        new ApduCasesApplet().register();
+    }
+
+    @Override
+    public void process(APDU apdu) {
+        if (selectingApplet()) {
+            return;
+        }
+        byte[] buffer = apdu.getBuffer();
+        switch (buffer[ISO7816.OFFSET_INS]) {
+            case INS_CASE1:
+                return;
+            case INS_CASE2:
+                send(apdu, MAX_DATA);
+                return;
+            case INS_CASE3:
+                receive(apdu);
+                return;
+            case INS_CASE4:
+                send(apdu, receive(apdu));
+                return;
+            default:
+                ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+        }
+    }
+
+    private short receive(APDU apdu) {
+        short len = apdu.setIncomingAndReceive();
+        if (apdu.getIncomingLength() > MAX_DATA) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+        }
+        short offset = apdu.getOffsetCdata();
+        short pos = 0;
+        while (len > 0) {
+            pos = Util.arrayCopyNonAtomic(apdu.getBuffer(), offset, data, pos, len);
+            len = apdu.receiveBytes(offset);
+        }
+        return pos;
+    }
+
+    private void send(APDU apdu, short max) {
+        short le = apdu.setOutgoing();
+        if (le > max) {
+            le = max;
+        }
+        apdu.setOutgoingLength(le);
+        apdu.sendBytesLong(data, (short) 0, le);
+    }
+}
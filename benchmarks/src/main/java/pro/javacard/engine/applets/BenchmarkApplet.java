@@ -0,0 +1,57 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.applets;
+
+import javacard.framework.*;
+import javacard.security.RandomData;
+
+// Applet for benchmarks. Allocates crypto objects in the constructor, like most real applets do.
+public class BenchmarkApplet extends Applet {
+    public static final byte INS_ECHO = 0x00;
+    public static final byte INS_RANDOM = 0x02;
+
+    private final RandomData random;
+
+    private BenchmarkApplet() {
+        random = RandomData.getInstance(RandomData.ALG_SECURE_RANDOM);
+    }
+
+    public static void install(byte[] bArray, short bOffset, byte bLength) {
+        new BenchmarkApplet().register();
+    }
+
+    @Override
+    public void process(APDU apdu) {
+        if (selectingApplet()) {
+            return;
+        }
+        byte[] buffer = apdu.getBuffer();
+        switch (buffer[ISO7816.OFFSET_INS]) {
+            case INS_ECHO:
+                short len = apdu.setIncomingAndReceive();
+                apdu.setOutgoingAndSend(ISO7816.OFFSET_CDATA, len);
+                return;
+            case INS_RANDOM:
+                short le = apdu.setOutgoing();
+                random.nextBytes(buffer, (short) 0, le);
+                apdu.setOutgoingLength(le);
+                apdu.sendBytes((short) 0, le);
+                return;
+            default:
+                ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+        }
+    }
+}
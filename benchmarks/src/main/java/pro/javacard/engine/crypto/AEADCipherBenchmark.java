@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.Key;
+import javacardx.crypto.AEADCipher;
+import javacardx.crypto.Cipher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// AEAD algorithms of CipherProxy.getInstance(), with an AES-128 key. A nonce can not be reused for
+// encryption, so every operation starts with init() with the next nonce.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AEADCipherBenchmark {
+    static final short TAG = 16;
+
+    @Param({"ALG_AES_GCM", "ALG_AES_CCM"})
+    String algorithm;
+
+    @Param({"16", "256", "4096"})
+    short size;
+
+    Simulator runtime;
+    byte id;
+    Key key;
+    AEADCipher cipher;
+    byte[] nonce = new byte[12];
+    int counter;
+    byte[] data;
+    byte[] out;
+    byte[] tag = new byte[TAG];
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        id = Crypto.constant(AEADCipher.class, algorithm);
+        key = Crypto.secretKey(algorithm);
+        cipher = (AEADCipher) Cipher.getInstance(id, false);
+        data = Crypto.data(size);
+        // BouncyCastle appends the tag
+        out = new byte[size + TAG];
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    void next() {
+        counter++;
+        nonce[8] = (byte) (counter >> 24);
+        nonce[9] = (byte) (counter >> 16);
+        nonce[10] = (byte) (counter >> 8);
+        nonce[11] = (byte) counter;
+        cipher.init(key, Cipher.MODE_ENCRYPT, nonce, (short) 0, (short) nonce.length, (short) 0, size, TAG);
+    }
+
+    @Benchmark
+    public Cipher getInstance() {
+        return Cipher.getInstance(id, false);
+    }
+
+    @Benchmark
+    public AEADCipher init() {
+        next();
+        return cipher;
+    }
+
+    @Benchmark
+    public short encrypt() {
+        next();
+        short len = cipher.doFinal(data, (short) 0, size, out, (short) 0);
+        cipher.retrieveTag(tag, (short) 0, TAG);
+        return len;
+    }
+}
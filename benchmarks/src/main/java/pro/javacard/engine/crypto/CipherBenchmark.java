@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.Key;
+import javacardx.crypto.Cipher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Symmetric algorithms of CipherProxy.getInstance(), encrypting with 2-key 3DES, AES-128 and SEED keys.
+// See AEADCipherBenchmark and RSACipherBenchmark for the rest.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherBenchmark {
+    @Param({"ALG_DES_CBC_NOPAD", "ALG_DES_CBC_ISO9797_M1", "ALG_DES_CBC_ISO9797_M2", "ALG_DES_CBC_PKCS5",
+            "ALG_DES_ECB_NOPAD", "ALG_DES_ECB_ISO9797_M1", "ALG_DES_ECB_ISO9797_M2", "ALG_DES_ECB_PKCS5",
+            "ALG_AES_BLOCK_128_CBC_NOPAD", "ALG_AES_BLOCK_128_ECB_NOPAD", "ALG_AES_CBC_ISO9797_M2", "ALG_AES_CTR",
+            "ALG_KOREAN_SEED_ECB_NOPAD", "ALG_KOREAN_SEED_CBC_NOPAD"})
+    String algorithm;
+
+    // Multiples of the block size, for the NOPAD algorithms
+    @Param({"16", "256", "4096"})
+    short size;
+
+    Simulator runtime;
+    byte id;
+    Key key;
+    Cipher cipher;
+    byte[] data;
+    byte[] out;
+    byte[] iv = new byte[16];
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        id = Crypto.constant(Cipher.class, algorithm);
+        key = Crypto.secretKey(algorithm);
+        cipher = Cipher.getInstance(id, false);
+        init();
+        data = Crypto.data(size);
+        // Room for padding
+        out = new byte[size + 16];
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    @Benchmark
+    public Cipher getInstance() {
+        return Cipher.getInstance(id, false);
+    }
+
+    @Benchmark
+    public Cipher init() {
+        // CTR has no default counter block
+        if (id == Cipher.ALG_AES_CTR) {
+            cipher.init(key, Cipher.MODE_ENCRYPT, iv, (short) 0, (short) iv.length);
+        } else {
+            cipher.init(key, Cipher.MODE_ENCRYPT);
+        }
+        return cipher;
+    }
+
+    @Benchmark
+    public short doFinal() {
+        return cipher.doFinal(data, (short) 0, size, out, (short) 0);
+    }
+
+    // The same data in update(), with an empty doFinal()
+    @Benchmark
+    public short update() {
+        short len = cipher.update(data, (short) 0, size, out, (short) 0);
+        return (short) (len + cipher.doFinal(data, (short) 0, (short) 0, out, len));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.AESKey;
+import javacard.security.DESKey;
+import javacard.security.HMACKey;
+import javacard.security.Key;
+import javacard.security.KeyBuilder;
+import javacard.security.KeyPair;
+import javacard.security.KoreanSEEDKey;
+
+import java.util.Random;
+
+// Helpers of the crypto benchmarks. Algorithms are given as names of the ALG_ constants of the
+// Java Card API class, so that results can be tracked per algorithm.
+final class Crypto {
+    private Crypto() {
+    }
+
+    // Crypto objects use transient memory of the current engine
+    static Simulator runtime() {
+        Simulator simulator = new Simulator();
+        simulator._makeCurrent();
+        return simulator;
+    }
+
+    static byte constant(Class<?> api, String name) {
+        try {
+            return api.getField(name).getByte(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("No such algorithm: " + api.getSimpleName() + "." + name, e);
+        }
+    }
+
+    // Same data for every run
+    static byte[] data(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    // Secret key for a symmetric algorithm, by the name of the algorithm
+    static Key secretKey(String algorithm) {
+        if (algorithm.contains("HMAC")) {
+            HMACKey key = (HMACKey) KeyBuilder.buildKey(KeyBuilder.TYPE_HMAC, KeyBuilder.LENGTH_HMAC_SHA_256_BLOCK_64, false);
+            key.setKey(data(32), (short) 0, (short) 32);
+            return key;
+        } else if (algorithm.contains("AES")) {
+            AESKey key = (AESKey) KeyBuilder.buildKey(KeyBuilder.TYPE_AES, KeyBuilder.LENGTH_AES_128, false);
+            key.setKey(data(16), (short) 0);
+            return key;
+        } else if (algorithm.contains("DES")) {
+            DESKey key = (DESKey) KeyBuilder.buildKey(KeyBuilder.TYPE_DES, KeyBuilder.LENGTH_DES3_2KEY, false);
+            key.setKey(data(16), (short) 0);
+            return key;
+        } else if (algorithm.contains("SEED")) {
+            KoreanSEEDKey key = (KoreanSEEDKey) KeyBuilder.buildKey(KeyBuilder.TYPE_KOREAN_SEED, KeyBuilder.LENGTH_KOREAN_SEED_128, false);
+            key.setKey(data(16), (short) 0);
+            return key;
+        }
+        throw new IllegalArgumentException("No secret key for " + algorithm);
+    }
+
+    // Generated key pair for an asymmetric algorithm, by the name of the algorithm
+    static KeyPair keyPair(String algorithm) {
+        final KeyPair pair;
+        if (algorithm.contains("RSA")) {
+            pair = new KeyPair(KeyPair.ALG_RSA_CRT, KeyBuilder.LENGTH_RSA_2048);
+        } else if (algorithm.contains("EC")) {
+            pair = new KeyPair(KeyPair.ALG_EC_FP, KeyBuilder.LENGTH_EC_FP_256);
+        } else if (algorithm.contains("DSA")) {
+            pair = new KeyPair(KeyPair.ALG_DSA, KeyBuilder.LENGTH_DSA_1024);
+        } else if (algorithm.contains("DH")) {
+            pair = new KeyPair(KeyPair.ALG_DH, KeyBuilder.LENGTH_DH_2048);
+        } else {
+            throw new IllegalArgumentException("No key pair for " + algorithm);
+        }
+        pair.genKeyPair();
+        return pair;
+    }
+}
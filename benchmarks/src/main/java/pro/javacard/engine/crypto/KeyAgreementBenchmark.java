@@ -0,0 +1,82 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.DHPublicKey;
+import javacard.security.ECPublicKey;
+import javacard.security.KeyAgreement;
+import javacard.security.KeyPair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Every algorithm of KeyAgreementProxy.getInstance(), with P-256 and 2048 bit DH keys
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyAgreementBenchmark {
+    @Param({"ALG_EC_SVDP_DH", "ALG_EC_SVDP_DH_PLAIN", "ALG_EC_SVDP_DHC", "ALG_EC_SVDP_DHC_PLAIN",
+            "ALG_EC_SVDP_DH_PLAIN_XY", "ALG_DH_PLAIN", "ALG_EC_PACE_GM"})
+    String algorithm;
+
+    Simulator runtime;
+    byte id;
+    KeyPair ours;
+    KeyAgreement agreement;
+    byte[] theirs = new byte[256];
+    short length;
+    byte[] out = new byte[256];
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        id = Crypto.constant(KeyAgreement.class, algorithm);
+        ours = Crypto.keyPair(algorithm);
+        KeyPair other = Crypto.keyPair(algorithm);
+        if (other.getPublic() instanceof ECPublicKey) {
+            length = ((ECPublicKey) other.getPublic()).getW(theirs, (short) 0);
+        } else {
+            length = ((DHPublicKey) other.getPublic()).getY(theirs, (short) 0);
+        }
+        agreement = KeyAgreement.getInstance(id, false);
+        agreement.init(ours.getPrivate());
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    @Benchmark
+    public KeyAgreement getInstance() {
+        return KeyAgreement.getInstance(id, false);
+    }
+
+    @Benchmark
+    public KeyAgreement init() {
+        agreement.init(ours.getPrivate());
+        return agreement;
+    }
+
+    @Benchmark
+    public short generateSecret() {
+        return agreement.generateSecret(theirs, (short) 0, length, out, (short) 0);
+    }
+}
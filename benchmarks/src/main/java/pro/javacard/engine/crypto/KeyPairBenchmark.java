@@ -0,0 +1,56 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.KeyPair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Key generation for every algorithm of KeyPairProxy, with a common key length
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyPairBenchmark {
+    // Algorithm and key length
+    @Param({"ALG_RSA:2048", "ALG_RSA_CRT:2048", "ALG_DSA:1024", "ALG_EC_FP:256", "ALG_EC_F2M:163", "ALG_DH:2048"})
+    String algorithm;
+
+    Simulator runtime;
+    KeyPair pair;
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        String[] spec = algorithm.split(":");
+        pair = new KeyPair(Crypto.constant(KeyPair.class, spec[0]), Short.parseShort(spec[1]));
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    @Benchmark
+    public KeyPair genKeyPair() {
+        pair.genKeyPair();
+        return pair;
+    }
+}
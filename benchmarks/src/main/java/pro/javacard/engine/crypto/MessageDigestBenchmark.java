@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.MessageDigest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Every algorithm of MessageDigestProxy.getInstance() (see Crypto)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDigestBenchmark {
+    @Param({"ALG_SHA", "ALG_MD5", "ALG_RIPEMD160", "ALG_SHA_224", "ALG_SHA_256", "ALG_SHA_384", "ALG_SHA_512",
+            "ALG_SHA3_224", "ALG_SHA3_256", "ALG_SHA3_384", "ALG_SHA3_512"})
+    String algorithm;
+
+    @Param({"16", "256", "4096"})
+    short size;
+
+    Simulator runtime;
+    byte id;
+    MessageDigest digest;
+    byte[] data;
+    byte[] out = new byte[256];
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        id = Crypto.constant(MessageDigest.class, algorithm);
+        digest = MessageDigest.getInstance(id, false);
+        data = Crypto.data(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    @Benchmark
+    public MessageDigest getInstance() {
+        return MessageDigest.getInstance(id, false);
+    }
+
+    @Benchmark
+    public short doFinal() {
+        return digest.doFinal(data, (short) 0, size, out, (short) 0);
+    }
+
+    // The same data in update(), with an empty doFinal()
+    @Benchmark
+    public short update() {
+        digest.update(data, (short) 0, size);
+        return digest.doFinal(data, (short) 0, (short) 0, out, (short) 0);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.KeyPair;
+import javacardx.crypto.Cipher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// RSA algorithms of CipherProxy.getInstance(), with a 2048 bit key. Encrypts one block with the public
+// key and decrypts with the private key. ALG_RSA_ISO14888 and ALG_RSA_ISO9796 are rejected by
+// AsymmetricCipherImpl.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RSACipherBenchmark {
+    @Param({"ALG_RSA_PKCS1", "ALG_RSA_NOPAD", "ALG_RSA_PKCS1_OAEP"})
+    String algorithm;
+
+    Simulator runtime;
+    byte id;
+    KeyPair pair;
+    Cipher encrypt;
+    Cipher decrypt;
+    byte[] data;
+    byte[] encrypted = new byte[256];
+    byte[] out = new byte[256];
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        id = Crypto.constant(Cipher.class, algorithm);
+        pair = Crypto.keyPair(algorithm);
+        encrypt = Cipher.getInstance(id, false);
+        encrypt.init(pair.getPublic(), Cipher.MODE_ENCRYPT);
+        decrypt = Cipher.getInstance(id, false);
+        decrypt.init(pair.getPrivate(), Cipher.MODE_DECRYPT);
+        // A full block, smaller than the modulus, without padding
+        data = algorithm.equals("ALG_RSA_NOPAD") ? Crypto.data(256) : Crypto.data(32);
+        data[0] = 0x00;
+        encrypt.doFinal(data, (short) 0, (short) data.length, encrypted, (short) 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    @Benchmark
+    public Cipher getInstance() {
+        return Cipher.getInstance(id, false);
+    }
+
+    @Benchmark
+    public Cipher init() {
+        encrypt.init(pair.getPublic(), Cipher.MODE_ENCRYPT);
+        return encrypt;
+    }
+
+    @Benchmark
+    public short encrypt() {
+        return encrypt.doFinal(data, (short) 0, (short) data.length, out, (short) 0);
+    }
+
+    @Benchmark
+    public short decrypt() {
+        return decrypt.doFinal(encrypted, (short) 0, (short) encrypted.length, out, (short) 0);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.crypto;
+
+import com.licel.jcardsim.base.Simulator;
+import javacard.security.Key;
+import javacard.security.Signature;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Algorithms of SignatureProxy.getInstance(), with 2048 bit RSA, P-256 and 1024 bit DSA keys. Not included are
+// ALG_RSA_SHA_RFC2409, ALG_RSA_MD5_RFC2409 and ALG_RSA_RIPEMD160_ISO9796_MR, which AsymmetricSignatureImpl rejects.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+    @Param({"ALG_RSA_SHA_ISO9796", "ALG_RSA_SHA_PKCS1", "ALG_RSA_SHA_224_PKCS1", "ALG_RSA_SHA_256_PKCS1",
+            "ALG_RSA_SHA_384_PKCS1", "ALG_RSA_SHA_512_PKCS1", "ALG_RSA_SHA_PKCS1_PSS", "ALG_RSA_SHA_224_PKCS1_PSS",
+            "ALG_RSA_SHA_256_PKCS1_PSS", "ALG_RSA_SHA_384_PKCS1_PSS", "ALG_RSA_SHA_512_PKCS1_PSS", "ALG_RSA_MD5_PKCS1",
+            "ALG_RSA_RIPEMD160_ISO9796", "ALG_RSA_RIPEMD160_PKCS1", "ALG_ECDSA_SHA", "ALG_ECDSA_SHA_224",
+            "ALG_ECDSA_SHA_256", "ALG_ECDSA_SHA_384", "ALG_ECDSA_SHA_512", "ALG_RSA_SHA_ISO9796_MR", "ALG_DSA_SHA",
+            "ALG_RSA_MD5_PKCS1_PSS", "ALG_RSA_RIPEMD160_PKCS1_PSS",
+            "ALG_DES_MAC4_NOPAD", "ALG_DES_MAC8_NOPAD", "ALG_DES_MAC4_ISO9797_M1", "ALG_DES_MAC8_ISO9797_M1",
+            "ALG_DES_MAC4_ISO9797_M2", "ALG_DES_MAC8_ISO9797_M2", "ALG_DES_MAC8_ISO9797_1_M2_ALG3",
+            "ALG_DES_MAC4_PKCS5", "ALG_DES_MAC8_PKCS5", "ALG_AES_MAC_128_NOPAD", "ALG_HMAC_SHA1", "ALG_HMAC_SHA_256",
+            "ALG_HMAC_SHA_384", "ALG_HMAC_SHA_512", "ALG_HMAC_MD5", "ALG_HMAC_RIPEMD160", "ALG_AES_CMAC_128"})
+    String algorithm;
+
+    // Multiples of the block size, for the NOPAD algorithms
+    @Param({"16", "256", "4096"})
+    short size;
+
+    Simulator runtime;
+    byte id;
+    Key key;
+    Signature signature;
+    byte[] data;
+    byte[] out = new byte[512];
+
+    @Setup
+    public void setUp() {
+        runtime = Crypto.runtime();
+        id = Crypto.constant(Signature.class, algorithm);
+        boolean symmetric = algorithm.contains("MAC");
+        key = symmetric ? Crypto.secretKey(algorithm) : Crypto.keyPair(algorithm).getPrivate();
+        signature = Signature.getInstance(id, false);
+        signature.init(key, Signature.MODE_SIGN);
+        data = Crypto.data(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        runtime._releaseCurrent();
+    }
+
+    @Benchmark
+    public Signature getInstance() {
+        return Signature.getInstance(id, false);
+    }
+
+    @Benchmark
+    public Signature init() {
+        signature.init(key, Signature.MODE_SIGN);
+        return signature;
+    }
+
+    @Benchmark
+    public short sign() {
+        return signature.sign(data, (short) 0, size, out, (short) 0);
+    }
+
+    // The same data in update(), with an empty sign()
+    @Benchmark
+    public short update() {
+        signature.update(data, (short) 0, size);
+        return signature.sign(data, (short) 0, (short) 0, out, (short) 0);
+    }
+}
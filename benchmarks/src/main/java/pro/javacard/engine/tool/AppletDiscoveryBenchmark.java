@@ -0,0 +1,117 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.tool;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Applet discovery over a synthetic CAP file with many packages. Every package has a chain of
+// abstract base classes on top of javacard.framework.Applet, a few applets and plain helper classes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppletDiscoveryBenchmark {
+    static final int CHAIN = 5;
+    static final int APPLETS = 4;
+
+    @Param({"50", "500"})
+    int packages;
+
+    @Param({"20"})
+    int helpers;
+
+    Path cap;
+
+    @Setup
+    public void setUp() throws IOException {
+        cap = Files.createTempFile("discovery", ".cap");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(cap))) {
+            for (int p = 0; p < packages; p++) {
+                String pkg = "bench/p" + p + "/";
+                String parent = "javacard/framework/Applet";
+                for (int i = 0; i < CHAIN; i++) {
+                    String name = pkg + "Base" + i;
+                    add(zip, name, generate(name, parent, Opcodes.ACC_ABSTRACT, false));
+                    parent = name;
+                }
+                for (int i = 0; i < APPLETS; i++) {
+                    String name = pkg + "App" + i;
+                    add(zip, name, generate(name, parent, 0, true));
+                }
+                for (int i = 0; i < helpers; i++) {
+                    String name = pkg + "Helper" + i;
+                    add(zip, name, generate(name, "java/lang/Object", 0, false));
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(cap);
+    }
+
+    @Benchmark
+    public List<String> discover() throws IOException {
+        try (AppletClassLoader loader = new AppletClassLoader()) {
+            List<String> applets = loader.addApplet(cap);
+            if (applets.size() != packages * APPLETS) {
+                throw new IllegalStateException("Found " + applets.size() + " applets");
+            }
+            return applets;
+        }
+    }
+
+    static void add(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+        zip.putNextEntry(new ZipEntry("APPLET-INF/classes/" + name + ".class"));
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    static byte[] generate(String name, String superName, int access, boolean install) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | access, name, null, superName, null);
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+        if (install) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "install", "([BSB)V", null, null);
+            mv.visitCode();
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
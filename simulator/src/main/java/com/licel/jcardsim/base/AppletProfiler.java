@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import pro.javacard.engine.AppletProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Counters of the probes that ProfilingTransformer inserts into applet classes. Probe ids are process-wide,
+// counters are per engine: one array per APDU type, incremented by the thread that holds the session
+// lock of the engine. hit() finds the engine via the thread-local current engine.
+public final class AppletProfiler {
+    static final int OUTSIDE = -1;
+
+    // All probes of the process, by id. Probes with the same kind and name share the id.
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static final List<AppletProfile.Kind> kinds = new ArrayList<>();
+    private static final List<String> names = new ArrayList<>();
+
+    // APDU type (CLA << 8 | INS) -> counts by probe id
+    private final Map<Integer, long[]> rows = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> commands = new ConcurrentHashMap<>();
+    private int type = OUTSIDE;
+    private long[] row;
+
+    AppletProfiler() {
+        row = new long[probes()];
+        rows.put(OUTSIDE, row);
+    }
+
+    static synchronized int probe(AppletProfile.Kind kind, String name) {
+        return ids.computeIfAbsent(kind + " " + name, k -> {
+            kinds.add(kind);
+            names.add(name);
+            return names.size() - 1;
+        });
+    }
+
+    static synchronized int probes() {
+        return names.size();
+    }
+
+    // Called from profiled applet code
+    public static void hit(int id) {
+        Simulator sim = Simulator.currentOrNull();
+        AppletProfiler profiler = sim == null ? null : sim.profiler;
+        if (profiler != null) {
+            profiler.count(id);
+        }
+    }
+
+    private void count(int id) {
+        long[] r = row;
+        if (id >= r.length) {
+            r = Arrays.copyOf(r, Math.max(id + 1, probes()));
+            rows.put(type, r);
+            row = r;
+        }
+        r[id]++;
+    }
+
+    // Following probes are counted for the command, until done()
+    void apdu(byte[] command) {
+        type = command.length < 2 ? OUTSIDE : ((command[0] & 0xFF) << 8) | (command[1] & 0xFF);
+        row = rows.computeIfAbsent(type, k -> new long[probes()]);
+        commands.merge(type, 1L, Long::sum);
+    }
+
+    void done() {
+        type = OUTSIDE;
+        row = rows.get(OUTSIDE);
+    }
+
+    void reset() {
+        for (long[] r : rows.values()) {
+            Arrays.fill(r, 0);
+        }
+        commands.clear();
+    }
+
+    // Counts are not exact if taken while a command is processed
+    AppletProfile snapshot() {
+        final List<AppletProfile.Kind> k;
+        final List<String> n;
+        synchronized (AppletProfiler.class) {
+            k = new ArrayList<>(kinds);
+            n = new ArrayList<>(names);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, List<AppletProfile.Entry>> entries = new HashMap<>();
+        for (Map.Entry<Integer, long[]> e : rows.entrySet()) {
+            String name = name(e.getKey());
+            long[] r = e.getValue();
+            List<AppletProfile.Entry> list = new ArrayList<>();
+            for (int i = 0; i < r.length && i < n.size(); i++) {
+                if (r[i] > 0) {
+                    list.add(new AppletProfile.Entry(k.get(i), n.get(i), r[i]));
+                }
+            }
+            if (!list.isEmpty()) {
+                list.sort(Comparator.comparingLong(AppletProfile.Entry::getCount).reversed());
+                entries.put(name, list);
+            }
+        }
+        commands.forEach((t, c) -> counts.put(name(t), c));
+        return new AppletProfile(counts, entries);
+    }
+
+    static String name(int type) {
+        return type == OUTSIDE ? AppletProfile.OUTSIDE : String.format("%04X", type);
+    }
+}
@@ -27,11 +27,16 @@ public class ApplicationInstance {
     private final AID aid;
     private final Object instance;
     private final boolean exposed;
+    // AID in hex, formatted once for logs and events
+    private final String id;
+    // Proxy for isolated instances, created on first use
+    private Applet proxy;
 
     public ApplicationInstance(AID aid, Object instance, boolean exposed) {
         this.aid = aid;
         this.instance = instance;
         this.exposed = exposed;
+        this.id = AIDUtil.toString(aid);
     }
 
     public Applet getApplet() {
@@ -40,11 +45,26 @@ public class ApplicationInstance {
         }
         // If the class was instantiated in the isolator classloader
         // class identity would differ. So this proxy helps with "instanceof" etc.
-        try {
-            return ReflectiveClassProxy.proxy(instance, Applet.class);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        if (proxy == null) {
+            try {
+                proxy = ReflectiveClassProxy.proxy(instance, Applet.class);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
+        return proxy;
+    }
+
+    boolean isExposed() {
+        return exposed;
+    }
+
+    Class<?> getInstanceClass() {
+        return instance.getClass();
+    }
+
+    Object getInstance() {
+        return instance;
     }
 
     // FIXME: this is part of the registry as the key.
@@ -52,8 +72,12 @@ public class ApplicationInstance {
         return aid;
     }
 
+    String getID() {
+        return id;
+    }
+
     @Override
     public String toString() {
-        return String.format("ApplicationInstance (%s)", AIDUtil.toString(aid));
+        return "ApplicationInstance (" + id + ")";
     }
 }
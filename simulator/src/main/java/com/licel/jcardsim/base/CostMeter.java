@@ -0,0 +1,209 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import javacard.framework.JCSystem;
+import javacard.security.KeyAgreement;
+import javacard.security.KeyPair;
+import javacard.security.MessageDigest;
+import javacard.security.RandomData;
+import javacard.security.Signature;
+import javacardx.crypto.AEADCipher;
+import javacardx.crypto.Cipher;
+import pro.javacard.engine.CostModel;
+import pro.javacard.engine.CostReport;
+import pro.javacard.engine.LatencySnapshot;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Estimates the on-card duration of commands with a cost model (see Simulator.withCostModel()). Costs are
+// charged by instrumented applet code (see InstructionCounter), by the API implementation for bytes
+// handled and crypto operations while applet code runs, and by sessions for APDU transport. Like AppletProfiler, the static
+// entry points find the engine via the thread-local current engine, and charges are made by the thread
+// that holds the session lock.
+public final class CostMeter {
+    static final String BYTECODE = "bytecode";
+    static final String STORE = "store";
+    static final String EEPROM = "eeprom.write";
+    static final String APDU = "apdu";
+
+    // Classes with the ALG_ constants, by the class part of crypto operation names
+    private static final Map<String, Class<?>> CONSTANTS = Map.of("Cipher", Cipher.class, "AEADCipher", AEADCipher.class,
+            "Signature", Signature.class, "SignatureMessageRecovery", Signature.class, "MessageDigest", MessageDigest.class,
+            "KeyAgreement", KeyAgreement.class, "KeyPair", KeyPair.class, "RandomData", RandomData.class);
+    private static final Map<String, String[]> algorithms = new ConcurrentHashMap<>();
+
+    private final CostModel model;
+    // Hot path costs, in nanoseconds
+    private final double bytecode;
+    private final double store;
+
+    // Set by the engine while applet code runs
+    boolean inApplet;
+    // Estimate of the current command
+    private double current;
+    private long instructions;
+    private long stores;
+    // By APDU type (CLA << 8 | INS)
+    private final Map<Integer, LatencyHistogram> estimates = new ConcurrentHashMap<>();
+    // Calls, bytes and nanoseconds by key
+    private final Map<String, double[]> totals = new ConcurrentHashMap<>();
+
+    CostMeter(CostModel model) {
+        this.model = model;
+        this.bytecode = model.cost(BYTECODE);
+        this.store = model.cost(STORE);
+    }
+
+    CostModel getModel() {
+        return model;
+    }
+
+    private static CostMeter current() {
+        Simulator sim = Simulator.currentOrNull();
+        return sim == null ? null : sim.costs;
+    }
+
+    // Called from instrumented applet code at the start of every basic block
+    public static void block(int instructions, int stores) {
+        CostMeter meter = current();
+        if (meter != null) {
+            meter.instructions += instructions;
+            meter.stores += stores;
+            meter.current += instructions * meter.bytecode + stores * meter.store;
+        }
+    }
+
+    // Called from instrumented applet code before calls into the API, like "Util.arrayCopy"
+    public static void call(String method) {
+        CostMeter meter = current();
+        if (meter != null) {
+            meter.charge(method, 1, 0, meter.model.cost(method));
+        }
+    }
+
+    // Bytes handled by an API method
+    public static void bytes(String method, int length) {
+        CostMeter meter = current();
+        if (meter != null && meter.inApplet && length > 0) {
+            meter.charge(method, 0, length, meter.model.costPerByte(method) * length);
+        }
+    }
+
+    // Bytes written into an array, charged if the array is persistent
+    public static void write(Object array, int length) {
+        Simulator sim = Simulator.currentOrNull();
+        CostMeter meter = sim == null ? null : sim.costs;
+        if (meter != null && meter.inApplet && length > 0 && array != sim.getCurrentAPDU().getBuffer()
+                && sim.getTransientMemory().isTransient(array) == JCSystem.NOT_A_TRANSIENT_OBJECT) {
+            meter.charge(EEPROM, 0, length, meter.model.costPerByte(EEPROM) * length);
+        }
+    }
+
+    // Crypto operation, like "Signature.sign", with the key length in bits if known (0 otherwise)
+    public static void crypto(String operation, byte algorithm, int keyBits, int length) {
+        CostMeter meter = current();
+        if (meter != null && meter.inApplet) {
+            String key = "crypto." + operation + "." + algorithm(operation, algorithm) + (keyBits > 0 ? "." + keyBits : "");
+            meter.charge(key, 1, length, meter.model.cost(key) + meter.model.costPerByte(key) * Math.max(length, 0));
+        }
+    }
+
+    private void charge(String key, int calls, int bytes, double nanos) {
+        current += nanos;
+        double[] total = totals.computeIfAbsent(key, k -> new double[3]);
+        total[0] += calls;
+        total[1] += bytes;
+        total[2] += nanos;
+    }
+
+    // Name of the ALG_ constant, or the number if there is none
+    static String algorithm(String operation, byte algorithm) {
+        int dot = operation.indexOf('.');
+        String[] names = algorithms.computeIfAbsent(dot < 0 ? operation : operation.substring(0, dot), CostMeter::constants);
+        String name = names[algorithm & 0xFF];
+        return name == null ? Integer.toString(algorithm & 0xFF) : name;
+    }
+
+    private static String[] constants(String type) {
+        String[] names = new String[256];
+        Class<?> klass = CONSTANTS.get(type);
+        if (klass != null) {
+            // Sorted, so that aliases resolve the same way every time
+            Field[] fields = klass.getFields();
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            for (Field f : fields) {
+                if (f.getName().startsWith("ALG_") && f.getType() == byte.class && Modifier.isStatic(f.getModifiers())) {
+                    try {
+                        int value = f.getByte(null) & 0xFF;
+                        if (names[value] == null) {
+                            names[value] = f.getName();
+                        }
+                    } catch (IllegalAccessException e) {
+                        // Public constants
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    // Following charges are for the command
+    void apdu() {
+        current = 0;
+    }
+
+    // Adds the transport of the command and response, records and returns the estimate
+    long done(byte[] command, byte[] response) {
+        int length = command.length + response.length;
+        charge(APDU, 1, length, model.cost(APDU) + model.costPerByte(APDU) * length);
+        long nanos = Math.round(current);
+        int type = command.length < 2 ? AppletProfiler.OUTSIDE : ((command[0] & 0xFF) << 8) | (command[1] & 0xFF);
+        estimates.computeIfAbsent(type, k -> new LatencyHistogram()).record(nanos);
+        return nanos;
+    }
+
+    void reset() {
+        estimates.clear();
+        totals.clear();
+        instructions = 0;
+        stores = 0;
+    }
+
+    // Totals are not exact if taken while a command is processed
+    CostReport snapshot() {
+        Map<String, LatencySnapshot> apdus = new HashMap<>();
+        estimates.forEach((type, histogram) -> apdus.put(AppletProfiler.name(type), histogram.snapshot()));
+        List<CostReport.Entry> entries = new ArrayList<>();
+        if (instructions > 0) {
+            entries.add(new CostReport.Entry(BYTECODE, instructions, 0, Math.round(instructions * bytecode)));
+        }
+        if (stores > 0 && store > 0) {
+            entries.add(new CostReport.Entry(STORE, stores, 0, Math.round(stores * store)));
+        }
+        totals.forEach((key, t) -> entries.add(new CostReport.Entry(key, (long) t[0], (long) t[1], Math.round(t[2]))));
+        entries.sort(Comparator.comparingLong(CostReport.Entry::getNanos).reversed());
+        return new CostReport(model.getName(), apdus, entries);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import pro.javacard.engine.AppletCoverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Probe arrays of classes instrumented by CoverageTransformer. The arrays are kept by the class loader of
+// the classes, so coverage is per engine. Covered classes fetch their array once, in the static initializer.
+public final class CoverageProbes {
+    private static final StackWalker walker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private CoverageProbes() {
+    }
+
+    // Probes and lines of a covered class, filled at transformation time
+    static final class ClassInfo {
+        private final String name;
+        private final String source;
+        // Lines by probe
+        private final List<TreeSet<Integer>> lines = new ArrayList<>();
+        // Method -> {first line, entry probe}
+        private final Map<String, int[]> methods = new LinkedHashMap<>();
+        private boolean[] probes;
+
+        ClassInfo(String name, String source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int probe() {
+            lines.add(new TreeSet<>());
+            return lines.size() - 1;
+        }
+
+        void line(int probe, int line) {
+            lines.get(probe).add(line);
+        }
+
+        void method(String method, int line, int probe) {
+            methods.put(method, new int[]{line, probe});
+        }
+
+        void done() {
+            probes = new boolean[lines.size()];
+        }
+
+        int size() {
+            return lines.size();
+        }
+
+        void reset() {
+            Arrays.fill(probes, false);
+        }
+
+        AppletCoverage.ClassCoverage snapshot() {
+            boolean[] hits = probes.clone();
+            Map<Integer, Boolean> covered = new TreeMap<>();
+            for (int i = 0; i < hits.length; i++) {
+                for (int line : lines.get(i)) {
+                    covered.merge(line, hits[i], Boolean::logicalOr);
+                }
+            }
+            Map<String, Integer> first = new LinkedHashMap<>();
+            Map<String, Boolean> entered = new LinkedHashMap<>();
+            methods.forEach((m, v) -> {
+                first.put(m, v[0]);
+                entered.put(m, hits[v[1]]);
+            });
+            int count = 0;
+            for (boolean hit : hits) {
+                count += hit ? 1 : 0;
+            }
+            return new AppletCoverage.ClassCoverage(name, source, covered, first, entered, hits.length, count);
+        }
+    }
+
+    // Called from the static initializer of covered classes
+    public static boolean[] probes(int size) {
+        Class<?> caller = walker.getCallerClass();
+        if (caller.getClassLoader() instanceof IsolatingClassLoader) {
+            ClassInfo info = ((IsolatingClassLoader) caller.getClassLoader()).coverage().get(caller.getName());
+            if (info != null && info.size() == size) {
+                return info.probes;
+            }
+        }
+        // Not registered, counted nowhere
+        return new boolean[size];
+    }
+
+    static AppletCoverage snapshot(Collection<ClassInfo> classes) {
+        List<AppletCoverage.ClassCoverage> result = new ArrayList<>();
+        for (ClassInfo info : classes) {
+            result.add(info.snapshot());
+        }
+        return new AppletCoverage(result);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Inserts coverage probes into applet classes (see Simulator.covered()): every basic block starts with
+// setting its element of a boolean array in a synthetic static field of the class. The array is taken
+// from CoverageProbes in the static initializer, so a probe is just a field load and an array store.
+// The lines of the blocks and the methods of the class are registered at transformation time.
+final class CoverageTransformer extends ClassVisitor {
+    static final String FIELD = "$jcardengine$coverage";
+    static final String PROBES = CoverageProbes.class.getName().replace('.', '/');
+
+    private final Map<String, CoverageProbes.ClassInfo> registry;
+    private String owner;
+    private String source;
+    private boolean skip;
+    // Methods are instrumented at the end, when the number of probes is known
+    private final List<MethodNode> methods = new ArrayList<>();
+    private final List<MethodVisitor> targets = new ArrayList<>();
+
+    CoverageTransformer(ClassVisitor cv, Map<String, CoverageProbes.ClassInfo> registry) {
+        super(Opcodes.ASM9, cv);
+        this.registry = registry;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        owner = name;
+        // Fields of interfaces can not be private
+        skip = (access & Opcodes.ACC_INTERFACE) != 0;
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public void visitSource(String source, String debug) {
+        this.source = source;
+        super.visitSource(source, debug);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+        if (skip || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_SYNTHETIC)) != 0) {
+            return next;
+        }
+        MethodNode method = new MethodNode(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        methods.add(method);
+        targets.add(next);
+        return method;
+    }
+
+    @Override
+    public void visitEnd() {
+        if (methods.isEmpty()) {
+            super.visitEnd();
+            return;
+        }
+        String pkg = owner.lastIndexOf('/') < 0 ? "" : owner.substring(0, owner.lastIndexOf('/') + 1);
+        String file = source != null ? pkg + source : owner.replaceFirst("\\$.*", "") + ".java";
+        CoverageProbes.ClassInfo info = new CoverageProbes.ClassInfo(owner.replace('/', '.'), file);
+        for (MethodNode method : methods) {
+            instrument(method, info);
+        }
+        info.done();
+
+        MethodNode clinit = methods.stream().filter(m -> m.name.equals("<clinit>")).findFirst().orElse(null);
+        InsnList init = new InsnList();
+        init.add(new LdcInsnNode(info.size()));
+        init.add(new MethodInsnNode(Opcodes.INVOKESTATIC, PROBES, "probes", Type.getMethodDescriptor(Type.getType(boolean[].class), Type.INT_TYPE), false));
+        init.add(new FieldInsnNode(Opcodes.PUTSTATIC, owner, FIELD, "[Z"));
+        if (clinit != null) {
+            clinit.instructions.insert(init);
+        } else {
+            MethodVisitor mv = super.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+            init.add(new InsnNode(Opcodes.RETURN));
+            MethodNode created = new MethodNode(Opcodes.ASM9, Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+            created.instructions = init;
+            created.accept(mv);
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            methods.get(i).accept(targets.get(i));
+        }
+        super.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_TRANSIENT, FIELD, "[Z", null, null).visitEnd();
+        registry.put(info.getName(), info);
+        super.visitEnd();
+    }
+
+    private void instrument(MethodNode method, CoverageProbes.ClassInfo info) {
+        Set<LabelNode> leaders = ProfilingTransformer.targets(method);
+        int line = -1;
+        int first = -1;
+        Set<Integer> lines = new TreeSet<>();
+        int probe = -1;
+        boolean leader = true;
+        AbstractInsnNode insn = method.instructions.getFirst();
+        while (insn != null) {
+            AbstractInsnNode next = insn.getNext();
+            if (insn instanceof LineNumberNode) {
+                line = ((LineNumberNode) insn).line;
+                if (!leader) {
+                    info.line(probe, line);
+                }
+                lines.add(line);
+            } else if (insn instanceof LabelNode) {
+                leader |= leaders.contains(insn);
+            } else if (insn.getOpcode() >= 0) {
+                if (leader) {
+                    probe = info.probe();
+                    if (first < 0) {
+                        first = probe;
+                    }
+                    if (line >= 0) {
+                        info.line(probe, line);
+                    }
+                    ProfilingTransformer.insertAtLeader(method, insn, leaders, probe(probe));
+                }
+                leader = ProfilingTransformer.isBranch(insn);
+            }
+            insn = next;
+        }
+        if (first >= 0) {
+            info.method(method.name + method.desc, lines.isEmpty() ? 0 : lines.iterator().next(), first);
+        }
+    }
+
+    private InsnList probe(int index) {
+        InsnList list = new InsnList();
+        list.add(new FieldInsnNode(Opcodes.GETSTATIC, owner, FIELD, "[Z"));
+        list.add(index <= Short.MAX_VALUE ? new IntInsnNode(Opcodes.SIPUSH, index) : new LdcInsnNode(index));
+        list.add(new InsnNode(Opcodes.ICONST_1));
+        list.add(new InsnNode(Opcodes.BASTORE));
+        return list;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import pro.javacard.engine.EngineMXBean;
+import pro.javacard.engine.LatencySnapshot;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Counters of an engine, registered as an MBean by Simulator.withMBean(). Recording does not lock or
+// allocate, except for the histogram of a CLA/INS pair when it is seen for the first time.
+final class EngineMetrics implements EngineMXBean {
+    // Open addressing tables, keys are stored +1 so that 0 means a free slot
+    static final int STATUS_SLOTS = 256;
+    static final int LATENCY_SLOTS = 1024;
+
+    private final AtomicLong apdus = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong selects = new AtomicLong();
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong lockWait = new AtomicLong();
+    private final AtomicLong lockWaitMax = new AtomicLong();
+
+    private final AtomicIntegerArray statusKeys = new AtomicIntegerArray(STATUS_SLOTS);
+    private final AtomicLongArray statusCounts = new AtomicLongArray(STATUS_SLOTS);
+    // Status words that did not fit into the table
+    private final AtomicLong statusOther = new AtomicLong();
+
+    private final AtomicIntegerArray latencyKeys = new AtomicIntegerArray(LATENCY_SLOTS);
+    private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(LATENCY_SLOTS);
+
+    void session(long waitNanos) {
+        sessions.incrementAndGet();
+        lockWait.addAndGet(waitNanos);
+        max(lockWaitMax, waitNanos);
+    }
+
+    void record(byte[] command, byte[] response, long nanos) {
+        apdus.incrementAndGet();
+        bytesIn.addAndGet(command.length);
+        bytesOut.addAndGet(response.length);
+        if (command.length < 4) {
+            return;
+        }
+        if (command[1] == (byte) 0xA4 && command[2] == 0x04) {
+            selects.incrementAndGet();
+        }
+        if (response.length >= 2) {
+            int sw = ((response[response.length - 2] & 0xFF) << 8) | (response[response.length - 1] & 0xFF);
+            int slot = slot(statusKeys, sw);
+            if (slot < 0) {
+                statusOther.incrementAndGet();
+            } else {
+                statusCounts.incrementAndGet(slot);
+            }
+        }
+        int slot = slot(latencyKeys, ((command[0] & 0xFF) << 8) | (command[1] & 0xFF));
+        if (slot >= 0) {
+            LatencyHistogram h = latencies.get(slot);
+            if (h == null) {
+                latencies.compareAndSet(slot, null, new LatencyHistogram());
+                h = latencies.get(slot);
+            }
+            h.record(nanos);
+        }
+    }
+
+    // Finds or claims the slot of the key, -1 if the table is full
+    static int slot(AtomicIntegerArray keys, int key) {
+        int stored = key + 1;
+        int mask = keys.length() - 1;
+        int i = (key * 0x9E3779B1) >>> 16 & mask;
+        for (int n = 0; n <= mask; n++, i = (i + 1) & mask) {
+            int k = keys.get(i);
+            if (k == stored || (k == 0 && (keys.compareAndSet(i, 0, stored) || keys.get(i) == stored))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static void max(AtomicLong max, long value) {
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            // retry
+        }
+    }
+
+    @Override
+    public long getApduCount() {
+        return apdus.get();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @Override
+    public long getSelectCount() {
+        return selects.get();
+    }
+
+    @Override
+    public long getSessionCount() {
+        return sessions.get();
+    }
+
+    @Override
+    public long getLockWaitNanos() {
+        return lockWait.get();
+    }
+
+    @Override
+    public long getLockWaitMaxNanos() {
+        return lockWaitMax.get();
+    }
+
+    @Override
+    public Map<String, Long> getStatusWords() {
+        Map<String, Long> result = new TreeMap<>();
+        for (int i = 0; i < STATUS_SLOTS; i++) {
+            int k = statusKeys.get(i);
+            long n = statusCounts.get(i);
+            if (k != 0 && n > 0) {
+                result.put(String.format("%04X", k - 1), n);
+            }
+        }
+        if (statusOther.get() > 0) {
+            result.put("other", statusOther.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatency() {
+        Map<String, LatencySnapshot> result = new TreeMap<>();
+        for (int i = 0; i < LATENCY_SLOTS; i++) {
+            int k = latencyKeys.get(i);
+            LatencyHistogram h = latencies.get(i);
+            if (k != 0 && h != null) {
+                LatencySnapshot s = h.snapshot();
+                if (s.getCount() > 0) {
+                    result.put(String.format("%04X", k - 1), s);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Keys and histograms are kept, so that recording continues without allocation
+    @Override
+    public void reset() {
+        apdus.set(0);
+        bytesIn.set(0);
+        bytesOut.set(0);
+        selects.set(0);
+        sessions.set(0);
+        lockWait.set(0);
+        lockWaitMax.set(0);
+        for (int i = 0; i < STATUS_SLOTS; i++) {
+            statusCounts.set(i, 0);
+        }
+        statusOther.set(0);
+        for (int i = 0; i < LATENCY_SLOTS; i++) {
+            LatencyHistogram h = latencies.get(i);
+            if (h != null) {
+                h.reset();
+            }
+        }
+    }
+}
@@ -20,51 +20,130 @@ import javacard.framework.AID;
 import javacard.framework.CardException;
 import javacard.framework.CardRuntimeException;
 import javacard.framework.Shareable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.HashSet;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.Set;
 
-public class Firewall {
+// Context switch for calls to the Shareable interface objects of one server applet. Clients get a
+// gate object that implements the Shareable interfaces of the object, switches the context to the
+// server for the duration of every call and forwards it to the object. Gate classes are generated
+// once per class of shareable objects, with a plain interface call for every method, so calls do not
+// go through reflection and do not allocate. Gates are cached per shareable object.
+public final class Firewall {
     private static final Logger log = LoggerFactory.getLogger(Firewall.class);
-    private final Shareable shareable;
-    private final Shareable firewalled;
 
-    private final Supplier<AID> getter;
-    private final Consumer<AID> setter;
-    private final Deque<AID> stack;
+    static final String GATE = "$$Firewall";
+    private static final String FIREWALL = Type.getInternalName(Firewall.class);
+    private static final String FIELD_FIREWALL = "firewall";
+    private static final String FIELD_TARGET = "target";
+
+    // Constructor (Firewall, Object) of the gate class for a shareable class
+    private static final ClassValue<MethodHandle> gates = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> klass) {
+            return gate(klass);
+        }
+    };
+
+    private final Simulator sim;
     private final AID serverAID;
+    // Shareable object -> gate. Accessed only while the engine runs applet code.
+    private final Map<Shareable, Shareable> wrapped = new IdentityHashMap<>();
 
-    public Firewall(AID server, Supplier<AID> current, Consumer<AID> currentSetter, Deque<AID> stack, Shareable shareable) {
+    Firewall(Simulator sim, AID server) {
+        this.sim = Objects.requireNonNull(sim);
+        this.serverAID = Objects.requireNonNull(server);
+    }
+
+    // Returns the gate for the shareable object of the server
+    public Shareable wrap(Shareable shareable) {
         Objects.requireNonNull(shareable);
+        Shareable gate = wrapped.get(shareable);
+        if (gate == null) {
+            try {
+                gate = (Shareable) gates.get(shareable.getClass()).invoke(this, (Object) shareable);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create firewall for " + shareable.getClass().getName(), e);
+            }
+            wrapped.put(shareable, gate);
+        }
+        return gate;
+    }
 
-        var klass = shareable.getClass();
-        var interfaces = allShareables(klass);
+    // Called from gates before the call
+    public void enter() {
+        if (log.isTraceEnabled()) {
+            log.trace("Switching from {} to {}", AIDUtil.toString(sim.currentAID), AIDUtil.toString(serverAID));
+        }
+        sim.contextStack.push(sim.currentAID);
+        sim.currentAID = serverAID;
+    }
 
-        this.shareable = shareable;
-        this.getter = current;
-        this.setter = currentSetter;
-        this.stack = stack;
-        this.serverAID = server;
-        this.firewalled = (Shareable) Proxy.newProxyInstance(klass.getClassLoader(), interfaces, Firewall.this::invoke);
+    // Called from gates after the call
+    public void leave() {
+        sim.currentAID = sim.contextStack.pop();
+    }
+
+    // Called from gates if the call throws
+    public void leave(Throwable real) {
+        if (log.isDebugEnabled()) {
+            if (real instanceof CardException ce) {
+                log.debug("{} from shareable: {}", real.getClass().getSimpleName(), ce.getReason());
+            } else if (real instanceof CardRuntimeException cre) {
+                log.debug("{} from shareable: {}", real.getClass().getSimpleName(), cre.getReason());
+            } else {
+                log.debug("{} from shareable", real.getClass().getSimpleName());
+            }
+        }
+        leave();
+    }
+
+    // Gate of the migrated shareable object, when applet classes are reloaded. null if the object is not a gate
+    static Object migrate(Object object, InstanceMigrator migrator) throws InstanceMigrator.IncompatibleLayoutException {
+        Class<?> klass = object.getClass();
+        if (!klass.getName().endsWith(GATE) || !(object instanceof Shareable)) {
+            return null;
+        }
+        try {
+            Field f = klass.getDeclaredField(FIELD_FIREWALL);
+            Field t = klass.getDeclaredField(FIELD_TARGET);
+            f.setAccessible(true);
+            t.setAccessible(true);
+            Firewall firewall = (Firewall) f.get(object);
+            return firewall.sim.gate(firewall.serverAID, (Shareable) migrator.migrate(t.get(object)));
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new InstanceMigrator.IncompatibleLayoutException("Can not migrate firewall " + klass.getName() + ": " + e);
+        }
     }
 
+    // Shareable interfaces of the class, with the interfaces implemented next to them
     static Class<?>[] allShareables(Class<?> klass) {
-        var interfaces = new HashSet<Class<?>>();
+        var interfaces = new LinkedHashSet<Class<?>>();
         Class<?> current = klass;
         while (!current.equals(Object.class)) {
             for (var iface : current.getInterfaces()) {
                 if (Shareable.class.isAssignableFrom(iface)) {
                     log.debug("Adding {}", iface.getName());
-                    Collections.addAll(interfaces, current.getInterfaces());
+                    interfaces.addAll(Set.of(current.getInterfaces()));
                 }
             }
             current = current.getSuperclass();
@@ -72,29 +151,124 @@ public class Firewall {
         return interfaces.toArray(Class[]::new);
     }
 
-    Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        var current = getter.get();
-        log.info("Switching from {} to {}", AIDUtil.toString(current), AIDUtil.toString(serverAID));
-        stack.push(current);
+    // Generates the gate class next to the shareable class, in its package and class loader, which sees all of its interfaces
+    static MethodHandle gate(Class<?> klass) {
+        Class<?>[] interfaces = allShareables(klass);
+        log.debug("Generating firewall for {}", klass.getName());
         try {
-            setter.accept(serverAID);
-            return method.invoke(shareable, args);
-        } catch (InvocationTargetException e) {
-            var real = e.getTargetException();
-            if (real instanceof CardException ce) {
-                log.info("{} from shareable: {}", real.getClass().getSimpleName(), ce.getReason());
-            } else if (real instanceof CardRuntimeException cre) {
-                log.info("{} from shareable: {}", real.getClass().getSimpleName(), cre.getReason());
-            } else {
-                log.info("{} from shareable", real.getClass().getSimpleName());
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(klass, MethodHandles.lookup());
+            Class<?> gate;
+            try {
+                gate = lookup.defineClass(gateClass(klass, interfaces));
+            } catch (LinkageError e) {
+                // Defined concurrently, by another engine that shares the class. Otherwise (like a
+                // superinterface that is not accessible from the package) the error is the real cause.
+                try {
+                    gate = Class.forName(klass.getName() + GATE, true, klass.getClassLoader());
+                } catch (ClassNotFoundException notDefined) {
+                    throw e;
+                }
             }
-            throw real;
-        } finally {
-            setter.accept(stack.pop());
+            return lookup.findConstructor(gate, MethodType.methodType(void.class, Firewall.class, Object.class))
+                    .asType(MethodType.methodType(Object.class, Firewall.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not generate firewall for " + klass.getName(), e);
         }
     }
 
-    public Shareable getShareable() {
-        return firewalled;
+    static byte[] gateClass(Class<?> klass, Class<?>[] interfaces) {
+        String name = Type.getInternalName(klass) + GATE;
+        String[] names = new String[interfaces.length];
+        // Methods by name and descriptor, including the ones of superinterfaces
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (int i = 0; i < interfaces.length; i++) {
+            names[i] = Type.getInternalName(interfaces[i]);
+            for (Method m : interfaces[i].getMethods()) {
+                if (!Modifier.isStatic(m.getModifiers())) {
+                    methods.putIfAbsent(m.getName() + Type.getMethodDescriptor(m), m);
+                }
+            }
+        }
+
+        // Frames only merge at the handler, where the stack holds a Throwable
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, name, null, "java/lang/Object", names);
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, FIELD_FIREWALL, "L" + FIREWALL + ";", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, FIELD_TARGET, "Ljava/lang/Object;", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(L" + FIREWALL + ";Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, name, FIELD_FIREWALL, "L" + FIREWALL + ";");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, name, FIELD_TARGET, "Ljava/lang/Object;");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (Method m : methods.values()) {
+            forward(cw, name, m);
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // firewall.enter(); try { r = ((I) target).m(args); } catch (Throwable t) { firewall.leave(t); throw t; } firewall.leave(); return r;
+    private static void forward(ClassWriter cw, String name, Method m) {
+        String owner = Type.getInternalName(m.getDeclaringClass());
+        String descriptor = Type.getMethodDescriptor(m);
+        Type returnType = Type.getReturnType(m);
+        String[] exceptions = new String[m.getExceptionTypes().length];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = Type.getInternalName(m.getExceptionTypes()[i]);
+        }
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, m.getName(), descriptor, null, exceptions);
+        mv.visitCode();
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(start, end, handler, null);
+
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, FIELD_FIREWALL, "L" + FIREWALL + ";");
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIREWALL, "enter", "()V", false);
+
+        mv.visitLabel(start);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, FIELD_TARGET, "Ljava/lang/Object;");
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        int slot = 1;
+        for (Type arg : Type.getArgumentTypes(m)) {
+            mv.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), slot);
+            slot += arg.getSize();
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, owner, m.getName(), descriptor, true);
+        mv.visitLabel(end);
+
+        // The return value stays on the stack
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, FIELD_FIREWALL, "L" + FIREWALL + ";");
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIREWALL, "leave", "()V", false);
+        mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+        // throwable -> throwable, firewall, throwable
+        mv.visitLabel(handler);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, FIELD_FIREWALL, "L" + FIREWALL + ";");
+        mv.visitInsn(Opcodes.SWAP);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIREWALL, "leave", "(Ljava/lang/Throwable;)V", false);
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
     }
 }
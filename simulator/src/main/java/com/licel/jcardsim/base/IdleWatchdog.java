@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Hashed timer wheel for session idle timeouts. Sessions only update their last activity timestamp;
+// the wheel thread looks at a session when its bucket comes around and either expires it or puts it
+// into the bucket of its new deadline. Sessions with deadlines beyond one revolution are simply
+// re-bucketed when visited early.
+final class IdleWatchdog implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(IdleWatchdog.class);
+
+    static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+    static final int WHEEL_SIZE = 256; // must be a power of two
+
+    private static final IdleWatchdog INSTANCE = new IdleWatchdog();
+
+    private final Queue<SimulatorSession> incoming = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings("unchecked")
+    private final ArrayList<SimulatorSession>[] wheel = new ArrayList[WHEEL_SIZE];
+    private ArrayList<SimulatorSession> spare = new ArrayList<>();
+    private final long origin = System.nanoTime();
+    private final Thread thread;
+
+    // Thread is started when the first session with a timeout is created
+    private IdleWatchdog() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        // XXX: opportunistic locking requires timed release.
+        thread = new Thread(this, "IdleWatchdog");
+        thread.setDaemon(true); // not blocking shutdown
+        thread.start();
+    }
+
+    static void watch(SimulatorSession session) {
+        INSTANCE.add(session);
+    }
+
+    private void add(SimulatorSession session) {
+        incoming.add(session);
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        long tick = (System.nanoTime() - origin) / TICK; // next tick to process
+        int watched = 0;
+        while (true) {
+            SimulatorSession s;
+            while ((s = incoming.poll()) != null) {
+                watched++;
+                schedule(s, tick);
+            }
+            long now = System.nanoTime();
+            long current = (now - origin) / TICK;
+            while (tick <= current) {
+                watched -= expire(tick, now);
+                tick++;
+            }
+            if (watched == 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, TICK);
+            }
+        }
+    }
+
+    private void schedule(SimulatorSession session, long tick) {
+        long deadline = session.lastActivity + session.idleNanos - origin;
+        long at = Math.max((deadline + TICK - 1) / TICK, tick + 1);
+        wheel[(int) (at & (WHEEL_SIZE - 1))].add(session);
+    }
+
+    // Returns the number of sessions no longer watched
+    private int expire(long tick, long now) {
+        int bucket = (int) (tick & (WHEEL_SIZE - 1));
+        ArrayList<SimulatorSession> sessions = wheel[bucket];
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+        int gone = 0;
+        // Swap so that re-bucketing into the same slot lands in the next revolution
+        wheel[bucket] = spare;
+        for (SimulatorSession session : sessions) {
+            if (session.isClosed()) {
+                gone++;
+            } else if (now - session.lastActivity >= session.idleNanos) {
+                gone++;
+                try {
+                    session.timeoutExpired();
+                } catch (RuntimeException e) {
+                    log.error("Could not expire session", e);
+                }
+            } else {
+                schedule(session, tick);
+            }
+        }
+        sessions.clear();
+        spare = sessions;
+        return gone;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Moves the state of applet objects to reloaded classes (see Simulator.reloadApplets()). Objects of classes
+// from the old loader are re-created from the new loader without running constructors, and their fields are
+// copied by name. Arrays of such classes are copied element by element. Everything else (primitive and
+// transient arrays, Java Card API objects) is kept as is, so identity of shared objects is preserved. Other
+// reference arrays are kept too, with their elements migrated in place once the applet is committed.
+//
+// The layout of a class is compatible if every instance field of the old class exists in the new class with
+// a type of the same name. Fields added to the new class are left at their default values.
+final class InstanceMigrator {
+    private static final Logger log = LoggerFactory.getLogger(InstanceMigrator.class);
+
+    static final class IncompatibleLayoutException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        IncompatibleLayoutException(String message) {
+            super(message);
+        }
+    }
+
+    private final ClassLoader from;
+    private final ClassLoader to;
+    interface Special {
+        // Returns the replacement of an object that needs special handling (like firewall gates), null otherwise
+        Object replace(Object old, InstanceMigrator migrator) throws IncompatibleLayoutException;
+    }
+
+    private final Special special;
+
+    // Old object -> new object
+    private final Map<Object, Object> migrated = new IdentityHashMap<>();
+    // Old objects migrated since the last commit()
+    private final List<Object> pending = new ArrayList<>();
+    // Element updates of kept arrays since the last commit(), the old objects stay untouched until then
+    private final List<Runnable> writes = new ArrayList<>();
+    private final Map<Class<?>, Constructor<?>> allocators = new HashMap<>();
+
+    InstanceMigrator(ClassLoader from, ClassLoader to, Special special) {
+        this.from = from;
+        this.to = to;
+        this.special = special;
+    }
+
+    // Keeps objects migrated since the last commit
+    void commit() {
+        writes.forEach(Runnable::run);
+        writes.clear();
+        pending.clear();
+    }
+
+    // Forgets objects migrated since the last commit, if the migration of an applet failed half way
+    void rollback() {
+        pending.forEach(migrated::remove);
+        pending.clear();
+        writes.clear();
+    }
+
+    Object migrate(Object old) throws IncompatibleLayoutException {
+        if (old == null) {
+            return null;
+        }
+        Object done = migrated.get(old);
+        if (done != null) {
+            return done;
+        }
+        Class<?> klass = old.getClass();
+        if (klass.isArray()) {
+            Class<?> element = elementType(klass);
+            if (element.isPrimitive()) {
+                return old;
+            }
+            int length = Array.getLength(old);
+            if (!fromOld(element)) {
+                // Like Object[] or Shareable[], possibly transient: keep the array, update the elements
+                register(old, old);
+                for (int i = 0; i < length; i++) {
+                    Object value = Array.get(old, i);
+                    Object fresh = migrate(value);
+                    if (fresh != value) {
+                        int index = i;
+                        writes.add(() -> Array.set(old, index, fresh));
+                    }
+                }
+                return old;
+            }
+            Object fresh = Array.newInstance(translate(klass.getComponentType()), length);
+            register(old, fresh);
+            for (int i = 0; i < length; i++) {
+                Array.set(fresh, i, migrate(Array.get(old, i)));
+            }
+            return fresh;
+        }
+        Object replacement = special.replace(old, this);
+        if (replacement != null) {
+            register(old, replacement);
+            return replacement;
+        }
+        if (!fromOld(klass)) {
+            return old;
+        }
+        Class<?> target = translate(klass);
+        Object fresh = allocate(target);
+        register(old, fresh);
+        for (Class<?> c = klass; c != null && c != Object.class; c = c.getSuperclass()) {
+            Class<?> t = fromOld(c) ? translate(c) : c;
+            for (Field f : c.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+                Field nf = field(t, f);
+                f.setAccessible(true);
+                nf.setAccessible(true);
+                try {
+                    nf.set(fresh, migrate(f.get(old)));
+                } catch (IllegalAccessException | IllegalArgumentException e) {
+                    throw new IncompatibleLayoutException("Can not copy " + c.getName() + "." + f.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        return fresh;
+    }
+
+    // Copies static fields of a reloaded class. Constants are taken from the new class, as they can change.
+    void migrateStatics(String name) throws IncompatibleLayoutException {
+        final Class<?> old;
+        final Class<?> fresh;
+        try {
+            old = Class.forName(name, false, from);
+            fresh = Class.forName(name, true, to);
+        } catch (ClassNotFoundException e) {
+            log.debug("{} was removed", name);
+            return;
+        } catch (LinkageError e) {
+            throw new IncompatibleLayoutException("Can not load " + name + ": " + e);
+        }
+        for (Field f : old.getDeclaredFields()) {
+            int mod = f.getModifiers();
+            if (!Modifier.isStatic(mod) || Modifier.isFinal(mod)) {
+                continue;
+            }
+            try {
+                Field nf = field(fresh, f);
+                f.setAccessible(true);
+                nf.setAccessible(true);
+                nf.set(null, migrate(f.get(null)));
+            } catch (IncompatibleLayoutException | IllegalAccessException | IllegalArgumentException e) {
+                log.warn("Static field {}.{} not migrated: {}", name, f.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void register(Object old, Object fresh) {
+        migrated.put(old, fresh);
+        pending.add(old);
+    }
+
+    private boolean fromOld(Class<?> klass) {
+        return klass.getClassLoader() == from;
+    }
+
+    private static Class<?> elementType(Class<?> component) {
+        while (component.isArray()) {
+            component = component.getComponentType();
+        }
+        return component;
+    }
+
+    private Class<?> translate(Class<?> klass) throws IncompatibleLayoutException {
+        if (klass.isArray()) {
+            return translate(klass.getComponentType()).arrayType();
+        }
+        if (!fromOld(klass)) {
+            return klass;
+        }
+        try {
+            return Class.forName(klass.getName(), false, to);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IncompatibleLayoutException(klass.getName() + " can not be reloaded: " + e);
+        }
+    }
+
+    // The field of the new class with the same name and type name
+    private static Field field(Class<?> klass, Field old) throws IncompatibleLayoutException {
+        final Field f;
+        try {
+            f = klass.getDeclaredField(old.getName());
+        } catch (NoSuchFieldException e) {
+            throw new IncompatibleLayoutException(klass.getName() + "." + old.getName() + " was removed");
+        }
+        if (!f.getType().getName().equals(old.getType().getName()) || Modifier.isStatic(f.getModifiers()) != Modifier.isStatic(old.getModifiers())) {
+            throw new IncompatibleLayoutException(klass.getName() + "." + old.getName() + " was changed");
+        }
+        return f;
+    }
+
+    // Creates an instance without running any constructor of the class, like deserialization does
+    private Object allocate(Class<?> klass) throws IncompatibleLayoutException {
+        try {
+            Constructor<?> c = allocators.get(klass);
+            if (c == null) {
+                Class<?> factory = Class.forName("sun.reflect.ReflectionFactory");
+                Object rf = factory.getMethod("getReflectionFactory").invoke(null);
+                Method m = factory.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+                c = (Constructor<?>) m.invoke(rf, klass, Object.class.getDeclaredConstructor());
+                allocators.put(klass, c);
+            }
+            return c.newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IncompatibleLayoutException("Can not create " + klass.getName() + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.Set;
+
+// Charges the bytecode of applet classes to the cost model of the engine (see CostMeter): every basic
+// block starts with a call to CostMeter.block() with the number of its instructions, and every call into
+// the Java Card API is preceded by CostMeter.call() with the name of the method, like "Util.arrayCopy".
+// Array and field stores are counted separately, as on a card they may be writes to persistent memory.
+final class InstructionCounter extends ClassVisitor {
+    static final String METER = CostMeter.class.getName().replace('.', '/');
+
+    InstructionCounter(ClassVisitor cv) {
+        super(Opcodes.ASM9, cv);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+        if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+            return next;
+        }
+        return new MethodNode(Opcodes.ASM9, access, name, descriptor, signature, exceptions) {
+            @Override
+            public void visitEnd() {
+                instrument(this);
+                accept(next);
+            }
+        };
+    }
+
+    static boolean isStore(int opcode) {
+        return (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE) || opcode == Opcodes.PUTFIELD || opcode == Opcodes.PUTSTATIC;
+    }
+
+    private static void instrument(MethodNode method) {
+        Set<LabelNode> targets = ProfilingTransformer.targets(method);
+        // First instruction of the current block and its counts
+        AbstractInsnNode first = null;
+        int instructions = 0;
+        int stores = 0;
+        boolean leader = true;
+        AbstractInsnNode insn = method.instructions.getFirst();
+        while (insn != null) {
+            AbstractInsnNode next = insn.getNext();
+            if (insn instanceof LabelNode) {
+                leader |= targets.contains(insn);
+            } else if (insn.getOpcode() >= 0) {
+                if (leader) {
+                    if (first != null) {
+                        ProfilingTransformer.insertAtLeader(method, first, targets, charge(instructions, stores));
+                    }
+                    first = insn;
+                    instructions = 0;
+                    stores = 0;
+                }
+                instructions++;
+                if (isStore(insn.getOpcode())) {
+                    stores++;
+                }
+                if (insn instanceof MethodInsnNode && ProfilingTransformer.isAPI(((MethodInsnNode) insn).owner)) {
+                    MethodInsnNode call = (MethodInsnNode) insn;
+                    String name = call.owner.substring(call.owner.lastIndexOf('/') + 1) + "." + call.name;
+                    InsnList list = new InsnList();
+                    list.add(new LdcInsnNode(name));
+                    list.add(new MethodInsnNode(Opcodes.INVOKESTATIC, METER, "call", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(String.class)), false));
+                    method.instructions.insertBefore(insn, list);
+                }
+                leader = ProfilingTransformer.isBranch(insn);
+            }
+            insn = next;
+        }
+        if (first != null) {
+            ProfilingTransformer.insertAtLeader(method, first, targets, charge(instructions, stores));
+        }
+    }
+
+    private static InsnList charge(int instructions, int stores) {
+        InsnList list = new InsnList();
+        list.add(new LdcInsnNode(instructions));
+        list.add(new LdcInsnNode(stores));
+        list.add(new MethodInsnNode(Opcodes.INVOKESTATIC, METER, "block", Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE, Type.INT_TYPE), false));
+        return list;
+    }
+}
@@ -15,63 +15,206 @@
  */
 package com.licel.jcardsim.base;
 
+import org.objectweb.asm.ClassVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Two instances of a Simulator() within one JVM should keep separate copies of Applet classes,
 // to assure the isolation of static fields of applets in two different simulators.
 // This increases the complexity by forcing to use reflection when calling into applet instance
 // methods like select/process/deselect/uninstall, but increases the DWIM for developer.
+//
+// A shared loader (see shared()) instead loads applet classes once for all engines and keeps static
+// fields apart by rewriting them into per-engine holders (see StaticFieldVirtualizer).
 public class IsolatingClassLoader extends URLClassLoader {
     private static final Logger log = LoggerFactory.getLogger(IsolatingClassLoader.class);
 
-    private final List<String> mocks = new ArrayList<>();
+    // Current classpath, resolved once for all engines
+    private static final URL[] CLASSPATH = classpath();
+    private static final ProtectionDomain DOMAIN = IsolatingClassLoader.class.getProtectionDomain();
+
+    // Shared loaders by parent. Values are weak, as a loader holds its parent strongly and would
+    // otherwise keep its own key reachable.
+    private static final Map<ClassLoader, WeakReference<IsolatingClassLoader>> sharedLoaders = new WeakHashMap<>();
+
+    // Isolated packages, installing the same applet again does not add a duplicate
+    private final Set<String> mocks = ConcurrentHashMap.newKeySet();
+    private final boolean virtualizeStatics;
+    // Insert profiling probes (see ProfilingTransformer)
+    private volatile boolean profiled = false;
+    // Insert cost model charges (see InstructionCounter)
+    private volatile boolean counted = false;
+    // Insert coverage probes (see CoverageTransformer), and the probes of loaded classes by name
+    private volatile boolean covered = false;
+    private final Map<String, CoverageProbes.ClassInfo> coverage = new ConcurrentHashMap<>();
+    // Set once an isolated class has been defined
+    private volatile boolean defined = false;
+    // Names of defined isolated classes
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    // Class headers for static field rewriting, by internal name
+    private final Map<String, Optional<StaticFieldVirtualizer.Info>> infos = new ConcurrentHashMap<>();
+    private final StaticFieldVirtualizer.Resolver resolver = new StaticFieldVirtualizer.Resolver() {
+        @Override
+        public StaticFieldVirtualizer.Info info(String internalName) {
+            return infos.computeIfAbsent(internalName, n -> {
+                try {
+                    byte[] bytes = getClassBytes(n.replace('/', '.'));
+                    return Optional.ofNullable(bytes == null ? null : StaticFieldVirtualizer.info(bytes));
+                } catch (IOException e) {
+                    log.warn("Could not read {}: {}", n, e.getMessage());
+                    return Optional.empty();
+                }
+            }).orElse(null);
+        }
+
+        @Override
+        public boolean isolated(String internalName) {
+            return isolate(internalName.replace('/', '.'));
+        }
+    };
 
     // Explicitly isolate from classpath
     public void isolate(String... packages) {
         for (String s : packages) {
-            log.trace("Isolating {}", s);
-            mocks.add(s);
+            if (mocks.add(s)) {
+                log.trace("Isolating {}", s);
+            }
         }
     }
 
+    // Keep transformed classes in the given directory, to be re-used by future processes
+    public static void setCacheDirectory(Path dir) {
+        TransformedClassCache.setDirectory(dir);
+    }
+
     public IsolatingClassLoader(ClassLoader parent) {
-        super(new URL[0], parent);
-        // Add current classpath
+        this(parent, false);
+    }
+
+    private IsolatingClassLoader(ClassLoader parent, boolean virtualizeStatics) {
+        super(CLASSPATH, parent);
+        this.virtualizeStatics = virtualizeStatics;
+    }
+
+    // Returns a fresh loader with the same parent and isolated packages. Classes of this loader become
+    // unloadable once the caller drops all references to the loader and its classes.
+    public IsolatingClassLoader renew() {
+        IsolatingClassLoader fresh = new IsolatingClassLoader(getParent(), virtualizeStatics);
+        fresh.mocks.addAll(mocks);
+        fresh.profiled = profiled;
+        fresh.counted = counted;
+        fresh.covered = covered;
+        return fresh;
+    }
+
+    // True if any isolated class has been loaded
+    public boolean hasClasses() {
+        return defined;
+    }
+
+    // Names of isolated classes defined so far
+    Set<String> definedClasses() {
+        return Collections.unmodifiableSet(names);
+    }
+
+    // Must be set before classes are loaded, not available with shared loaders
+    void profile(boolean flag) {
+        if (flag && virtualizeStatics) {
+            throw new IllegalStateException("Shared classes can not be profiled");
+        }
+        profiled = flag;
+    }
+
+    // Must be set before classes are loaded, not available with shared loaders
+    void countInstructions(boolean flag) {
+        if (flag && virtualizeStatics) {
+            throw new IllegalStateException("Shared classes can not be instrumented");
+        }
+        counted = flag;
+    }
+
+    // Must be set before classes are loaded, not available with shared loaders
+    void cover(boolean flag) {
+        if (flag && virtualizeStatics) {
+            throw new IllegalStateException("Shared classes can not be instrumented");
+        }
+        covered = flag;
+    }
+
+    Map<String, CoverageProbes.ClassInfo> coverage() {
+        return coverage;
+    }
+
+    // Instructions are counted before profiling and coverage probes are inserted, so that probes are not charged
+    private ClassVisitor instrument(ClassVisitor cv) {
+        ClassVisitor next = covered ? new CoverageTransformer(cv, coverage) : cv;
+        next = profiled ? new ProfilingTransformer(next) : next;
+        return counted ? new InstructionCounter(next) : next;
+    }
+
+    // Returns the loader shared by all engines that use the same parent
+    public static IsolatingClassLoader shared(ClassLoader parent) {
+        synchronized (sharedLoaders) {
+            WeakReference<IsolatingClassLoader> ref = sharedLoaders.get(parent);
+            IsolatingClassLoader loader = ref == null ? null : ref.get();
+            if (loader == null) {
+                loader = new IsolatingClassLoader(parent, true);
+                sharedLoaders.put(parent, new WeakReference<>(loader));
+            }
+            return loader;
+        }
+    }
+
+    private static URL[] classpath() {
+        List<URL> urls = new ArrayList<>();
         String classpath = System.getProperty("java.class.path");
         for (String path : classpath.split(System.getProperty("path.separator"))) {
             try {
                 log.trace("Adding {}", path);
-                addURL(Paths.get(path).toUri().toURL());
+                urls.add(Paths.get(path).toUri().toURL());
             } catch (Exception e) {
                 log.warn("Could not load {}: {}", path, e.getMessage(), e);
             }
         }
+        return urls.toArray(new URL[0]);
     }
 
     @Override
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
         // Force reload of target classes instead of delegating to parent
         if (isolate(name)) {
-            Class<?> clazz = findLoadedClass(name);
-            if (clazz == null) {
-                log.trace("{} isolating {}", System.identityHashCode(this), name);
-                clazz = findClass(name);
-            } else {
-                log.trace("{} re-using  {}", System.identityHashCode(this), name);
-            }
-            if (resolve) {
-                resolveClass(clazz);
+            // Shared loaders are used from many threads
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    log.trace("{} isolating {}", System.identityHashCode(this), name);
+                    clazz = findClass(name);
+                } else {
+                    log.trace("{} re-using  {}", System.identityHashCode(this), name);
+                }
+                if (resolve) {
+                    resolveClass(clazz);
+                }
+                return clazz;
             }
-            return clazz;
         } else {
             return super.loadClass(name, resolve);
         }
@@ -91,17 +234,37 @@ public class IsolatingClassLoader extends URLClassLoader {
     protected Class<?> findClass(String name) throws ClassNotFoundException {
         if (isolate(name)) {
             try {
-                // Load the class bytecode
-                byte[] classBytes = getClassBytes(name);
-                if (classBytes == null) {
+                // Load the class bytecode and transform it to intercept byte array allocations.
+                // Both are done once per process for classes coming from the same parent.
+                final byte[] transformedBytes;
+                if (profiled || counted || covered) {
+                    // Probe ids are only valid in this process, so instrumented classes are not cached
+                    byte[] bytes = getClassBytes(name);
+                    transformedBytes = bytes == null ? null : NewByteArrayInterceptor.transform(bytes, this, this::instrument);
+                } else if (!virtualizeStatics) {
+                    transformedBytes = TransformedClassCache.get(getParent(), NewByteArrayInterceptor.VERSION, name,
+                            this::getClassBytes, b -> NewByteArrayInterceptor.transform(b, this));
+                } else if (name.endsWith(StaticFieldVirtualizer.SUFFIX)) {
+                    // Generated from the owner class
+                    String owner = name.substring(0, name.length() - StaticFieldVirtualizer.SUFFIX.length());
+                    transformedBytes = TransformedClassCache.get(getParent(), StaticFieldVirtualizer.VERSION, name,
+                            n -> getClassBytes(owner), StaticFieldVirtualizer::holder);
+                } else {
+                    // The rewrite depends on superclasses and isolated packages too
+                    String variant = NewByteArrayInterceptor.VERSION + "+" + StaticFieldVirtualizer.VERSION + "+" + String.join(",", new TreeSet<>(mocks));
+                    transformedBytes = TransformedClassCache.getBySource(getParent(), variant, name,
+                            this::getClassBytes, b -> NewByteArrayInterceptor.transform(b, this, cv -> new StaticFieldVirtualizer(cv, resolver)));
+                }
+                if (transformedBytes == null) {
                     log.error("Could not load {}", name);
                     // XXX: should probably still refer to super ?
                     throw new ClassNotFoundException(name);
                 }
-
-                // Transform the class to intercept byte array allocations
-                byte[] transformedBytes = NewByteArrayInterceptor.transform(classBytes, this);
-                return defineClass(name, transformedBytes, 0, transformedBytes.length, IsolatingClassLoader.class.getProtectionDomain());
+                defined = true;
+                names.add(name);
+                return defineClass(name, transformedBytes, 0, transformedBytes.length, DOMAIN);
+            } catch (ClassNotFoundException e) {
+                throw e;
             } catch (Exception e) {
                 throw new ClassNotFoundException("Failed to load and transform class: " + name, e);
             }
@@ -27,6 +27,8 @@ public interface JavaCardRuntime {
 
     void internalDeleteApplet(AID aid);
 
+    boolean internalDeletePackage(AID packageAid);
+
     AID getAID();
 
     AID lookupAID(byte buffer[], short offset, byte length);
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.framework.JCSystem;
+import javacard.framework.SystemException;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pro.javacard.engine.MemoryFootprint;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+// Counts memory allocated on the card by the context that allocates it, and enforces the optional limits of
+// the card (see Simulator.withMemoryLimits()). Persistent arrays and objects are charged by isolated applet
+// code (see NewByteArrayInterceptor), transient arrays by TransientMemory. Memory of a context is released
+// when the applet is deleted.
+//
+// Allocations are charged by the thread that runs applet code, which holds the engine, so the counters are
+// updated without locking. snapshot() can be taken from other threads, with the counts of a command in progress.
+final class MemoryAccounting {
+    private static final Logger log = LoggerFactory.getLogger(MemoryAccounting.class);
+
+    // Like TransientMemory, assume 16 bits for references. Arbitrary, as is the header.
+    static final int REFERENCE = 2;
+    static final int HEADER = 4;
+    // Primitive types and their widths, by the operand of NEWARRAY (T_BOOLEAN to T_LONG)
+    private static final Class<?>[] TYPES = {null, null, null, null, boolean.class, char.class, float.class, double.class, byte.class, short.class, int.class, long.class};
+    private static final int[] WIDTHS = {0, 0, 0, 0, 1, 2, 4, 8, 1, 2, 4, 8};
+
+    private static final class Usage {
+        long persistent;
+        long reset;
+        long deselect;
+        long objects;
+        long arrays;
+    }
+
+    // Current context, null for the runtime
+    private final Supplier<AID> context;
+    private final Map<AID, Usage> usages = new ConcurrentSkipListMap<>(AIDUtil.comparator());
+    private final Usage runtime = new Usage();
+    // Usage of the current context, looked up again when the context changes
+    private AID cachedContext;
+    private Usage cachedUsage = runtime;
+    private long persistent;
+    private long transients;
+    // 0 if not limited
+    private int persistentLimit;
+    private int transientLimit;
+
+    // Object sizes by internal name, for classes of the loader. The loader must stay unloadable.
+    private final Map<String, Integer> sizes = new HashMap<>();
+    private WeakReference<ClassLoader> sizesOf = new WeakReference<>(null);
+
+    MemoryAccounting(Supplier<AID> context) {
+        this.context = context;
+    }
+
+    void limit(int persistent, int transients) {
+        if (persistent < 0 || transients < 0) {
+            throw new IllegalArgumentException("Memory limits can not be negative");
+        }
+        this.persistentLimit = persistent;
+        this.transientLimit = transients;
+    }
+
+    private Usage usage() {
+        AID aid = context.get();
+        if (aid != cachedContext) {
+            cachedUsage = aid == null ? runtime : usages.computeIfAbsent(aid, a -> new Usage());
+            cachedContext = aid;
+        }
+        return cachedUsage;
+    }
+
+    private Usage persistent(long bytes) {
+        if (persistentLimit > 0 && persistent + bytes > persistentLimit) {
+            log.debug("Out of persistent memory: {} of {} used, {} requested", persistent, persistentLimit, bytes);
+            SystemException.throwIt(SystemException.NO_RESOURCE);
+        }
+        persistent += bytes;
+        Usage u = usage();
+        u.persistent += bytes;
+        return u;
+    }
+
+    void array(long bytes) {
+        persistent(bytes).arrays++;
+    }
+
+    // Object of the class with the internal name, from the loader
+    void object(ClassLoader loader, String name) {
+        if (loader != sizesOf.get()) {
+            sizes.clear();
+            sizesOf = new WeakReference<>(loader);
+        }
+        persistent(sizes.computeIfAbsent(name, n -> size(loader, n))).objects++;
+    }
+
+    void transientArray(long bytes, byte event) {
+        if (transientLimit > 0 && transients + bytes > transientLimit) {
+            log.debug("Out of transient memory: {} of {} used, {} requested", transients, transientLimit, bytes);
+            SystemException.throwIt(SystemException.NO_TRANSIENT_SPACE);
+        }
+        transients += bytes;
+        Usage u = usage();
+        if (event == JCSystem.CLEAR_ON_RESET) {
+            u.reset += bytes;
+        } else {
+            u.deselect += bytes;
+        }
+    }
+
+    // Memory of a deleted applet, null if it had none
+    MemoryFootprint.Usage release(AID aid) {
+        Usage u = usages.remove(aid);
+        if (u == null) {
+            return null;
+        }
+        forget();
+        persistent -= u.persistent;
+        transients -= u.reset + u.deselect;
+        return usage(AIDUtil.toString(aid), u);
+    }
+
+    // When an applet registers with an AID other than it was installed with
+    void move(AID from, AID to) {
+        Usage u = usages.remove(from);
+        if (u != null) {
+            forget();
+            usages.put(to, u);
+        }
+    }
+
+    // The cached usage may be that of a removed context
+    private void forget() {
+        cachedContext = null;
+        cachedUsage = runtime;
+    }
+
+    // Used by the runtime and all contexts
+    long getPersistent() {
+        return persistent;
+    }
+
+    short availablePersistent() {
+        return available(persistentLimit, persistent);
+    }
+
+    // CLEAR_ON_RESET and CLEAR_ON_DESELECT arrays use the same memory
+    short availableTransient() {
+        return available(transientLimit, transients);
+    }
+
+    private static short available(int limit, long used) {
+        if (limit == 0) {
+            return Short.MAX_VALUE;
+        }
+        return (short) Math.max(0, Math.min(Short.MAX_VALUE, limit - used));
+    }
+
+    MemoryFootprint snapshot() {
+        List<MemoryFootprint.Usage> result = new ArrayList<>();
+        if (runtime.persistent + runtime.reset + runtime.deselect > 0) {
+            result.add(usage(MemoryFootprint.JCRE, runtime));
+        }
+        usages.forEach((aid, u) -> result.add(usage(AIDUtil.toString(aid), u)));
+        return new MemoryFootprint(result, persistentLimit, transientLimit);
+    }
+
+    private static MemoryFootprint.Usage usage(String name, Usage u) {
+        return new MemoryFootprint.Usage(name, u.persistent, u.reset, u.deselect, u.objects, u.arrays);
+    }
+
+    // Bytes per element of the type
+    static int width(Class<?> type) {
+        for (int operand = Opcodes.T_BOOLEAN; operand <= Opcodes.T_LONG; operand++) {
+            if (TYPES[operand] == type) {
+                return WIDTHS[operand];
+            }
+        }
+        return REFERENCE;
+    }
+
+    // Bytes per element of a primitive array, by the operand of NEWARRAY
+    static int width(int operand) {
+        return WIDTHS[operand];
+    }
+
+    // Header and instance fields of the class and its superclasses
+    static int size(Class<?> klass) {
+        int size = HEADER;
+        for (Class<?> c = klass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    size += width(f.getType());
+                }
+            }
+        }
+        return size;
+    }
+
+    private static int size(ClassLoader loader, String name) {
+        try {
+            return size(Class.forName(name.replace('/', '.'), false, loader));
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.debug("Can not size {}: {}", name, e.toString());
+            return HEADER;
+        }
+    }
+}
@@ -19,7 +19,10 @@ import org.objectweb.asm.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.UnaryOperator;
+
 // Utility class to intercept all "new byte[int]" calls and replace them with "Simulator.allocate(int)"
+// Other arrays and objects are charged to memory accounting with Simulator.allocateArray() and allocateObject().
 // This also sets the magic "jcardengine" flag to true.
 public class NewByteArrayInterceptor extends ClassVisitor {
 
@@ -40,17 +43,26 @@ public class NewByteArrayInterceptor extends ClassVisitor {
 
     private static final Logger log = LoggerFactory.getLogger(NewByteArrayInterceptor.class);
 
+    // Bump when the transformation changes, as transformed bytes are cached
+    public static final String VERSION = "nba2";
+    private static final String SIMULATOR = Simulator.class.getCanonicalName().replace(".", "/");
+
     public NewByteArrayInterceptor(ClassVisitor classVisitor) {
         super(Opcodes.ASM9, classVisitor);
     }
 
     public static byte[] transform(byte[] classBytes, ClassLoader classLoader) {
+        return transform(classBytes, classLoader, UnaryOperator.identity());
+    }
+
+    // Additional transformations are applied before the byte array interception
+    public static byte[] transform(byte[] classBytes, ClassLoader classLoader, UnaryOperator<ClassVisitor> chain) {
         ClassReader classReader = new ClassReader(classBytes);
         // NOTE: java.lang.ClassCircularityError if COMPUTE_FRAMES
         ClassWriter classWriter = new CustomClassWriter(classReader, ClassWriter.COMPUTE_MAXS, classLoader);
         NewByteArrayInterceptor interceptor = new NewByteArrayInterceptor(classWriter);
 
-        classReader.accept(interceptor, 0);
+        classReader.accept(chain.apply(interceptor), 0);
         return classWriter.toByteArray();
     }
 
@@ -92,13 +104,36 @@ public class NewByteArrayInterceptor extends ClassVisitor {
                 // Stack after: [byte[]]
                 log.trace("Intercepting \"new byte[]\"");
                 super.visitMethodInsn(Opcodes.INVOKESTATIC,
-                        Simulator.class.getCanonicalName().replace(".", "/"),
+                        SIMULATOR,
                         "allocate",
                         "(I)[B",
                         false);
+            } else if (opcode == Opcodes.NEWARRAY) {
+                // Stack: [length] -> [length]
+                charge(MemoryAccounting.width(operand));
+                super.visitIntInsn(opcode, operand);
             } else {
                 super.visitIntInsn(opcode, operand);
             }
         }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (opcode == Opcodes.ANEWARRAY) {
+                charge(MemoryAccounting.REFERENCE);
+            }
+            super.visitTypeInsn(opcode, type);
+            if (opcode == Opcodes.NEW) {
+                // After, as stack map frames refer to the NEW instruction of uninitialized objects.
+                // Stack: [uninitialized] -> [uninitialized]
+                super.visitLdcInsn(type);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, SIMULATOR, "allocateObject", "(Ljava/lang/String;)V", false);
+            }
+        }
+
+        private void charge(int width) {
+            super.visitIntInsn(Opcodes.BIPUSH, width);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, SIMULATOR, "allocateArray", "(II)I", false);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import pro.javacard.engine.AppletProfile;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Inserts profiling probes into applet classes (see Simulator.profiled()): one at the entry of every
+// method, one at the start of every basic block and one before every call into the Java Card API. A probe
+// is a call to AppletProfiler.hit(id), with the id taken from AppletProfiler.probe() at transformation
+// time. Ids are only valid within the process, so profiled classes are never cached on disk.
+final class ProfilingTransformer extends ClassVisitor {
+    static final String PROFILER = AppletProfiler.class.getName().replace('.', '/');
+
+    private String owner;
+
+    ProfilingTransformer(ClassVisitor cv) {
+        super(Opcodes.ASM9, cv);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        owner = name;
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+        if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+            return next;
+        }
+        return new MethodNode(Opcodes.ASM9, access, name, descriptor, signature, exceptions) {
+            @Override
+            public void visitEnd() {
+                instrument(this);
+                accept(next);
+            }
+        };
+    }
+
+    static boolean isAPI(String owner) {
+        return owner.startsWith("javacard/") || owner.startsWith("javacardx/") || owner.startsWith("org/globalplatform/");
+    }
+
+    private void instrument(MethodNode method) {
+        String where = owner.replace('/', '.') + "." + method.name + method.desc;
+        Set<LabelNode> targets = targets(method);
+
+        int line = -1;
+        int block = 0;
+        boolean leader = true;
+        AbstractInsnNode insn = method.instructions.getFirst();
+        method.instructions.insert(probe(AppletProfiler.probe(AppletProfile.Kind.METHOD, where)));
+        while (insn != null) {
+            AbstractInsnNode next = insn.getNext();
+            if (insn instanceof LineNumberNode) {
+                line = ((LineNumberNode) insn).line;
+            } else if (insn instanceof LabelNode) {
+                leader |= targets.contains(insn);
+            } else if (insn.getOpcode() >= 0) {
+                if (leader) {
+                    String name = where + " #" + block++ + (line >= 0 ? " line " + line : "");
+                    insertAtLeader(method, insn, targets, probe(AppletProfiler.probe(AppletProfile.Kind.BLOCK, name)));
+                    leader = false;
+                }
+                if (insn instanceof MethodInsnNode && isAPI(((MethodInsnNode) insn).owner)) {
+                    MethodInsnNode call = (MethodInsnNode) insn;
+                    String name = call.owner.replace('/', '.') + "." + call.name + call.desc;
+                    method.instructions.insertBefore(insn, probe(AppletProfiler.probe(AppletProfile.Kind.API, name)));
+                }
+                leader = isBranch(insn);
+            }
+            insn = next;
+        }
+    }
+
+    // Basic blocks start at branch targets and handlers, and after branches
+    static Set<LabelNode> targets(MethodNode method) {
+        Set<LabelNode> targets = new HashSet<>();
+        for (TryCatchBlockNode tcb : method.tryCatchBlocks) {
+            targets.add(tcb.handler);
+        }
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof JumpInsnNode) {
+                targets.add(((JumpInsnNode) insn).label);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                targets.add(((TableSwitchInsnNode) insn).dflt);
+                targets.addAll(((TableSwitchInsnNode) insn).labels);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                targets.add(((LookupSwitchInsnNode) insn).dflt);
+                targets.addAll(((LookupSwitchInsnNode) insn).labels);
+            }
+        }
+        return targets;
+    }
+
+    // Inserts code at the start of the block of a leader instruction: after the branch target label and its
+    // frame, but before other labels, as a label right before a NEW marks the uninitialized values of frames.
+    // If the NEW itself is a branch target, the frames get a new label for it.
+    static void insertAtLeader(MethodNode method, AbstractInsnNode insn, Set<LabelNode> targets, InsnList code) {
+        AbstractInsnNode at = insn;
+        for (AbstractInsnNode p = insn.getPrevious(); p != null && p.getOpcode() < 0 && !(p instanceof FrameNode) && !targets.contains(p); p = p.getPrevious()) {
+            at = p;
+        }
+        // Labels left before the code do no longer mark a NEW
+        Set<LabelNode> moved = new HashSet<>();
+        for (AbstractInsnNode p = at.getPrevious(); insn.getOpcode() == Opcodes.NEW && p != null && p.getOpcode() < 0; p = p.getPrevious()) {
+            if (p instanceof LabelNode) {
+                moved.add((LabelNode) p);
+            }
+        }
+        method.instructions.insertBefore(at, code);
+        if (!moved.isEmpty()) {
+            LabelNode label = new LabelNode();
+            method.instructions.insertBefore(insn, label);
+            for (AbstractInsnNode n : method.instructions) {
+                if (n instanceof FrameNode) {
+                    FrameNode frame = (FrameNode) n;
+                    if (frame.local != null) {
+                        frame.local.replaceAll(v -> moved.contains(v) ? label : v);
+                    }
+                    if (frame.stack != null) {
+                        frame.stack.replaceAll(v -> moved.contains(v) ? label : v);
+                    }
+                }
+            }
+        }
+    }
+
+    static boolean isBranch(AbstractInsnNode insn) {
+        return insn instanceof JumpInsnNode || insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode;
+    }
+
+    private static InsnList probe(int id) {
+        InsnList list = new InsnList();
+        list.add(new LdcInsnNode(id));
+        list.add(new MethodInsnNode(Opcodes.INVOKESTATIC, PROFILER, "hit", Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE), false));
+        return list;
+    }
+}
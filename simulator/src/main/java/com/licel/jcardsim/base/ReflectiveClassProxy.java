@@ -17,6 +17,7 @@ package com.licel.jcardsim.base;
 
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.modifier.Visibility;
 import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.implementation.InvocationHandlerAdapter;
 import net.bytebuddy.matcher.ElementMatcher;
@@ -24,16 +25,26 @@ import net.bytebuddy.matcher.ElementMatchers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Utility class to provide similarly shaped instance for a class from a different classloader.
 // Used to access the isolated applet class via Applet superclass, including any known interfaces for "instanceof"
+// Proxy classes only depend on the shape (abstract class and visible interfaces), so they are generated once
+// and shared; the target is reached via a per-instance handler field. Proxy classes thus never refer to
+// isolated classes and do not keep their class loaders alive.
 public class ReflectiveClassProxy {
     private static final Logger log = LoggerFactory.getLogger(ReflectiveClassProxy.class);
 
+    private static final String HANDLER = "$handler";
+    // [abstract class, interfaces...] -> proxy class
+    private static final Map<List<Class<?>>, Class<?>> proxies = new ConcurrentHashMap<>();
+
     // Assumes the abstract class is shared between classloaders
     public static <T> T proxy(Object targetInstance, Class<T> abstractClass) throws Exception {
         if (!abstractClass.isAssignableFrom(targetInstance.getClass())) {
@@ -66,13 +77,43 @@ public class ReflectiveClassProxy {
             }
         }
 
+        List<Class<?>> shape = new ArrayList<>();
+        shape.add(abstractClass);
+        shape.addAll(visibleInterfaces);
+        Class<?> proxyClass = proxies.computeIfAbsent(shape, k -> make(abstractClass, visibleInterfaces));
+
+        Object proxy = proxyClass.getDeclaredConstructor().newInstance();
+        proxyClass.getField(HANDLER).set(proxy, handler(targetInstance));
+        return abstractClass.cast(proxy);
+    }
+
+    private static InvocationHandler handler(Object targetInstance) {
+        Class<?> targetClass = targetInstance.getClass();
+        return (proxy, method, args) -> {
+            try {
+                Method targetMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
+                return targetMethod.invoke(targetInstance, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause == null) {
+                    // Shouldn't happen, but be defensive
+                    throw e;
+                }
+                // re-throw the original exception
+                throw cause;
+            }
+        };
+    }
+
+    private static Class<?> make(Class<?> abstractClass, List<Class<?>> visibleInterfaces) {
+        log.debug("Generating proxy for {} with {}", abstractClass.getName(), visibleInterfaces);
         // Build method matcher for abstract class + all visible interfaces
         ElementMatcher.Junction<MethodDescription> methodMatcher = ElementMatchers.isDeclaredBy(abstractClass);
         for (Class<?> iface : visibleInterfaces) {
             methodMatcher = methodMatcher.or(ElementMatchers.isDeclaredBy(iface));
         }
 
-        DynamicType.Builder<? extends T> builder = new ByteBuddy()
+        DynamicType.Builder<?> builder = new ByteBuddy()
                 .subclass(abstractClass);
 
         // WHAT: Dynamically implement all visible interfaces
@@ -81,29 +122,14 @@ public class ReflectiveClassProxy {
             builder = builder.implement(visibleInterfaces.toArray(new Class<?>[0]));
         }
 
-        Class<? extends T> proxyClass = builder
+        return builder
+                .defineField(HANDLER, InvocationHandler.class, Visibility.PUBLIC)
                 .method(methodMatcher)
                 // WHAT: Intercept methods from abstract class + all implemented interfaces
                 // WHY: All interface methods need to be delegated to the target instance
-
-                .intercept(InvocationHandlerAdapter.of((proxy, method, args) -> {
-                    try {
-                        Method targetMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
-                        return targetMethod.invoke(targetInstance, args);
-                    } catch (InvocationTargetException e) {
-                        Throwable cause = e.getCause();
-                        if (cause == null) {
-                            // Shouldn't happen, but be defensive
-                            throw e;
-                        }
-                        // re-throw the original exception
-                        throw cause;
-                    }
-                }))
+                .intercept(InvocationHandlerAdapter.toField(HANDLER))
                 .make()
                 .load(abstractClass.getClassLoader())
                 .getLoaded();
-
-        return proxyClass.getDeclaredConstructor().newInstance();
     }
 }
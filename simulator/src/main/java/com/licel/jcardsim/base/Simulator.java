@@ -23,28 +23,41 @@ import javacardx.apdu.ExtendedLength;
 import org.bouncycastle.util.encoders.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pro.javacard.engine.AppletCoverage;
+import pro.javacard.engine.AppletProfile;
+import pro.javacard.engine.CostModel;
+import pro.javacard.engine.CostReport;
 import pro.javacard.engine.EngineSession;
 import pro.javacard.engine.JavaCardEngine;
 import pro.javacard.engine.JavaCardEngineException;
+import pro.javacard.engine.MemoryFootprint;
 import pro.javacard.engine.globalplatform.GlobalPlatform;
 import pro.javacard.engine.globalplatform.GlobalPlatformApplet;
-
+import pro.javacard.engine.jfr.AppletDeleteEvent;
+import pro.javacard.engine.jfr.AppletInstallEvent;
+import pro.javacard.engine.jfr.DeselectEvent;
+import pro.javacard.engine.jfr.SelectEvent;
+import pro.javacard.engine.jfr.TransactionEvent;
+import pro.javacard.engine.trace.APDUTrace;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Simulates a JavaCard. This is the _external_ view of the simulated environment, and all external
  * manipulation MUST happen via these interfaces. Each Simulator is independent (like a single secure element)
  */
 public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime {
-    static {
-        System.setProperty("org.bouncycastle.rsa.no_lenstra_check", "true");
-    }
-
     private static final Logger log = LoggerFactory.getLogger(Simulator.class);
 
     // default ATR - dummy minimal
@@ -58,6 +71,11 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
     // Isolates loaded applet classes to this simulator instance
     private IsolatingClassLoader classLoader = new IsolatingClassLoader(getClass().getClassLoader());
+    private ClassLoader parentLoader = getClass().getClassLoader();
+    // True if applet classes are shared with other engines, with statics kept in this engine
+    private volatile boolean shared = false;
+    // Holders of virtualized static fields, indexed by StaticFields
+    Object[] statics = new Object[0];
 
     // Used to keep track of the installation parameters during install()/register() callbacks
     private static final ThreadLocal<RegisterCallbackOptions> options = new ThreadLocal<>();
@@ -71,13 +89,13 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     final Thread creator = Thread.currentThread();
 
     // True if all applets all the time should be installed in exposed mode.
-    private boolean exposed = false;
+    private volatile boolean exposed = false;
 
     // Installed applets. TODO: ApplicationInstance to GPRegistryEntry
     protected final SortedMap<AID, ApplicationInstance> applets = new TreeMap<>(AIDUtil.comparator());
 
-    // Outbound transfer buffer
-    protected final byte[] responseBuffer = new byte[Short.MAX_VALUE + 2];
+    // Outbound transfer buffer. Dropped on close()
+    protected byte[] responseBuffer = new byte[Short.MAX_VALUE + 2];
     // Outbound transfer buffer length
     protected short responseBufferSize = 0;
 
@@ -94,17 +112,49 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     // Previously selected applet context stack
     protected final Deque<AID> contextStack = new ArrayDeque<>();
 
+    // Firewalls of server applets that have handed out Shareable objects
+    private final Map<AID, Firewall> firewalls = new TreeMap<>(AIDUtil.comparator());
+
     // If applet selection is ongoing - FIXME: refactor
     protected boolean selecting = false;
 
     // transaction depth
     protected byte transactionDepth = 0;
+    // Open transaction, if recorded by JFR
+    private TransactionEvent transaction;
+
+    // Memory used by contexts and limits of the card
+    private final MemoryAccounting memory;
+    // Applet being installed, owns the memory allocated by install()
+    private AID installing;
+
+    // Optional asynchronous APDU trace, recorded by sessions
+    APDUTrace trace;
 
-    // Number of allocated bytes
-    int bytesAllocated;
+    // Counters of profiled applet classes, if enabled
+    AppletProfiler profiler;
+
+    // Estimates of on-card durations, if enabled
+    CostMeter costs;
+
+    // Coverage probes are kept by the class loader
+    private volatile boolean covered = false;
+
+    // Optional counters, recorded by sessions, and their MBean name
+    EngineMetrics metrics;
+    private ObjectName mbean;
+
+    // Set by close(), checked by commands of sessions that are still open
+    private volatile boolean closed = false;
+    // Set under lock, when applets and classes of a closed engine have been forgotten
+    private boolean forgotten = false;
+
+    // Set by reloadApplets() while a session is open, reload happens before the next command
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
 
     public Simulator() throws RuntimeException {
-        this.transientMemory = new TransientMemory();
+        this.memory = new MemoryAccounting(this::context);
+        this.transientMemory = new TransientMemory(memory);
         this.globalPlatform = new GlobalPlatform();
         this.currentAPDU = new CurrentAPDU();
     }
@@ -143,6 +193,16 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         return currentInstance;
     }
 
+    // Like current(), but null if there is no current engine
+    static Simulator currentOrNull() {
+        return currentSimulator.get();
+    }
+
+    // Context that owns allocated memory
+    private AID context() {
+        return installing != null ? installing : currentAID;
+    }
+
     @Override
     public AID installApplet(AID aid, Class<? extends Applet> appletClass, byte[] parameters) throws SystemException {
         if (creator != Thread.currentThread()) {
@@ -167,7 +227,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
     public byte[] getATR() {
         // FIXME: remove from this layer unless GPSystem.setATRHistBytes gets implemented
-        return Hex.decode(DEFAULT_ATR);
+        return ByteUtil.byteArray(DEFAULT_ATR);
     }
 
     /**
@@ -204,7 +264,9 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
      * @return ApplicationInstance or null
      */
     public ApplicationInstance lookupApplet(AID lookupAid) {
-        log.trace("Searching registry for {}", lookupAid == null ? null : AIDUtil.toString(lookupAid));
+        if (log.isTraceEnabled()) {
+            log.trace("Searching registry for {}", lookupAid == null ? null : AIDUtil.toString(lookupAid));
+        }
         // To return the "JC owned" AID instance.
         for (AID aid : applets.keySet()) {
             if (aid.equals(lookupAid)) {
@@ -243,6 +305,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
     public void internalDeleteApplet(AID aid) {
         log.info("Deleting applet {}", AIDUtil.toString(aid));
+        AppletDeleteEvent event = AppletDeleteEvent.start();
         ApplicationInstance app = lookupApplet(aid);
 
         if (app == null) {
@@ -262,12 +325,73 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
             } catch (Exception e) {
                 // Exceptions thrown by this method are caught by the Java Card runtime environment and ignored.
                 applets.remove(aid);
+                firewalls.remove(aid);
+                releaseMemory(aid);
+                releaseClasses();
+                if (event != null) {
+                    event.finish(AIDUtil.toString(aid));
+                }
                 // We delete it, but still throw, so that JavaCardEngine.deleteApplet() could be used for testing
                 throw new JavaCardEngineException("uninstall() failed", e);
             }
         }
         applets.remove(aid);
+        firewalls.remove(aid);
+        releaseMemory(aid);
         currentAID = null;
+        releaseClasses();
+        if (event != null) {
+            event.finish(AIDUtil.toString(aid));
+        }
+    }
+
+    // Deletes all instances of the package and the package itself. Returns false if package is not known
+    @Override
+    public boolean internalDeletePackage(AID packageAid) {
+        String pkg = globalPlatform.unloadPackage(packageAid);
+        if (pkg == null) {
+            return false;
+        }
+        log.info("Deleting package {}", pkg);
+        for (ApplicationInstance app : new ArrayList<>(applets.values())) {
+            if (app.getInstanceClass().getPackageName().equals(pkg)) {
+                try {
+                    internalDeleteApplet(app.getAID());
+                } catch (JavaCardEngineException e) {
+                    log.warn("Deleted {} with error: {}", app.getID(), e.getMessage());
+                }
+            }
+        }
+        // Statics of shared classes from the package
+        for (int i = 0; i < statics.length; i++) {
+            if (statics[i] != null && statics[i].getClass().getPackageName().equals(pkg)) {
+                statics[i] = null;
+            }
+        }
+        return true;
+    }
+
+    // Memory of a deleted applet, or of one that did not register, in the accounting and in the transient totals
+    private void releaseMemory(AID aid) {
+        MemoryFootprint.Usage released = memory.release(aid);
+        if (released != null) {
+            transientMemory.release(released.getTransientReset(), released.getTransientDeselect());
+        }
+    }
+
+    // Applet classes can only be unloaded together with their class loader. Once no isolated applet
+    // instances are left, switch to a fresh loader, so that the old one and its classes can be collected.
+    private void releaseClasses() {
+        if (shared || !classLoader.hasClasses()) {
+            return;
+        }
+        for (ApplicationInstance app : applets.values()) {
+            if (app.getInstanceClass().getClassLoader() == classLoader) {
+                return;
+            }
+        }
+        log.debug("Releasing applet classes of {}", System.identityHashCode(this));
+        classLoader = classLoader.renew();
     }
 
     /**
@@ -322,9 +446,20 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     }
 
     byte[] _transmitCommand(byte protocol, byte[] command) throws SystemException {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
         _makeCurrent();
         try {
-            log.trace("APDU: {}", Hex.toHexString(command));
+            if (reloadPending.get()) {
+                reload();
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("APDU: {}", Hex.toHexString(command));
+            }
+            if (profiler != null) {
+                profiler.apdu(command);
+            }
             final int apduCase = APDUHelper.getAPDUCase(command);
             final byte[] theSW = new byte[2];
             byte[] response;
@@ -334,9 +469,13 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
             final AID newAid;
             // check if there is an applet to be selected
             if (!APDUHelper.isExtendedAPDU(apduCase) && isAppletSelectionApdu(command)) {
-                log.trace("Current AID {}, looking up applet ...", currentAID == null ? null : AIDUtil.toString(currentAID));
+                if (log.isTraceEnabled()) {
+                    log.trace("Current AID {}, looking up applet ...", currentAID == null ? null : AIDUtil.toString(currentAID));
+                }
                 newAid = findAppletForSelectApdu(command, apduCase);
-                log.trace("Found {}", newAid == null ? null : AIDUtil.toString(newAid));
+                if (log.isTraceEnabled()) {
+                    log.trace("Found {}", newAid == null ? null : AIDUtil.toString(newAid));
+                }
                 // Nothing currently selected
                 if (currentAID == null) {
                     // No applet found
@@ -382,13 +521,22 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
             try {
                 if (selecting) {
                     currentAID = newAid; // so that JCSystem.getAID() would return the right thing
-                    log.trace("Calling Applet.select() of {}", AIDUtil.toString(currentAID));
+                    if (log.isTraceEnabled()) {
+                        log.trace("Calling Applet.select() of {}", AIDUtil.toString(currentAID));
+                    }
                     boolean success;
+                    SelectEvent event = SelectEvent.start();
+                    appletCode(true);
                     try {
                         success = applet.select();
                     } catch (Exception e) {
                         log_exception(e, "Exception in Applet.select()");
                         success = false;
+                    } finally {
+                        appletCode(false);
+                    }
+                    if (event != null) {
+                        event.finish(AIDUtil.toString(currentAID), success);
                     }
                     if (!success) {
                         log.warn("{} denied selection in Applet.select()", AIDUtil.toString(currentAID));
@@ -400,6 +548,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
                     }
                 }
                 currentAPDU.reset(protocol, command);
+                appletCode(true);
                 applet.process(apdu);
                 Util.setShort(theSW, (short) 0, (short) 0x9000);
             } catch (Throwable e) {
@@ -410,6 +559,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
                     log_exception(e, "Exception in process()");
                 }
             } finally {
+                appletCode(false);
                 selecting = false;
                 currentAPDU.disable(); // APDU.getCurrentAPDU() will not be available
             }
@@ -425,6 +575,9 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
             return response;
         } finally {
+            if (profiler != null) {
+                profiler.done();
+            }
             _releaseCurrent();
         }
     }
@@ -467,7 +620,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     protected AID findAppletForSelectApdu(byte[] selectApdu, int apduCase) {
         if (apduCase == APDUHelper.CASE1 || apduCase == APDUHelper.CASE2) {
             if (applets.containsKey(GlobalPlatformApplet.OPEN_AID)) {
-                log.info("Selecting OPEN");
+                log.debug("Selecting OPEN");
                 return GlobalPlatformApplet.OPEN_AID;
             } else {
                 return null;
@@ -476,14 +629,18 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
         for (AID aid : applets.keySet()) {
             if (aid.equals(selectApdu, ISO7816.OFFSET_CDATA, selectApdu[ISO7816.OFFSET_LC])) {
-                log.trace("Selecting {} based on full AID match", AIDUtil.toString(aid));
+                if (log.isTraceEnabled()) {
+                    log.trace("Selecting {} based on full AID match", AIDUtil.toString(aid));
+                }
                 return aid;
             }
         }
 
         for (AID aid : applets.keySet()) {
             if (aid.partialEquals(selectApdu, ISO7816.OFFSET_CDATA, selectApdu[ISO7816.OFFSET_LC])) {
-                log.trace("Selecting {} based on partial AID match", AIDUtil.toString(aid));
+                if (log.isTraceEnabled()) {
+                    log.trace("Selecting {} based on partial AID match", AIDUtil.toString(aid));
+                }
                 return aid;
             }
         }
@@ -491,14 +648,28 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         return null;
     }
 
+    // Costs of the API implementation are charged only while applet code runs, not for the engine itself
+    private void appletCode(boolean flag) {
+        if (costs != null) {
+            costs.inApplet = flag;
+        }
+    }
+
     private void deselect(ApplicationInstance app) {
-        log.trace("Applet.deselect(): {}", AIDUtil.toString(app.getAID()));
+        log.trace("Applet.deselect(): {}", app.getID());
+        DeselectEvent event = DeselectEvent.start();
+        appletCode(true);
         try {
             Applet applet = app.getApplet();
             applet.deselect();
         } catch (Exception e) {
             log_exception(e, "Exception in Applet.deselect()");
             // ignore all
+        } finally {
+            appletCode(false);
+        }
+        if (event != null) {
+            event.finish(app.getID());
         }
 
         currentAID = null;
@@ -519,7 +690,9 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     @Override
     public void sendAPDU(byte[] buffer, short bOff, short len) {
         // FIXME: assumptions on APDU buffer size.
-        responseBufferSize = Util.arrayCopyNonAtomic(buffer, bOff, responseBuffer, responseBufferSize, len);
+        // Not charged to the cost model as a Util copy of the applet
+        System.arraycopy(buffer, bOff, responseBuffer, responseBufferSize, len);
+        responseBufferSize += len;
     }
 
     /**
@@ -531,6 +704,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         //lock.acquireUninterruptibly();
         Arrays.fill(responseBuffer, (byte) 0);
         transactionDepth = 0;
+        transaction = null;
         responseBufferSize = 0;
         currentAID = null;
         contextStack.clear();
@@ -564,6 +738,15 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
             TransactionException.throwIt(TransactionException.IN_PROGRESS);
         }
         transactionDepth = 1;
+        transaction = TransactionEvent.start();
+    }
+
+    private void endTransaction(String outcome) {
+        transactionDepth = 0;
+        if (transaction != null) {
+            transaction.finish(currentAID == null ? null : AIDUtil.toString(currentAID), outcome);
+            transaction = null;
+        }
     }
 
     /**
@@ -574,7 +757,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         if (transactionDepth == 0) {
             TransactionException.throwIt(TransactionException.NOT_IN_PROGRESS);
         }
-        transactionDepth = 0;
+        endTransaction(TransactionEvent.ABORT);
     }
 
     /**
@@ -585,7 +768,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         if (transactionDepth == 0) {
             TransactionException.throwIt(TransactionException.NOT_IN_PROGRESS);
         }
-        transactionDepth = 0;
+        endTransaction(TransactionEvent.COMMIT);
     }
 
     /**
@@ -616,12 +799,12 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     }
 
     /**
-     * @return The current implementation always returns 32767
+     * @return Available persistent memory, or 32767 if not limited (see withMemoryLimits())
      * @see javacard.framework.JCSystem#getAvailableMemory(byte)
      */
     @Override
     public short getAvailablePersistentMemory() {
-        return Short.MAX_VALUE;
+        return memory.availablePersistent();
     }
 
     /**
@@ -632,7 +815,9 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
      */
     @Override
     public Shareable getSharedObject(AID serverAID, byte parameter) {
-        log.info("Getting Shareable from {} in {}", AIDUtil.toString(serverAID), System.identityHashCode(this));
+        if (log.isDebugEnabled()) {
+            log.debug("Getting Shareable from {} in {}", AIDUtil.toString(serverAID), System.identityHashCode(this));
+        }
         Applet serverApplet = getApplet(serverAID);
         if (serverApplet == null) {
             log.warn("Did not find server AID {} in {}", AIDUtil.toString(serverAID), System.identityHashCode(this));
@@ -644,7 +829,11 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
             return null;
         }
         // Wrap in context pusher
-        return new Firewall(serverAID, () -> currentAID, n -> currentAID = n, contextStack,  shareable).getShareable();
+        return gate(serverAID, shareable);
+    }
+
+    Shareable gate(AID serverAID, Shareable shareable) {
+        return firewalls.computeIfAbsent(serverAID, a -> new Firewall(this, a)).wrap(shareable);
     }
 
     /**
@@ -678,6 +867,7 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
     @Override
     public AID internalInstallApplet(AID appletAID, Class<? extends Applet> appletClass, byte[] privileges, byte[] parameters, boolean exposed) {
+        AppletInstallEvent event = AppletInstallEvent.start();
         final Class<?> klass;
 
         if (exposed) {
@@ -719,6 +909,8 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         options.set(new RegisterCallbackOptions(appletAID, exposed));
 
         // Call the install() method.
+        AID previous = installing;
+        installing = appletAID;
         try {
             installMethod.invoke(null, install_parameters, (short) 0, (byte) install_parameters.length);
         } catch (InvocationTargetException e) {
@@ -731,15 +923,27 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
         } catch (Exception e) {
             log.error("Error installing applet " + AIDUtil.toString(appletAID), e);
             throw new SystemException(SystemException.ILLEGAL_AID);
+        } finally {
+            // Nothing is left of an instance that did not register
+            if (!applets.containsKey(installing)) {
+                releaseMemory(installing);
+            }
+            installing = previous;
         }
         if (options.get() != null) {
             log.error("install() did not call register()");
             throw new JavaCardEngineException("install() did not call register()");
         }
+        if (event != null) {
+            event.finish(AIDUtil.toString(appletAID), klass, exposed);
+        }
         return appletAID;
     }
 
     private AID installApplet(AID appletAID, Class<? extends Applet> appletClass, byte[] parameters, boolean exposed) {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
         _makeCurrent();
         try {
             // If there is a currently selected applet, deselect it. installApplet is like implicit selection of card manager
@@ -778,6 +982,8 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
             AID actual = new AID(buffer, offset, len);
             if (options.get() == null || applets.containsKey(actual))
                 SystemException.throwIt(SystemException.ILLEGAL_AID);
+            memory.move(options.get().aid, actual);
+            installing = actual;
             log.info("Registering {} as {} in {}", instance.getClass().getName(), AIDUtil.toString(actual), System.identityHashCode(this));
             applets.put(actual, new ApplicationInstance(actual, instance, options.get().exposed));
         } finally {
@@ -787,12 +993,33 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
     // Intercepted from bytecode
     public static byte[] allocate(int size) {
-        Simulator current = (Simulator) Simulator.current(); // XXX: shortcut
-        current.bytesAllocated += size;
-        log.trace("Allocating {} bytes in {}; total is {}", size, System.identityHashCode(current), current.bytesAllocated);
+        Simulator current = currentOrNull();
+        if (current != null && size > 0) {
+            current.memory.array(size);
+            if (log.isTraceEnabled()) {
+                log.trace("Allocating {} bytes in {}; total is {}", size, System.identityHashCode(current), current.memory.getPersistent());
+            }
+        }
         return new byte[size];
     }
 
+    // Intercepted from bytecode before other "new T[length]", with the size of an element. Returns the length.
+    public static int allocateArray(int length, int width) {
+        Simulator current = currentOrNull();
+        if (current != null && length > 0) {
+            current.memory.array((long) length * width);
+        }
+        return length;
+    }
+
+    // Intercepted from bytecode after "new", with the internal name of the class
+    public static void allocateObject(String name) {
+        Simulator current = currentOrNull();
+        if (current != null) {
+            current.memory.object(current.classLoader, name);
+        }
+    }
+
     // Indicate packages to include in isolated classloader
     public Simulator isolate(String... packageNames) {
         classLoader.isolate(packageNames);
@@ -811,13 +1038,16 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
     }
 
     public void memstat() {
-        log.info("Persistent         {}", bytesAllocated);
+        log.info("Persistent         {}", memory.getPersistent());
         log.info("CLEAR_ON_RESET:    {}", transientMemory.getSumCOR());
         log.info("CLEAR_ON_DESELECT: {}", transientMemory.getSumCOD());
     }
 
     @Override
     public EngineSession connectFor(Duration timeout, String protocol) {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
         log.info("Connecting for {} with {}", timeout, protocol);
         return new SimulatorSession(this, protocol, timeout);
     }
@@ -830,7 +1060,268 @@ public class Simulator implements CardInterface, JavaCardEngine, JavaCardRuntime
 
     @Override
     public JavaCardEngine withClassLoader(ClassLoader loader) {
-        this.classLoader = new IsolatingClassLoader(loader);
+        if (shared && profiler != null) {
+            throw new IllegalStateException("Shared classes can not be profiled");
+        }
+        if (shared && covered) {
+            throw new IllegalStateException("Shared classes can not be covered");
+        }
+        if (shared && costs != null && costs.getModel().hasBytecodeCost()) {
+            throw new IllegalStateException("Shared classes can not be instrumented");
+        }
+        this.parentLoader = loader;
+        this.classLoader = shared ? IsolatingClassLoader.shared(loader) : new IsolatingClassLoader(loader);
+        classLoader.profile(profiler != null);
+        classLoader.countInstructions(costs != null && costs.getModel().hasBytecodeCost());
+        classLoader.cover(covered);
+        return this;
+    }
+
+    @Override
+    public JavaCardEngine profiled(boolean flag) {
+        if (classLoader.hasClasses()) {
+            throw new IllegalStateException("Profiling must be enabled before installing applets");
+        }
+        classLoader.profile(flag);
+        profiler = flag ? new AppletProfiler() : null;
+        return this;
+    }
+
+    @Override
+    public AppletProfile getProfile() {
+        if (profiler == null) {
+            throw new IllegalStateException("Profiling is not enabled");
+        }
+        return profiler.snapshot();
+    }
+
+    @Override
+    public void resetProfile() {
+        if (profiler != null) {
+            profiler.reset();
+        }
+    }
+
+    @Override
+    public JavaCardEngine covered(boolean flag) {
+        if (classLoader.hasClasses()) {
+            throw new IllegalStateException("Coverage must be enabled before installing applets");
+        }
+        classLoader.cover(flag);
+        covered = flag;
+        return this;
+    }
+
+    @Override
+    public AppletCoverage getCoverage() {
+        if (!covered) {
+            throw new IllegalStateException("Coverage is not enabled");
+        }
+        return CoverageProbes.snapshot(classLoader.coverage().values());
+    }
+
+    @Override
+    public void resetCoverage() {
+        classLoader.coverage().values().forEach(CoverageProbes.ClassInfo::reset);
+    }
+
+    @Override
+    public JavaCardEngine withMemoryLimits(int persistent, int transientMemory) {
+        memory.limit(persistent, transientMemory);
+        return this;
+    }
+
+    @Override
+    public MemoryFootprint getMemoryFootprint() {
+        return memory.snapshot();
+    }
+
+    @Override
+    public JavaCardEngine withCostModel(CostModel model) {
+        boolean count = model != null && model.hasBytecodeCost();
+        if (count != (costs != null && costs.getModel().hasBytecodeCost()) && classLoader.hasClasses()) {
+            throw new IllegalStateException("Cost model with bytecode costs must be set before installing applets");
+        }
+        classLoader.countInstructions(count);
+        costs = model == null ? null : new CostMeter(model);
+        return this;
+    }
+
+    @Override
+    public CostReport getCostReport() {
+        if (costs == null) {
+            throw new IllegalStateException("Cost model is not set");
+        }
+        return costs.snapshot();
+    }
+
+    // Loads applet classes again, into a fresh class loader, and moves installed instances over to the new
+    // classes (see InstanceMigrator). Instances with an incompatible layout keep running the old classes.
+    // With an open session, the reload happens before the next command of the session.
+    @Override
+    public void reloadApplets() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+        if (shared) {
+            throw new IllegalStateException("Applets can not be reloaded with shared classes");
+        }
+        if (!lock.tryAcquire()) {
+            log.info("Reloading applets of {} before the next command", System.identityHashCode(this));
+            reloadPending.set(true);
+            return;
+        }
+        Simulator previous = currentSimulator.get();
+        _makeCurrent(); // Class initializers can call into the runtime
+        try {
+            reload();
+        } finally {
+            if (previous == null) {
+                _releaseCurrent();
+            } else {
+                previous._makeCurrent();
+            }
+            unlock();
+        }
+    }
+
+    private void reload() {
+        reloadPending.set(false);
+        IsolatingClassLoader old = classLoader;
+        if (!old.hasClasses()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // Changed classes are read again from the parent
+        TransformedClassCache.forget(parentLoader);
+        IsolatingClassLoader fresh = old.renew();
+        firewalls.clear();
+        InstanceMigrator migrator = new InstanceMigrator(old, fresh, Firewall::migrate);
+        List<String> reloaded = new ArrayList<>();
+        for (Map.Entry<AID, ApplicationInstance> entry : applets.entrySet()) {
+            ApplicationInstance app = entry.getValue();
+            if (app.isExposed() || app.getInstanceClass().getClassLoader() != old) {
+                continue;
+            }
+            try {
+                Object instance = migrator.migrate(app.getInstance());
+                migrator.commit();
+                entry.setValue(new ApplicationInstance(app.getAID(), instance, false));
+                reloaded.add(app.getID());
+            } catch (InstanceMigrator.IncompatibleLayoutException e) {
+                migrator.rollback();
+                log.warn("{} keeps running old classes, install again to use new ones: {}", app.getID(), e.getMessage());
+            }
+        }
+        for (String name : old.definedClasses()) {
+            try {
+                migrator.migrateStatics(name);
+            } catch (InstanceMigrator.IncompatibleLayoutException e) {
+                log.warn("Could not reload {}: {}", name, e.getMessage());
+            }
+        }
+        classLoader = fresh;
+        log.info("Reloaded {} in {} ms", reloaded, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Forget applets, transient memory, static fields and applet classes. Applet code is not called.
+    // With an active session, a command can be in progress, so this happens when the session is closed.
+    @Override
+    public void close() {
+        closed = true;
+        if (!lock.tryAcquire()) {
+            log.warn("Closing engine with an active session, when the session is closed");
+            return;
+        }
+        try {
+            forget();
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Releases the lock taken by a session or reload. If the engine has been closed, whoever releases
+    // the lock last forgets the applets.
+    void unlock() {
+        lock.release();
+        if (closed && lock.tryAcquire()) {
+            try {
+                forget();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private void forget() {
+        if (forgotten) {
+            return;
+        }
+        forgotten = true;
+        log.debug("Closing {}", System.identityHashCode(this));
+        applets.clear();
+        firewalls.clear();
+        contextStack.clear();
+        currentAID = null;
+        transientMemory.forgetBuffers();
+        statics = new Object[0];
+        responseBuffer = new byte[0];
+        responseBufferSize = 0;
+        trace = null;
+        unregister();
+        if (!shared) {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                log.warn("Could not close class loader: {}", e.getMessage());
+            }
+            // Do not keep applet classes reachable, even if the engine itself is
+            classLoader = new IsolatingClassLoader(parentLoader);
+        }
+    }
+
+    @Override
+    public JavaCardEngine shared(boolean flag) {
+        this.shared = flag;
+        return withClassLoader(parentLoader);
+    }
+
+    @Override
+    public JavaCardEngine withTrace(APDUTrace trace) {
+        this.trace = trace;
         return this;
     }
+
+    @Override
+    public JavaCardEngine withMBean(String name) {
+        final ObjectName objectName;
+        try {
+            objectName = new ObjectName("pro.javacard.engine:type=Engine,name=" + name);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + name, e);
+        }
+        EngineMetrics m = metrics == null ? new EngineMetrics() : metrics;
+        // The same MXBean object can be registered only once, so the previous name goes first
+        unregister();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(m, objectName);
+        } catch (JMException e) {
+            throw new JavaCardEngineException("Could not register MBean " + objectName + ": " + e.getMessage(), e);
+        }
+        mbean = objectName;
+        metrics = m;
+        return this;
+    }
+
+    private void unregister() {
+        if (mbean == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbean);
+        } catch (JMException e) {
+            log.warn("Could not unregister {}: {}", mbean, e.getMessage());
+        }
+        mbean = null;
+    }
 }
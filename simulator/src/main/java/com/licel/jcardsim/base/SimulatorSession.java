@@ -15,65 +15,58 @@
  */
 package com.licel.jcardsim.base;
 
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.jfr.APDUEvent;
+import pro.javacard.engine.trace.APDUTrace;
 
 import java.time.Duration;
-import java.util.concurrent.*;
+import java.util.Optional;
 
 // Session object lifetime guards the held lock for the simulator
 public class SimulatorSession implements EngineSession {
     private static final Logger log = LoggerFactory.getLogger(SimulatorSession.class);
 
-    // XXX: opportunistic locking requires timed release.
-    static ThreadFactory namedThreadFactory = r -> {
-        // I like my threads with nice names.
-        Thread t = new Thread(r, "IdleWatchdog");
-        t.setDaemon(true); // not blocking shutdown
-        return t;
-    };
-    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(namedThreadFactory);
-    private final Duration idleTimeout;
     private volatile boolean closed = false;
-    private volatile ScheduledFuture<Void> timeoutTask; // associated with this
+    // Idle timeout is enforced by IdleWatchdog, based on the last activity
+    final long idleNanos;
+    volatile long lastActivity;
 
     // The useful fields
     private final Simulator simulator;
     private final String protocol;
     private final byte protocol_byte;
     final Thread owner;
+    // Estimated on-card duration of the last command, if the engine has a cost model
+    private volatile long estimated = -1;
 
     SimulatorSession(Simulator simulator, String protocol, Duration timeout) {
         log.trace("Acquiring lock ...");
         this.simulator = simulator;
+        EngineMetrics metrics = simulator.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
         simulator.lock.acquireUninterruptibly();
-        idleTimeout = timeout;
-        if (!idleTimeout.isZero()) {
-            scheduleTimeout();
+        if (metrics != null) {
+            metrics.session(System.nanoTime() - start);
         }
+        idleNanos = timeout.toNanos();
         this.protocol = protocol;
         this.owner = Thread.currentThread();
         protocol_byte = APDUHelper.getProtocolByte(protocol);
-        log.trace("Locked");
-    }
-
-    private void scheduleTimeout() {
-        timeoutTask = scheduler.schedule(this::timeoutExpired, idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
-    }
-
-    private void refreshTimeout() {
-        if (timeoutTask != null) {
-            timeoutTask.cancel(false);
-            scheduleTimeout();
+        lastActivity = System.nanoTime();
+        if (!timeout.isZero()) {
+            IdleWatchdog.watch(this);
         }
+        log.trace("Locked");
     }
 
-    // Called by scheduler if there has been no APDU traffic for the timeout duration
-    private Void timeoutExpired() {
+    // Called by IdleWatchdog if there has been no APDU traffic for the timeout duration
+    void timeoutExpired() {
         log.info("Idle timeout, closing session for " + owner.getName());
         close(false);
-        return null;
     }
 
     @Override
@@ -86,7 +79,7 @@ public class SimulatorSession implements EngineSession {
         if (reset) {
             simulator.reset();
         }
-        simulator.lock.release();
+        simulator.unlock();
         log.trace("Unlocked");
     }
 
@@ -95,8 +88,30 @@ public class SimulatorSession implements EngineSession {
         if (closed) {
             throw new IllegalStateException("Session already closed");
         }
-        refreshTimeout(); // Extend for another period before auto-close
-        return simulator._transmitCommand(protocol_byte, commandAPDU);
+        long start = System.nanoTime();
+        lastActivity = start; // Extend for another period before auto-close
+        APDUEvent event = APDUEvent.start();
+        CostMeter costs = simulator.costs;
+        if (costs != null) {
+            costs.apdu();
+        }
+        byte[] response = simulator._transmitCommand(protocol_byte, commandAPDU);
+        if (costs != null) {
+            estimated = costs.done(commandAPDU, response);
+        }
+        if (event != null) {
+            AID aid = simulator.getAID();
+            event.finish(aid == null ? null : AIDUtil.toString(aid), commandAPDU, response);
+        }
+        EngineMetrics metrics = simulator.metrics;
+        if (metrics != null) {
+            metrics.record(commandAPDU, response, System.nanoTime() - start);
+        }
+        APDUTrace trace = simulator.trace;
+        if (trace != null) {
+            trace.record(commandAPDU, response);
+        }
+        return response;
     }
 
     @Override
@@ -107,6 +122,12 @@ public class SimulatorSession implements EngineSession {
         return protocol;
     }
 
+    @Override
+    public Optional<Duration> getEstimatedDuration() {
+        long nanos = estimated;
+        return nanos < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(nanos));
+    }
+
     @Override
     public boolean isClosed() {
         return closed;
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.objectweb.asm.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Moves static fields of isolated classes into per-engine holder objects, so that one loaded class
+// can be shared by many engines. For a class C with static fields, a holder class C$$Statics with the
+// same fields as public instance fields is generated. GETSTATIC/PUTSTATIC of such fields become
+// GETFIELD/PUTFIELD on the holder of the current engine, looked up with StaticFields.get(Class).
+// C.<clinit> is renamed to C.$clinit, which is run once per engine when its holder is created.
+//
+// Not virtualized: compile time constants (final with ConstantValue), the magic "jcardengine" field
+// and fields of interfaces (interfaces of old class versions can not have static methods).
+public class StaticFieldVirtualizer extends ClassVisitor {
+    // Bump when the transformation changes, as transformed bytes are cached
+    public static final String VERSION = "sfv1";
+    public static final String SUFFIX = "$$Statics";
+    static final String CLINIT = "$clinit";
+    static final String MAGIC = "jcardengine";
+
+    private static final String STATIC_FIELDS = Type.getInternalName(StaticFields.class);
+
+    // Static fields declared by a class, with their descriptors. Only virtualized fields are in virtual.
+    record Info(String superName, String[] interfaces, boolean isInterface, Map<String, String> statics, Map<String, String> virtual) {
+    }
+
+    interface Resolver {
+        // null if class can not be read
+        Info info(String internalName);
+
+        // True if class is loaded (and thus transformed) by the isolating class loader
+        boolean isolated(String internalName);
+    }
+
+    private final Resolver resolver;
+    private String className;
+    private boolean virtualClass;
+
+    public StaticFieldVirtualizer(ClassVisitor classVisitor, Resolver resolver) {
+        super(Opcodes.ASM9, classVisitor);
+        this.resolver = resolver;
+    }
+
+    static Info info(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        boolean isInterface = (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0;
+        Map<String, String> statics = new HashMap<>();
+        Map<String, String> virtual = new HashMap<>();
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                if ((access & Opcodes.ACC_STATIC) != 0) {
+                    statics.put(name, descriptor);
+                    boolean constant = (access & Opcodes.ACC_FINAL) != 0 && value != null;
+                    if (!isInterface && !constant && !name.equals(MAGIC)) {
+                        virtual.put(name, descriptor);
+                    }
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return new Info(reader.getSuperName(), reader.getInterfaces(), isInterface, statics, virtual);
+    }
+
+    // Generates the holder class for the class given as bytes
+    public static byte[] holder(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        Info info = info(classBytes);
+        String name = reader.getClassName() + SUFFIX;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, name, null, "java/lang/Object", null);
+        for (Map.Entry<String, String> f : info.virtual().entrySet()) {
+            cw.visitField(Opcodes.ACC_PUBLIC, f.getKey(), f.getValue(), null, null).visitEnd();
+        }
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        className = name;
+        Info info = resolver.info(name);
+        virtualClass = info != null && !info.virtual().isEmpty();
+        // ldc of a class constant needs 49+. Below 50 there are no stack map frames to worry about.
+        int major = version & 0xFFFF;
+        super.visit(major < Opcodes.V1_5 ? Opcodes.V1_5 : version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        boolean clinit = virtualClass && name.equals("<clinit>");
+        if (clinit) {
+            // Called per engine from StaticFields
+            name = CLINIT;
+            access = Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC;
+        }
+        return new StaticAccessVisitor(super.visitMethod(access, name, descriptor, signature, exceptions), clinit);
+    }
+
+    // Returns the class declaring the static field, following JVM field resolution
+    String declaring(String owner, String name) {
+        String current = owner;
+        while (current != null) {
+            Info info = resolver.info(current);
+            if (info == null) {
+                return null;
+            }
+            if (info.statics().containsKey(name)) {
+                return current;
+            }
+            String iface = declaringInterface(info.interfaces(), name);
+            if (iface != null) {
+                return iface;
+            }
+            current = info.superName();
+        }
+        return null;
+    }
+
+    private String declaringInterface(String[] interfaces, String name) {
+        for (String iface : interfaces) {
+            Info info = resolver.info(iface);
+            if (info == null) {
+                continue;
+            }
+            if (info.statics().containsKey(name)) {
+                return iface;
+            }
+            String parent = declaringInterface(info.interfaces(), name);
+            if (parent != null) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    private class StaticAccessVisitor extends MethodVisitor {
+        private final boolean clinit;
+
+        StaticAccessVisitor(MethodVisitor methodVisitor, boolean clinit) {
+            super(Opcodes.ASM9, methodVisitor);
+            this.clinit = clinit;
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            if (opcode != Opcodes.GETSTATIC && opcode != Opcodes.PUTSTATIC) {
+                super.visitFieldInsn(opcode, owner, name, descriptor);
+                return;
+            }
+            // The magic field is set by the engine, do not reset it for every engine
+            if (clinit && opcode == Opcodes.PUTSTATIC && owner.equals(className) && name.equals(MAGIC)) {
+                super.visitInsn(Opcodes.POP);
+                return;
+            }
+            String declaring = declaring(owner, name);
+            Info info = declaring == null ? null : resolver.info(declaring);
+            if (info == null || !info.virtual().containsKey(name) || !resolver.isolated(declaring)) {
+                super.visitFieldInsn(opcode, owner, name, descriptor);
+                return;
+            }
+            String holder = declaring + SUFFIX;
+            if (opcode == Opcodes.GETSTATIC) {
+                pushHolder(holder);
+                super.visitFieldInsn(Opcodes.GETFIELD, holder, name, descriptor);
+            } else {
+                // value -> value, holder -> holder, value
+                pushHolder(holder);
+                if (Type.getType(descriptor).getSize() == 2) {
+                    super.visitInsn(Opcodes.DUP_X2);
+                    super.visitInsn(Opcodes.POP);
+                } else {
+                    super.visitInsn(Opcodes.SWAP);
+                }
+                super.visitFieldInsn(Opcodes.PUTFIELD, holder, name, descriptor);
+            }
+        }
+
+        private void pushHolder(String holder) {
+            super.visitLdcInsn(Type.getObjectType(holder));
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, STATIC_FIELDS, "get", "(Ljava/lang/Class;)Ljava/lang/Object;", false);
+            super.visitTypeInsn(Opcodes.CHECKCAST, holder);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runtime part of StaticFieldVirtualizer: every holder class gets a process-wide index into the
+// per-engine table of holder instances. A holder is created, and the static initializer of its
+// class run, when the class is first used by an engine.
+public final class StaticFields {
+    private static final Logger log = LoggerFactory.getLogger(StaticFields.class);
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private static final class Binding {
+        final int index;
+        final Constructor<?> constructor;
+        final Method clinit;
+
+        Binding(int index, Constructor<?> constructor, Method clinit) {
+            this.index = index;
+            this.constructor = constructor;
+            this.clinit = clinit;
+        }
+    }
+
+    private static final ClassValue<Binding> bindings = new ClassValue<>() {
+        @Override
+        protected Binding computeValue(Class<?> holder) {
+            String name = holder.getName();
+            try {
+                Class<?> owner = Class.forName(name.substring(0, name.length() - StaticFieldVirtualizer.SUFFIX.length()), false, holder.getClassLoader());
+                Method clinit = null;
+                try {
+                    clinit = owner.getDeclaredMethod(StaticFieldVirtualizer.CLINIT);
+                    clinit.setAccessible(true); // owner might not be public
+                } catch (NoSuchMethodException e) {
+                    // No static initializer
+                }
+                return new Binding(counter.getAndIncrement(), holder.getConstructor(), clinit);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Invalid static field holder " + name, e);
+            }
+        }
+    };
+
+    private StaticFields() {
+    }
+
+    // Called from transformed code. Returns the holder of static fields of the current engine
+    public static Object get(Class<?> holder) {
+        Simulator sim = (Simulator) Simulator.current();
+        Binding binding = bindings.get(holder);
+        Object[] table = sim.statics;
+        if (binding.index < table.length) {
+            Object instance = table[binding.index];
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return create(sim, binding, holder);
+    }
+
+    private static Object create(Simulator sim, Binding binding, Class<?> holder) {
+        if (binding.index >= sim.statics.length) {
+            sim.statics = Arrays.copyOf(sim.statics, Math.max(binding.index + 1, sim.statics.length * 2));
+        }
+        final Object instance;
+        try {
+            instance = binding.constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create " + holder.getName(), e);
+        }
+        // Set before running the initializer, which accesses the fields
+        sim.statics[binding.index] = instance;
+        if (binding.clinit != null) {
+            log.trace("Initializing statics of {} in {}", holder.getName(), System.identityHashCode(sim));
+            try {
+                binding.clinit.invoke(null);
+            } catch (InvocationTargetException e) {
+                sim.statics[binding.index] = null;
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ExceptionInInitializerError(cause);
+            } catch (IllegalAccessException e) {
+                sim.statics[binding.index] = null;
+                throw new IllegalStateException("Could not initialize " + holder.getName(), e);
+            }
+        }
+        return instance;
+    }
+}
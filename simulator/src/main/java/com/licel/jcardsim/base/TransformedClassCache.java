@@ -0,0 +1,140 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide cache of transformed applet class bytes, shared by all IsolatingClassLoader instances.
+// Lookups go by source class loader and class name first, so that the Nth engine does no I/O and no
+// transformation. Different sources with identical class bytes share one transformation via the
+// content hash (SHA-256 of the original bytes). Optionally, transformed classes are also kept on disk,
+// so that restarts of the process can skip the transformation.
+final class TransformedClassCache {
+    private static final Logger log = LoggerFactory.getLogger(TransformedClassCache.class);
+
+    interface Source {
+        // Returns null if class is not found
+        byte[] read(String name) throws IOException;
+    }
+
+    interface Transformer {
+        byte[] transform(byte[] original);
+    }
+
+    // Weak, so that applet class loaders (and their classes) can go away
+    private static final Map<ClassLoader, Map<String, byte[]>> bySource = Collections.synchronizedMap(new WeakHashMap<>());
+    // variant + name + hash of original bytes -> transformed bytes
+    private static final Map<String, byte[]> byContent = new ConcurrentHashMap<>();
+    // Persistent cache, if set
+    private static volatile Path directory;
+
+    private TransformedClassCache() {
+    }
+
+    // Variant identifies the transformation, so that differently instrumented copies of a class can co-exist.
+    // The returned array is shared and must not be modified.
+    static byte[] get(ClassLoader source, String variant, String name, Source reader, Transformer transformer) throws IOException {
+        Map<String, byte[]> known = bySource.computeIfAbsent(source, k -> new ConcurrentHashMap<>());
+        String key = variant + "/" + name;
+        byte[] transformed = known.get(key);
+        if (transformed != null) {
+            return transformed;
+        }
+        byte[] original = reader.read(name);
+        if (original == null) {
+            return null;
+        }
+        String hash = sha256(original);
+        transformed = byContent.computeIfAbsent(key + "/" + hash, k -> load(variant, name, hash, original, transformer));
+        known.put(key, transformed);
+        return transformed;
+    }
+
+    // For transformations that also read other classes of the source (like superclasses), which the
+    // content hash does not cover. Cached by source only, neither shared between sources nor kept on disk.
+    static byte[] getBySource(ClassLoader source, String variant, String name, Source reader, Transformer transformer) throws IOException {
+        Map<String, byte[]> known = bySource.computeIfAbsent(source, k -> new ConcurrentHashMap<>());
+        String key = variant + "/" + name;
+        byte[] transformed = known.get(key);
+        if (transformed != null) {
+            return transformed;
+        }
+        byte[] original = reader.read(name);
+        if (original == null) {
+            return null;
+        }
+        transformed = transformer.transform(original);
+        known.put(key, transformed);
+        return transformed;
+    }
+
+    // Forget what was read from the source, so that changed classes are read again
+    static void forget(ClassLoader source) {
+        bySource.remove(source);
+    }
+
+    static void setDirectory(Path dir) {
+        directory = dir;
+    }
+
+    private static byte[] load(String variant, String name, String hash, byte[] original, Transformer transformer) {
+        Path dir = directory;
+        if (dir == null) {
+            return transformer.transform(original);
+        }
+        // <dir>/<variant>/<name>-<hash>.class
+        Path parent = dir.resolve(variant);
+        Path file = parent.resolve(name + "-" + hash + ".class");
+        try {
+            if (Files.isRegularFile(file)) {
+                log.trace("Using cached {}", file);
+                return Files.readAllBytes(file);
+            }
+            byte[] transformed = transformer.transform(original);
+            Files.createDirectories(parent);
+            // Write to a temporary file first, so that concurrent processes never see partial classes
+            Path tmp = Files.createTempFile(parent, name, ".tmp");
+            Files.write(tmp, transformed);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return transformed;
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not use class cache {}: {}", file, e.getMessage());
+            return transformer.transform(original);
+        }
+    }
+
+    static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
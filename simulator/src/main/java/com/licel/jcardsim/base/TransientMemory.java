@@ -41,6 +41,17 @@ public class TransientMemory {
     private int sumCOD;
     private int sumCOR;
 
+    // Accounting and limits of the card, if any
+    private final MemoryAccounting accounting;
+
+    public TransientMemory() {
+        this(null);
+    }
+
+    TransientMemory(MemoryAccounting accounting) {
+        this.accounting = accounting;
+    }
+
     private void add(Object obj, byte event) {
         int toAdd = 0;
         if (obj instanceof byte[]) {
@@ -56,6 +67,9 @@ public class TransientMemory {
             log.warn("Unsupported object: {}", obj.getClass());
         }
 
+        if (accounting != null && (event == JCSystem.CLEAR_ON_RESET || event == JCSystem.CLEAR_ON_DESELECT)) {
+            accounting.transientArray(toAdd, event);
+        }
         if (event == JCSystem.CLEAR_ON_RESET) {
             sumCOR += toAdd;
         } else if (event == JCSystem.CLEAR_ON_DESELECT) {
@@ -227,6 +241,12 @@ public class TransientMemory {
         }
     }
 
+    // Transient memory of a deleted applet, see MemoryAccounting.release()
+    void release(long reset, long deselect) {
+        sumCOR -= (int) reset;
+        sumCOD -= (int) deselect;
+    }
+
     public int getSumCOD() {
         return sumCOD;
     }
@@ -237,21 +257,19 @@ public class TransientMemory {
 
 
     /**
-     * @return The current implementation always returns 32767
+     * @return Available transient memory, shared with <code>CLEAR_ON_DESELECT</code>, or 32767 if not limited
      * @see javacard.framework.JCSystem#getAvailableMemory(byte)
      */
     public short getAvailableTransientResetMemory() {
-        // TODO: do some math
-        return Short.MAX_VALUE;
+        return accounting == null ? Short.MAX_VALUE : accounting.availableTransient();
     }
 
     /**
-     * @return The current implementation always returns 32767
+     * @return Available transient memory, shared with <code>CLEAR_ON_RESET</code>, or 32767 if not limited
      * @see javacard.framework.JCSystem#getAvailableMemory(byte)
      */
     public short getAvailableTransientDeselectMemory() {
-        // TODO: do some math
-        return Short.MAX_VALUE;
+        return accounting == null ? Short.MAX_VALUE : accounting.availableTransient();
     }
 
 }
@@ -26,6 +26,7 @@ import org.bouncycastle.crypto.InvalidCipherTextException;
 import org.bouncycastle.crypto.encodings.OAEPEncoding;
 import org.bouncycastle.crypto.encodings.PKCS1Encoding;
 import org.bouncycastle.crypto.engines.RSAEngine;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 /*
  * Implementation <code>Cipher</code> with asymmetric keys based
@@ -36,6 +37,8 @@ public class AsymmetricCipherImpl extends Cipher {
 
     byte algorithm;
     AsymmetricBlockCipher engine;
+    // In bits, for the cost model
+    short keySize;
     boolean isInitialized;
     byte[] buffer;
     short bufferPos;
@@ -72,6 +75,7 @@ public class AsymmetricCipherImpl extends Cipher {
         }
         KeyWithParameters key = (KeyWithParameters) theKey;
         initMode = theMode;
+        keySize = theKey.getSize();
         engine.init(theMode == MODE_ENCRYPT, key.getParameters());
         buffer = JCSystem.makeTransientByteArray((short) (engine.getInputBlockSize() + (theMode == MODE_ENCRYPT ? 1 : 0)), JCSystem.CLEAR_ON_DESELECT);
         bufferPos = 0;
@@ -87,6 +91,15 @@ public class AsymmetricCipherImpl extends Cipher {
     }
 
     public short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return doFinalImpl(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            CryptoHooks.finish(event, "Cipher.doFinal", algorithm, keySize, inLength);
+        }
+    }
+
+    private short doFinalImpl(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.CostMeter;
 import javacard.framework.JCSystem;
 import javacard.framework.Util;
 import javacard.security.*;
@@ -29,6 +30,7 @@ import org.bouncycastle.crypto.params.ParametersWithRandom;
 import org.bouncycastle.crypto.signers.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 import java.lang.reflect.Field;
 
@@ -263,9 +265,19 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
         engine.update(inBuff, inOffset, inLength);
+        CostMeter.crypto("Signature.update", algorithm, 0, inLength);
     }
 
     public short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return signImpl(inBuff, inOffset, inLength, sigBuff, sigOffset);
+        } finally {
+            CryptoHooks.finish(event, "Signature.sign", algorithm, key == null ? 0 : key.getSize(), inLength);
+        }
+    }
+
+    private short signImpl(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
         if (isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -289,6 +301,15 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
     }
 
     public boolean verify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return verifyImpl(inBuff, inOffset, inLength, sigBuff, sigOffset, sigLength);
+        } finally {
+            CryptoHooks.finish(event, "Signature.verify", algorithm, key == null ? 0 : key.getSize(), inLength);
+        }
+    }
+
+    private boolean verifyImpl(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
         if (isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -323,6 +344,16 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
 
     public short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short[] recMsgLen,
             short recMsgLenOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return signImpl(inBuff, inOffset, inLength, sigBuff, sigOffset, recMsgLen, recMsgLenOffset);
+        } finally {
+            CryptoHooks.finish(event, "SignatureMessageRecovery.sign", algorithm, key == null ? 0 : key.getSize(), inLength);
+        }
+    }
+
+    private short signImpl(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short[] recMsgLen,
+            short recMsgLenOffset) throws CryptoException {
         if (!isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -378,6 +409,15 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
     }
 
     public boolean verify(byte[] inBuff, short inOffset, short inLength) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return verifyImpl(inBuff, inOffset, inLength);
+        } finally {
+            CryptoHooks.finish(event, "SignatureMessageRecovery.verify", algorithm, key == null ? 0 : key.getSize(), inLength);
+        }
+    }
+
+    private boolean verifyImpl(byte[] inBuff, short inOffset, short inLength) throws CryptoException {
         if(!isRecovery){
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
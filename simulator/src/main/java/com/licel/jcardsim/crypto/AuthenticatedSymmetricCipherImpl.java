@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.CostMeter;
 import javacard.framework.JCSystem;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
@@ -29,6 +30,7 @@ import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
     private static final Logger log = LoggerFactory.getLogger(AuthenticatedSymmetricCipherImpl.class);
@@ -314,6 +316,7 @@ public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
         if (state == CipherState.Uninitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
+        CostMeter.crypto("AEADCipher.update", algorithm, 0, inLength);
 
         int processBuffSize = engine.getUpdateOutputSize(inLength);
 
@@ -347,6 +350,15 @@ public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
      */
     @Override
     public short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return doFinalImpl(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            CryptoHooks.finish(event, "AEADCipher.doFinal", algorithm, 0, inLength);
+        }
+    }
+
+    private short doFinalImpl(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
         if (state == CipherState.Uninitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
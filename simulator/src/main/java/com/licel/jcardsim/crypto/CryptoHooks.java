@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.crypto;
+
+import com.licel.jcardsim.base.CostMeter;
+import pro.javacard.engine.jfr.CryptoEvent;
+
+// Reports finishing operations of the crypto implementations to Flight Recorder and to the cost model of
+// the engine. The operation itself is kept in a private method, and the public method wraps it:
+//
+//     CryptoEvent event = CryptoEvent.start();
+//     try {
+//         return doFinalImpl(...);
+//     } finally {
+//         CryptoHooks.finish(event, "Cipher.doFinal", algorithm, keyBits, inLength);
+//     }
+final class CryptoHooks {
+    private CryptoHooks() {
+    }
+
+    // Key size in bits, 0 if not known or not relevant for the cost
+    static void finish(CryptoEvent event, String operation, byte algorithm, int keyBits, int length) {
+        if (event != null) {
+            event.finish(operation, algorithm, length);
+        }
+        CostMeter.crypto(operation, algorithm, keyBits, length);
+    }
+
+    // Key generation, the event has the length of the key
+    static void generated(CryptoEvent event, String operation, byte algorithm, int keyBits) {
+        if (event != null) {
+            event.finish(operation, algorithm, keyBits);
+        }
+        CostMeter.crypto(operation, algorithm, keyBits, 0);
+    }
+}
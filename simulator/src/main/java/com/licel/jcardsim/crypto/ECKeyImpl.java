@@ -30,6 +30,9 @@ import org.bouncycastle.math.ec.ECCurve;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Base class for
@@ -38,6 +41,9 @@ import java.security.SecureRandom;
  * @see ECKey
  */
 public abstract class ECKeyImpl extends KeyImpl implements ECKey {
+    // Named curves, resolved on first use. Every EC key is built with defaults, so this is hot.
+    private static final Map<String, Optional<ECDomainParameters>> curves = new ConcurrentHashMap<>();
+
     // TODO: consider final, re-allication should not happen
     protected ByteContainer a;
     protected ByteContainer b;
@@ -296,14 +302,18 @@ public abstract class ECKeyImpl extends KeyImpl implements ECKey {
             default:
                 return null;
         }
+        return curves.computeIfAbsent(curveName, ECKeyImpl::namedCurve).orElse(null);
+    }
+
+    private static Optional<ECDomainParameters> namedCurve(String curveName) {
         X9ECParameters x9params = SECNamedCurves.getByName(curveName);
         if (x9params == null) {
-            return null;
+            return Optional.empty();
         }
-        return new ECDomainParameters(
+        return Optional.of(new ECDomainParameters(
                 x9params.getCurve(),
                 x9params.getG(), // G
-                x9params.getN(), x9params.getH(), x9params.getSeed());
+                x9params.getN(), x9params.getH(), x9params.getSeed()));
     }
 
     public void copyDomainParametersFrom(ECKey eckey) throws CryptoException {
@@ -27,6 +27,7 @@ import org.bouncycastle.crypto.agreement.ECDHCBasicAgreement;
 import org.bouncycastle.crypto.digests.SHA1Digest;
 import org.bouncycastle.crypto.params.*;
 import org.bouncycastle.math.ec.ECPoint;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 import java.math.BigInteger;
 
@@ -97,6 +98,19 @@ public class KeyAgreementImpl extends KeyAgreement {
             short publicLength,
             byte[] secret,
             short secretOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return generateSecretImpl(publicData, publicOffset, publicLength, secret, secretOffset);
+        } finally {
+            CryptoHooks.finish(event, "KeyAgreement.generateSecret", algorithm, privateKey == null ? 0 : privateKey.getSize(), publicLength);
+        }
+    }
+
+    private short generateSecretImpl(byte[] publicData,
+            short publicOffset,
+            short publicLength,
+            byte[] secret,
+            short secretOffset) throws CryptoException {
         if(algorithm == ALG_DH_PLAIN) {
             BigInteger pubKey = (new ByteContainer(publicData, publicOffset, publicLength)).getBigInteger();
             DHParameters baseParam = ((DHKeyParameters) ((DHPrivateKeyImpl) privateKey).getParameters()).getParameters();
@@ -23,6 +23,7 @@ import org.bouncycastle.crypto.generators.DHKeyPairGenerator;
 import org.bouncycastle.crypto.generators.DSAKeyPairGenerator;
 import org.bouncycastle.crypto.generators.ECKeyPairGenerator;
 import org.bouncycastle.crypto.generators.RSAKeyPairGenerator;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 import java.security.SecureRandom;
 
@@ -82,6 +83,15 @@ public final class KeyPairImpl {
      * @see javacard.security.DSAKey
      */
     public void genKeyPair() throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            genKeyPairImpl();
+        } finally {
+            CryptoHooks.generated(event, "KeyPair.genKeyPair", algorithm, keyLength);
+        }
+    }
+
+    private void genKeyPairImpl() throws CryptoException {
         initEngine();
         createKeys();
         AsymmetricCipherKeyPair kp = engine.generateKeyPair();
@@ -15,12 +15,14 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.CostMeter;
 import javacard.security.CryptoException;
 import javacard.security.InitializedMessageDigest;
 import javacard.security.MessageDigest;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.*;
 import org.bouncycastle.util.Pack;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 import java.lang.reflect.Field;
 
@@ -139,12 +141,23 @@ public class MessageDigestImpl extends InitializedMessageDigest {
 
     public short doFinal(byte inBuff[], short inOffset, short inLength,
             byte outBuff[], short outOffset) {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return doFinalImpl(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            CryptoHooks.finish(event, "MessageDigest.doFinal", algorithm, 0, inLength);
+        }
+    }
+
+    private short doFinalImpl(byte inBuff[], short inOffset, short inLength,
+            byte outBuff[], short outOffset) {
         engine.update(inBuff, inOffset, inLength);
         return (short) engine.doFinal(outBuff, outOffset);
     }
 
     public void update(byte inBuff[], short inOffset, short inLength) {
         engine.update(inBuff, inOffset, inLength);
+        CostMeter.crypto("MessageDigest.update", algorithm, 0, inLength);
     }
 
     public void reset() {
@@ -33,6 +33,12 @@ import java.math.BigInteger;
  */
 public class RSAPrivateCrtKeyImpl extends RSAKeyImpl implements RSAPrivateCrtKey {
     private static final Logger log = LoggerFactory.getLogger(RSAPrivateCrtKeyImpl.class);
+
+    // Set when CRT keys are first used, not when the engine starts. See getParameters()
+    static {
+        System.setProperty("org.bouncycastle.rsa.no_lenstra_check", "true");
+    }
+
     protected ByteContainer p = new ByteContainer();
     protected ByteContainer q = new ByteContainer();
     protected ByteContainer dp1 = new ByteContainer();
@@ -130,8 +136,7 @@ public class RSAPrivateCrtKeyImpl extends RSAKeyImpl implements RSAPrivateCrtKey
         // modulus = p * q;
         // NOTE: prior to BC 1.77 the exponent based Lenstra's check was not done.
         // See https://github.com/bcgit/bc-java/issues/2104
-        // Since BC 1.83 the property can be used to disable it. Simulator static init has:
-        // System.setProperty("org.bouncycastle.rsa.no_lenstra_check", "true");
+        // Since BC 1.83 the property can be used to disable it, which is done in static init.
         return new RSAPrivateCrtKeyParameters(p.getBigInteger().multiply(q.getBigInteger()), null, null, p.getBigInteger(),
             q.getBigInteger(), dp1.getBigInteger(), dq1.getBigInteger(), pq.getBigInteger());
     }
@@ -20,6 +20,7 @@ import javacard.security.RandomData;
 import org.bouncycastle.crypto.digests.SHA1Digest;
 import org.bouncycastle.crypto.prng.DigestRandomGenerator;
 import org.bouncycastle.crypto.prng.RandomGenerator;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
@@ -35,30 +36,56 @@ import java.util.Arrays;
 public class RandomDataImpl extends RandomData {
     byte algorithm;
     // TODO: should settle on just a single one, clarify assumptions on seeding.
+    // Created on first use, so that applets allocating RandomData in install() do not pay for it
     RandomGenerator engine;
-    static SecureRandom random;
 
-    static {
-        try {
-            random = SecureRandom.getInstanceStrong();
-        } catch (GeneralSecurityException e) {
-            throw new RuntimeException("No random?");
+    // Initialized on first use, as getInstanceStrong() can be slow and might block. Generators are
+    // created here as well, so that verifying RandomDataImpl itself does not load BouncyCastle classes.
+    private static final class Strong {
+        static final SecureRandom random;
+
+        static {
+            try {
+                random = SecureRandom.getInstanceStrong();
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("No random?");
+            }
+        }
+
+        static RandomGenerator generator() {
+            RandomGenerator generator = new DigestRandomGenerator(new SHA1Digest());
+            generator.addSeedMaterial(random.generateSeed(8));
+            return generator;
         }
     }
 
     public RandomDataImpl(byte algorithm) {
         this.algorithm = algorithm;
-        this.engine = new DigestRandomGenerator(new SHA1Digest());
-        this.engine.addSeedMaterial(random.generateSeed(8));
+    }
+
+    private RandomGenerator engine() {
+        if (engine == null) {
+            engine = Strong.generator();
+        }
+        return engine;
     }
 
     public void generateData(byte[] buffer, short offset, short length) throws CryptoException {
-        engine.nextBytes(buffer, offset, length);
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            generateDataImpl(buffer, offset, length);
+        } finally {
+            CryptoHooks.finish(event, "RandomData.generateData", algorithm, 0, length);
+        }
+    }
+
+    private void generateDataImpl(byte[] buffer, short offset, short length) throws CryptoException {
+        engine().nextBytes(buffer, offset, length);
     }
 
     public void setSeed(byte[] buffer, short offset, short length) {
         // XXX: for ALG_PRESEEDED_DRBG seeding should set known state ?
-        engine.addSeedMaterial(Arrays.copyOfRange(buffer, offset, length));
+        engine().addSeedMaterial(Arrays.copyOfRange(buffer, offset, length));
     }
 
     public byte getAlgorithm() {
@@ -66,7 +93,16 @@ public class RandomDataImpl extends RandomData {
     }
 
     public short nextBytes(byte[] buffer, short offset, short length) throws CryptoException {
-        engine.nextBytes(buffer, offset, length);
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return nextBytesImpl(buffer, offset, length);
+        } finally {
+            CryptoHooks.finish(event, "RandomData.nextBytes", algorithm, 0, length);
+        }
+    }
+
+    private short nextBytesImpl(byte[] buffer, short offset, short length) throws CryptoException {
+        engine().nextBytes(buffer, offset, length);
         return (short) (offset + length);
     }
 }
@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.CostMeter;
 import javacard.framework.JCSystem;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
@@ -31,6 +32,7 @@ import org.bouncycastle.crypto.paddings.ZeroBytePadding;
 import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 /**
  * Implementation <code>Cipher</code> with symmetric keys based
@@ -89,6 +91,15 @@ public class SymmetricCipherImpl extends Cipher {
     }
 
     public short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return doFinalImpl(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            CryptoHooks.finish(event, "Cipher.doFinal", algorithm, 0, inLength);
+        }
+    }
+
+    private short doFinalImpl(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
@@ -106,6 +117,7 @@ public class SymmetricCipherImpl extends Cipher {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
+        CostMeter.crypto("Cipher.update", algorithm, 0, inLength);
         return (short) engine.processBytes(inBuff, inOffset, inLength, outBuff, outOffset);
     }
 
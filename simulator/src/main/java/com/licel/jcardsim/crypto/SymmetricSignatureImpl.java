@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.CostMeter;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
 import javacard.security.Key;
@@ -32,6 +33,7 @@ import org.bouncycastle.crypto.paddings.ISO7816d4Padding;
 import org.bouncycastle.crypto.paddings.PKCS7Padding;
 import org.bouncycastle.crypto.paddings.ZeroBytePadding;
 import org.bouncycastle.crypto.params.ParametersWithIV;
+import pro.javacard.engine.jfr.CryptoEvent;
 
 /**
  * Implementation
@@ -152,9 +154,19 @@ public class SymmetricSignatureImpl extends Signature {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
         engine.update(inBuff, inOffset, inLength);
+        CostMeter.crypto("Signature.update", algorithm, 0, inLength);
     }
     
     public short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return signImpl(inBuff, inOffset, inLength, sigBuff, sigOffset);
+        } finally {
+            CryptoHooks.finish(event, "Signature.sign", algorithm, 0, inLength);
+        }
+    }
+
+    private short signImpl(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
@@ -168,6 +180,15 @@ public class SymmetricSignatureImpl extends Signature {
     }
     
     public boolean verify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
+        CryptoEvent event = CryptoEvent.start();
+        try {
+            return verifyImpl(inBuff, inOffset, inLength, sigBuff, sigOffset, sigLength);
+        } finally {
+            CryptoHooks.finish(event, "Signature.verify", algorithm, 0, inLength);
+        }
+    }
+
+    private boolean verifyImpl(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
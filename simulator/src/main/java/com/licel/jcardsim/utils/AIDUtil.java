@@ -17,20 +17,23 @@ package com.licel.jcardsim.utils;
 
 import javacard.framework.AID;
 import javacard.framework.ISO7816;
-import org.bouncycastle.util.encoders.Hex;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.Objects;
 
 /**
  * Utility methods for dealing with AIDs.
  */
 public final class AIDUtil {
+    // Same order as comparing hex strings, without formatting them
     private static final Comparator<AID> aidComparator = (aid1, aid2) -> {
-        String s1 = (aid1 != null) ? toString(aid1) : "";
-        String s2 = (aid1 != null) ? toString(aid2) : "";
-        return s1.compareTo(s2);
+        byte[] b1 = new byte[16];
+        byte[] b2 = new byte[16];
+        int len1 = (aid1 != null) ? aid1.getBytes(b1, (short) 0) : 0;
+        int len2 = (aid2 != null) ? aid2.getBytes(b2, (short) 0) : 0;
+        return Arrays.compareUnsigned(b1, 0, len1, b2, 0, len2);
     };
 
     /**
@@ -82,7 +85,7 @@ public final class AIDUtil {
      */
     public static AID create(String aidString) {
         Objects.requireNonNull(aidString);
-        return create(Hex.decode(aidString));
+        return create(ByteUtil.byteArray(aidString));
     }
 
     /**
@@ -94,7 +97,7 @@ public final class AIDUtil {
      */
     public static String toString(AID aid) {
         Objects.requireNonNull(aid);
-        return Hex.toHexString(bytes(aid));
+        return HexFormat.of().formatHex(bytes(aid));
     }
 
     public static byte[] bytes(AID aid) {
@@ -15,13 +15,15 @@
  */
 package com.licel.jcardsim.utils;
 
-import org.bouncycastle.util.encoders.Hex;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
 
 /**
  * Utility methods for dealing with byte arrays.
  */
 public final class ByteUtil {
     private static final char[] hexArray = "0123456789ABCDEF".toCharArray();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
 
     /**
      * Create byte array from hex string
@@ -33,7 +35,8 @@ public final class ByteUtil {
         if (hexString == null) {
             throw new NullPointerException("hexArray");
         }
-        return Hex.decode(hexString);
+        // Like BouncyCastle Hex, ignore whitespace. JDK HexFormat keeps BouncyCastle off the engine startup path.
+        return HexFormat.of().parseHex(WHITESPACE.matcher(hexString).replaceAll(""));
     }
 
     /**
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Code coverage of isolated applet classes (see JavaCardEngine.covered()), by basic block. A line is covered
+// if a block with code on that line was entered, a method if its first block was.
+public final class AppletCoverage {
+
+    public static final class ClassCoverage {
+        private final String name;
+        private final String source;
+        private final Map<Integer, Boolean> lines;
+        private final Map<String, Integer> methodLines;
+        private final Map<String, Boolean> methods;
+        private final int blocks;
+        private final int coveredBlocks;
+
+        public ClassCoverage(String name, String source, Map<Integer, Boolean> lines, Map<String, Integer> methodLines, Map<String, Boolean> methods, int blocks, int coveredBlocks) {
+            this.name = name;
+            this.source = source;
+            this.lines = new TreeMap<>(lines);
+            this.methodLines = Map.copyOf(methodLines);
+            this.methods = Map.copyOf(methods);
+            this.blocks = blocks;
+            this.coveredBlocks = coveredBlocks;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Path of the source file, relative to the source root, like "com/example/MyApplet.java"
+        public String getSource() {
+            return source;
+        }
+
+        // Line -> covered, in line order
+        public Map<Integer, Boolean> getLines() {
+            return Collections.unmodifiableMap(lines);
+        }
+
+        // Method name and descriptor -> entered
+        public Map<String, Boolean> getMethods() {
+            return methods;
+        }
+
+        public int getBlocks() {
+            return blocks;
+        }
+
+        public int getCoveredBlocks() {
+            return coveredBlocks;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d/%d blocks", name, coveredBlocks, blocks);
+        }
+    }
+
+    private final List<ClassCoverage> classes;
+
+    public AppletCoverage(List<ClassCoverage> classes) {
+        List<ClassCoverage> sorted = new ArrayList<>(classes);
+        sorted.sort(Comparator.comparing(ClassCoverage::getName));
+        this.classes = List.copyOf(sorted);
+    }
+
+    public List<ClassCoverage> getClasses() {
+        return classes;
+    }
+
+    public int getLineCount() {
+        return classes.stream().mapToInt(c -> c.lines.size()).sum();
+    }
+
+    public int getCoveredLineCount() {
+        return classes.stream().mapToInt(c -> (int) c.lines.values().stream().filter(Boolean::booleanValue).count()).sum();
+    }
+
+    // LCOV tracefile, as read by genhtml and most CI coverage tools. Classes of the same source file
+    // (like inner classes) go into one record. Hit counts are 0 or 1.
+    public String toLCOV() {
+        Map<String, List<ClassCoverage>> files = new TreeMap<>();
+        for (ClassCoverage c : classes) {
+            files.computeIfAbsent(c.source, k -> new ArrayList<>()).add(c);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("TN:\n");
+        files.forEach((source, list) -> {
+            sb.append("SF:").append(source).append('\n');
+            int functions = 0;
+            int hitFunctions = 0;
+            Map<Integer, Boolean> lines = new TreeMap<>();
+            for (ClassCoverage c : list) {
+                for (Map.Entry<String, Integer> m : new TreeMap<>(c.methodLines).entrySet()) {
+                    String fn = c.name + "." + m.getKey();
+                    boolean hit = c.methods.get(m.getKey());
+                    sb.append("FN:").append(m.getValue()).append(',').append(fn).append('\n');
+                    sb.append("FNDA:").append(hit ? 1 : 0).append(',').append(fn).append('\n');
+                    functions++;
+                    hitFunctions += hit ? 1 : 0;
+                }
+                c.lines.forEach((line, hit) -> lines.merge(line, hit, Boolean::logicalOr));
+            }
+            sb.append("FNF:").append(functions).append('\n');
+            sb.append("FNH:").append(hitFunctions).append('\n');
+            lines.forEach((line, hit) -> sb.append("DA:").append(line).append(',').append(hit ? 1 : 0).append('\n'));
+            sb.append("LF:").append(lines.size()).append('\n');
+            sb.append("LH:").append(lines.values().stream().filter(Boolean::booleanValue).count()).append('\n');
+            sb.append("end_of_record\n");
+        });
+        return sb.toString();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Execution counts of profiled applet code (see JavaCardEngine.profiled()), by APDU type. APDU types are
+// CLA and INS in hex, like "80CA". Code that runs outside of APDU processing, like install(), is counted
+// under OUTSIDE.
+public final class AppletProfile {
+    public static final String OUTSIDE = "outside";
+
+    public enum Kind {
+        // Entries into applet methods
+        METHOD,
+        // Calls from applets into the Java Card API
+        API,
+        // Executions of basic blocks of applet methods
+        BLOCK
+    }
+
+    public static final class Entry {
+        private final Kind kind;
+        private final String name;
+        private final long count;
+
+        public Entry(Kind kind, String name, long count) {
+            this.kind = kind;
+            this.name = name;
+            this.count = count;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %d", kind, name, count);
+        }
+    }
+
+    private final Map<String, Long> commands;
+    private final Map<String, List<Entry>> entries;
+
+    // Entries must be sorted by descending count
+    public AppletProfile(Map<String, Long> commands, Map<String, List<Entry>> entries) {
+        this.commands = Map.copyOf(commands);
+        this.entries = Map.copyOf(entries);
+    }
+
+    public Set<String> getApduTypes() {
+        return entries.keySet();
+    }
+
+    public long getCommandCount(String apduType) {
+        return commands.getOrDefault(apduType, 0L);
+    }
+
+    public List<Entry> getEntries(String apduType) {
+        return entries.getOrDefault(apduType, Collections.emptyList());
+    }
+
+    public List<Entry> getHottest(String apduType, Kind kind, int n) {
+        return getEntries(apduType).stream().filter(e -> e.kind == kind).limit(n).collect(Collectors.toList());
+    }
+
+    // Text report with the n hottest methods, API calls and blocks per APDU type, most executed types first
+    public String format(int n) {
+        StringBuilder sb = new StringBuilder();
+        List<String> types = entries.keySet().stream()
+                .sorted(Comparator.comparingLong((String t) -> entries.get(t).stream().mapToLong(Entry::getCount).sum()).reversed())
+                .collect(Collectors.toList());
+        for (String type : types) {
+            long count = getCommandCount(type);
+            if (type.equals(OUTSIDE)) {
+                sb.append("Outside of APDU processing\n");
+            } else {
+                sb.append(String.format("APDU %s: %d command%s%n", type, count, count == 1 ? "" : "s"));
+            }
+            for (Kind kind : Kind.values()) {
+                List<Entry> hottest = getHottest(type, kind, n);
+                if (hottest.isEmpty()) {
+                    continue;
+                }
+                sb.append(String.format("  %s%n", kind == Kind.METHOD ? "Methods" : kind == Kind.API ? "API calls" : "Blocks"));
+                for (Entry e : hottest) {
+                    if (count > 0) {
+                        sb.append(String.format("  %12d %10.1f/APDU  %s%n", e.count, (double) e.count / count, e.name));
+                    } else {
+                        sb.append(String.format("  %12d  %s%n", e.count, e.name));
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
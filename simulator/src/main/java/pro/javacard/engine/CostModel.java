@@ -0,0 +1,166 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Costs of operations on a real card, used to estimate how long commands would take on one (see
+// JavaCardEngine.withCostModel()). Read from properties, where keys name operations and values are costs
+// in the unit of the model ("unit" is ns, us or cycles, the latter at "clock.mhz"):
+//
+//   bytecode                         per instruction of applet code
+//   store                            extra per array or field store instruction
+//   Util.arrayCopy                   per call of an API method from applet code
+//   Util.arrayCopy.perByte           per byte handled by the method
+//   eeprom.write.perByte             per byte written to persistent arrays by Util methods
+//   crypto.Signature.sign.ALG_ECDSA_SHA_256.256    per crypto operation, by algorithm and key length
+//   apdu, apdu.perByte               transport of a command and its response
+//
+// Missing keys fall back to their prefix, so "Util" is the cost of any Util method without a key of its
+// own and "crypto.Signature.sign.ALG_ECDSA_SHA_256" the cost for any key length. Missing costs are zero.
+// Applet code is instrumented for bytecode and API call costs only if the model has a bytecode or store cost.
+public final class CostModel {
+    // Shipped models of typical chips, as resources
+    public static final List<String> BUILTIN = List.of("low-end", "mid-range", "high-end");
+    public static final String PER_BYTE = ".perByte";
+
+    private final String name;
+    // In nanoseconds
+    private final Map<String, Double> costs;
+    // Resolved costs by key
+    private final Map<String, Double> resolved = new ConcurrentHashMap<>();
+
+    private CostModel(String name, Map<String, Double> costs) {
+        this.name = name;
+        this.costs = Map.copyOf(costs);
+    }
+
+    public static CostModel fromProperties(String name, Properties properties) {
+        String unit = properties.getProperty("unit", "ns").trim();
+        final double scale;
+        switch (unit) {
+            case "ns":
+                scale = 1;
+                break;
+            case "us":
+                scale = 1000;
+                break;
+            case "cycles":
+                String mhz = properties.getProperty("clock.mhz");
+                if (mhz == null) {
+                    throw new IllegalArgumentException("clock.mhz is required for cycles");
+                }
+                scale = 1000 / number("clock.mhz", mhz);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown unit: " + unit);
+        }
+        Map<String, Double> costs = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.equals("unit") || key.equals("clock.mhz") || key.equals("description")) {
+                continue;
+            }
+            costs.put(key, number(key, properties.getProperty(key)) * scale);
+        }
+        return new CostModel(name, costs);
+    }
+
+    private static double number(String key, String value) {
+        try {
+            double d = Double.parseDouble(value.trim());
+            if (d < 0 || Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new NumberFormatException();
+            }
+            return d;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cost for " + key + ": " + value);
+        }
+    }
+
+    // Loads a shipped model by name or a properties file
+    public static CostModel load(String model) throws IOException {
+        Properties properties = new Properties();
+        if (BUILTIN.contains(model)) {
+            try (InputStream in = CostModel.class.getResourceAsStream("costmodels/" + model + ".properties")) {
+                if (in == null) {
+                    throw new IOException("Missing cost model resource: " + model);
+                }
+                properties.load(in);
+            }
+            return fromProperties(model, properties);
+        }
+        Path file = Paths.get(model);
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return fromProperties(String.valueOf(file.getFileName()).replaceFirst("\\.properties$", ""), properties);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Cost of the operation in nanoseconds
+    public double cost(String key) {
+        Double cost = resolved.get(key);
+        if (cost == null) {
+            cost = lookup(key);
+            resolved.put(key, cost);
+        }
+        return cost;
+    }
+
+    // Cost of each byte handled by the operation in nanoseconds
+    public double costPerByte(String key) {
+        return cost(key + PER_BYTE);
+    }
+
+    public boolean hasBytecodeCost() {
+        return costs.containsKey("bytecode") || costs.containsKey("store");
+    }
+
+    private double lookup(String key) {
+        String suffix = key.endsWith(PER_BYTE) ? PER_BYTE : "";
+        String prefix = key.substring(0, key.length() - suffix.length());
+        while (true) {
+            Double cost = costs.get(prefix + suffix);
+            if (cost != null) {
+                return cost;
+            }
+            int dot = prefix.lastIndexOf('.');
+            if (dot < 0) {
+                return 0;
+            }
+            prefix = prefix.substring(0, dot);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CostModel[" + name + "]";
+    }
+}
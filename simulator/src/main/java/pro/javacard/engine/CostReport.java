@@ -0,0 +1,103 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Estimated on-card durations of commands (see JavaCardEngine.withCostModel()), by APDU type, and what
+// the time went to. APDU types are CLA and INS in hex, like "80CA".
+public final class CostReport {
+
+    public static final class Entry {
+        private final String key;
+        private final long calls;
+        private final long bytes;
+        private final long nanos;
+
+        public Entry(String key, long calls, long bytes, long nanos) {
+            this.key = key;
+            this.calls = calls;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        // Key of the cost model, like "Util.arrayCopy"
+        public String getKey() {
+            return key;
+        }
+
+        // Number of calls, or instructions for bytecode
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s calls=%d bytes=%d ns=%d", key, calls, bytes, nanos);
+        }
+    }
+
+    private final String model;
+    private final Map<String, LatencySnapshot> estimates;
+    private final List<Entry> entries;
+
+    // Entries must be sorted by descending time
+    public CostReport(String model, Map<String, LatencySnapshot> estimates, List<Entry> entries) {
+        this.model = model;
+        this.estimates = Map.copyOf(estimates);
+        this.entries = List.copyOf(entries);
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public Map<String, LatencySnapshot> getEstimates() {
+        return estimates;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    // Text report with the estimates per APDU type and the n most expensive operations
+    public String format(int n) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Estimated with %s model%n", model));
+        List<String> types = estimates.keySet().stream().sorted().collect(Collectors.toList());
+        for (String type : types) {
+            LatencySnapshot s = estimates.get(type);
+            sb.append(String.format("  APDU %s: %d command%s, mean %.2f ms, p90 %.2f ms, max %.2f ms%n", type, s.getCount(), s.getCount() == 1 ? "" : "s",
+                    s.getMeanNanos() / 1e6, s.getP90Nanos() / 1e6, s.getMaxNanos() / 1e6));
+        }
+        long total = entries.stream().mapToLong(Entry::getNanos).sum();
+        entries.stream().filter(e -> e.nanos > 0).sorted(Comparator.comparingLong(Entry::getNanos).reversed()).limit(n).forEach(e ->
+                sb.append(String.format("  %10.2f ms %5.1f%%  %s x%d%s%n", e.nanos / 1e6, total == 0 ? 0 : 100.0 * e.nanos / total, e.key,
+                        e.calls, e.bytes > 0 ? ", " + e.bytes + " bytes" : "")));
+        return sb.toString();
+    }
+}
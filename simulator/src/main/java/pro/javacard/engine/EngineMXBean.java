@@ -0,0 +1,45 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import java.util.Map;
+
+// Counters and latencies of APDU-s exchanged through sessions of an engine (see JavaCardEngine.withMBean())
+public interface EngineMXBean {
+    long getApduCount();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    // SELECT (by AID) commands
+    long getSelectCount();
+
+    long getSessionCount();
+
+    // Time spent waiting for the session lock, in total and at most
+    long getLockWaitNanos();
+
+    long getLockWaitMaxNanos();
+
+    // Response count by status word, like "9000"
+    Map<String, Long> getStatusWords();
+
+    // Latency by CLA and INS, like "80CA"
+    Map<String, LatencySnapshot> getLatency();
+
+    void reset();
+}
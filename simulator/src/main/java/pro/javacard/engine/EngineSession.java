@@ -17,6 +17,9 @@ package pro.javacard.engine;
 
 import com.licel.jcardsim.base.CardInterface;
 
+import java.time.Duration;
+import java.util.Optional;
+
 // Helps to isolate session towards a shared simulator. Lock is held while the object is not closed.
 public interface EngineSession extends CardInterface, AutoCloseable {
 
@@ -31,4 +34,9 @@ public interface EngineSession extends CardInterface, AutoCloseable {
     }
 
     String getProtocol();
+
+    // On-card duration of the last command, if estimated by the cost model of the engine
+    default Optional<Duration> getEstimatedDuration() {
+        return Optional.empty();
+    }
 }
@@ -19,12 +19,13 @@ import com.licel.jcardsim.base.Simulator;
 import javacard.framework.AID;
 import javacard.framework.Applet;
 import pro.javacard.engine.globalplatform.GlobalPlatformApplet;
+import pro.javacard.engine.trace.APDUTrace;
 
 import java.time.Duration;
 
 // This is the external, programmer-facing interface. It allows to manage the "secure element" by installing and deleting
 // applets, and to open APDU-transports to it.
-public interface JavaCardEngine {
+public interface JavaCardEngine extends AutoCloseable {
     AID installApplet(AID aid, Class<? extends Applet> appletClass, byte[] parameters);
 
     default AID installApplet(AID aid, Class<? extends Applet> appletClass) {
@@ -59,6 +60,56 @@ public interface JavaCardEngine {
 
     JavaCardEngine withClassLoader(ClassLoader parent);
 
+    // Load applet classes once for all engines with the same class loader. Static fields of
+    // applets are still kept per engine. Must be set before installing applets.
+    JavaCardEngine shared(boolean flag);
+
+    // Record all exchanges of sessions into the trace. null disables tracing.
+    JavaCardEngine withTrace(APDUTrace trace);
+
+    // Count executions of methods, basic blocks and Java Card API calls of isolated applet classes, by APDU
+    // type. Must be set before installing applets, not available with shared classes.
+    JavaCardEngine profiled(boolean flag);
+
+    AppletProfile getProfile();
+
+    void resetProfile();
+
+    // Record which basic blocks of isolated applet classes get executed. Must be set before installing applets,
+    // not available with shared classes. Coverage starts over when applets are reloaded.
+    JavaCardEngine covered(boolean flag);
+
+    AppletCoverage getCoverage();
+
+    void resetCoverage();
+
+    // Limit the persistent and transient memory of the card, in bytes. Allocations over the limit fail with
+    // SystemException, like on a card, and JCSystem.getAvailableMemory() reports what is left. 0 means no limit.
+    JavaCardEngine withMemoryLimits(int persistent, int transientMemory);
+
+    // Memory allocated by each applet: arrays and objects created by isolated applet code, transient arrays and
+    // API objects backed by persistent arrays (like keys)
+    MemoryFootprint getMemoryFootprint();
+
+    // Estimate on-card durations of commands with the cost model (see CostModel), available from sessions
+    // and as a report. Must be set before installing applets if the model has bytecode costs. null disables.
+    JavaCardEngine withCostModel(CostModel model);
+
+    CostReport getCostReport();
+
+    // Collect APDU counters and latencies and register them as an EngineMXBean named
+    // "pro.javacard.engine:type=Engine,name=<name>" on the platform MBean server, until close.
+    JavaCardEngine withMBean(String name);
+
+    // Load applet classes again and move installed applet instances over to them, field by field, where the
+    // layout of the classes is compatible. Not available with shared classes.
+    void reloadApplets();
+
+    // Drop all applets and their state. Applet classes of the engine can be unloaded afterwards.
+    // The engine can not be used after close.
+    @Override
+    void close();
+
     static JavaCardEngine create() {
         var r = new Simulator();
         r.installExposedApplet(GlobalPlatformApplet.OPEN_AID, GlobalPlatformApplet.class);
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine;
+
+import java.util.List;
+
+// Memory used on the card (see JavaCardEngine.getMemoryFootprint()), by the context that allocated it. Sizes
+// are estimates in bytes: array elements by their type and objects by their instance fields, with references
+// counted as 2 bytes and a small header per object.
+public final class MemoryFootprint {
+    // Context of allocations outside of applets, like by the runtime itself
+    public static final String JCRE = "JCRE";
+
+    public static final class Usage {
+        private final String context;
+        private final long persistent;
+        private final long transientReset;
+        private final long transientDeselect;
+        private final long objects;
+        private final long arrays;
+
+        public Usage(String context, long persistent, long transientReset, long transientDeselect, long objects, long arrays) {
+            this.context = context;
+            this.persistent = persistent;
+            this.transientReset = transientReset;
+            this.transientDeselect = transientDeselect;
+            this.objects = objects;
+            this.arrays = arrays;
+        }
+
+        // AID of the applet in hex, or JCRE
+        public String getContext() {
+            return context;
+        }
+
+        public long getPersistent() {
+            return persistent;
+        }
+
+        public long getTransientReset() {
+            return transientReset;
+        }
+
+        public long getTransientDeselect() {
+            return transientDeselect;
+        }
+
+        // Number of persistent objects and arrays
+        public long getObjects() {
+            return objects;
+        }
+
+        public long getArrays() {
+            return arrays;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s persistent=%d reset=%d deselect=%d objects=%d arrays=%d", context, persistent, transientReset, transientDeselect, objects, arrays);
+        }
+    }
+
+    private final List<Usage> usages;
+    private final long persistentLimit;
+    private final long transientLimit;
+
+    // Limits are 0 if not set
+    public MemoryFootprint(List<Usage> usages, long persistentLimit, long transientLimit) {
+        this.usages = List.copyOf(usages);
+        this.persistentLimit = persistentLimit;
+        this.transientLimit = transientLimit;
+    }
+
+    public List<Usage> getUsages() {
+        return usages;
+    }
+
+    public long getPersistent() {
+        return usages.stream().mapToLong(Usage::getPersistent).sum();
+    }
+
+    // CLEAR_ON_RESET and CLEAR_ON_DESELECT together
+    public long getTransient() {
+        return usages.stream().mapToLong(u -> u.transientReset + u.transientDeselect).sum();
+    }
+
+    public long getPersistentLimit() {
+        return persistentLimit;
+    }
+
+    public long getTransientLimit() {
+        return transientLimit;
+    }
+
+    // Text report with a line per context
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("  %-32s %10s %10s %10s %8s %8s%n", "Context", "Persistent", "Reset", "Deselect", "Objects", "Arrays"));
+        for (Usage u : usages) {
+            sb.append(String.format("  %-32s %10d %10d %10d %8d %8d%n", u.context, u.persistent, u.transientReset, u.transientDeselect, u.objects, u.arrays));
+        }
+        sb.append(String.format("  Persistent %d%s, transient %d%s bytes%n", getPersistent(), persistentLimit > 0 ? " of " + persistentLimit : "",
+                getTransient(), transientLimit > 0 ? " of " + transientLimit : ""));
+        return sb.toString();
+    }
+}
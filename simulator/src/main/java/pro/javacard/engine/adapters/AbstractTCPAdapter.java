@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pro.javacard.engine.EngineSession;
 import pro.javacard.engine.adapters.RemoteMessage.Type;
+import pro.javacard.engine.trace.APDUTrace;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -62,6 +63,7 @@ public abstract class AbstractTCPAdapter implements Callable<Boolean> {
     protected String protocol = "*";
     protected String host;
     protected int port;
+    protected APDUTrace trace;
 
     private volatile Thread thread; // Used to interrupt the adapter
     private AdapterState currentState = AdapterState.CONNECTED;
@@ -88,6 +90,11 @@ public abstract class AbstractTCPAdapter implements Callable<Boolean> {
         return this;
     }
 
+    public AbstractTCPAdapter withTrace(APDUTrace trace) {
+        this.trace = trace;
+        return this;
+    }
+
     // Safe to call from any thread.
     public void tap() {
         log.info("Triggering tap");
@@ -216,9 +223,16 @@ public abstract class AbstractTCPAdapter implements Callable<Boolean> {
                                             send(channel, new RemoteMessage(Type.APDU, Hex.decode("040102039000")));
                                             break;
                                         }
-                                        log.info(">> {}", Hex.toHexString(cmd));
+                                        if (log.isDebugEnabled()) {
+                                            log.debug(">> {}", Hex.toHexString(cmd));
+                                        }
                                         byte[] response = session.transmitCommand(cmd);
-                                        log.info("<< {}", Hex.toHexString(response));
+                                        if (trace != null) {
+                                            trace.record(cmd, response);
+                                        }
+                                        if (log.isDebugEnabled()) {
+                                            log.debug("<< {}", Hex.toHexString(response));
+                                        }
                                         send(channel, new RemoteMessage(Type.APDU, response));
                                         break;
                                     default:
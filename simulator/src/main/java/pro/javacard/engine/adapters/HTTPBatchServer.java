@@ -0,0 +1,261 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.adapters;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+// Executes APDU scripts against named cards over HTTP, all commands of a request in one session.
+//
+// POST /cards/{name}/batch[?protocol=T=1&idle=5000&reset=true]
+//
+// text/plain (default): one hex APDU per line, blank lines and # comments are skipped. Reply is one
+// line per command: response hex, TAB, execution time in nanoseconds; last line is a # summary.
+//
+// application/octet-stream: commands as u32 length + bytes. Reply records are u32 length + response
+// + u64 execution nanoseconds, terminated by length 0xFFFFFFFF followed by u64 session wait,
+// u64 total execution and u64 request wall clock nanoseconds. A failed command ends the batch with
+// length 0xFFFFFFFE + u32 length + UTF-8 error message, before the terminator.
+//
+// Replies are streamed with chunked encoding while the request is still being read, so scripts of any
+// size can be executed. GET /cards lists the card names.
+public class HTTPBatchServer {
+    private static final Logger log = LoggerFactory.getLogger(HTTPBatchServer.class);
+
+    public static final String DEFAULT_HTTP_HOST = "127.0.0.1";
+    public static final int DEFAULT_HTTP_PORT = 8025;
+    static final String BINARY = "application/octet-stream";
+    static final int MAX_COMMAND = 65544; // extended length with Lc, Le
+    static final int END = -1;
+    static final int ERROR = -2;
+
+    private final Map<String, JavaCardEngine> cards = new ConcurrentHashMap<>();
+    private String host = DEFAULT_HTTP_HOST;
+    private int port = DEFAULT_HTTP_PORT;
+    private HttpServer server;
+
+    public HTTPBatchServer withCard(String name, JavaCardEngine engine) {
+        cards.put(name, engine);
+        return this;
+    }
+
+    public HTTPBatchServer withHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public HTTPBatchServer withPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    // Requests for different cards run in parallel on the executor
+    public void start(Executor executor) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/cards", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("HTTP batch endpoint listening on {}", server.getAddress());
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // "", "cards", name, "batch"
+            if (path.length == 2 && exchange.getRequestMethod().equals("GET")) {
+                StringBuilder sb = new StringBuilder();
+                cards.keySet().stream().sorted().forEach(n -> sb.append(n).append('\n'));
+                reply(exchange, 200, sb.toString());
+            } else if (path.length == 4 && path[3].equals("batch")) {
+                JavaCardEngine engine = cards.get(path[2]);
+                if (engine == null) {
+                    reply(exchange, 404, "No such card: " + path[2] + "\n");
+                } else if (!exchange.getRequestMethod().equals("POST")) {
+                    reply(exchange, 405, "Use POST\n");
+                } else {
+                    batch(exchange, engine);
+                }
+            } else {
+                reply(exchange, 404, "Not found\n");
+            }
+        }
+    }
+
+    static void reply(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    static Map<String, String> query(URI uri) {
+        Map<String, String> result = new HashMap<>();
+        String q = uri.getRawQuery();
+        if (q == null) {
+            return result;
+        }
+        for (String param : q.split("&")) {
+            String[] kv = param.split("=", 2);
+            result.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8), kv.length == 2 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+        }
+        return result;
+    }
+
+    void batch(HttpExchange exchange, JavaCardEngine engine) throws IOException {
+        Map<String, String> params = query(exchange.getRequestURI());
+        String protocol = params.getOrDefault("protocol", "*");
+        boolean reset = Boolean.parseBoolean(params.getOrDefault("reset", "false"));
+        final Duration idle;
+        try {
+            idle = Duration.ofMillis(Long.parseLong(params.getOrDefault("idle", "5000")));
+        } catch (NumberFormatException e) {
+            reply(exchange, 400, "Invalid idle timeout\n");
+            return;
+        }
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean binary = type != null && type.startsWith(BINARY);
+
+        long start = System.nanoTime();
+        try (EngineSession session = engine.connectFor(idle, protocol)) {
+            long wait = System.nanoTime() - start;
+            exchange.getResponseHeaders().set("Content-Type", binary ? BINARY : "text/plain; charset=utf-8");
+            exchange.getResponseHeaders().set("X-Session-Wait-Nanos", Long.toString(wait));
+            exchange.sendResponseHeaders(200, 0); // chunked
+            OutputStream body = new BufferedOutputStream(exchange.getResponseBody());
+            if (binary) {
+                binaryBatch(exchange.getRequestBody(), body, session, start, wait);
+            } else {
+                textBatch(exchange.getRequestBody(), body, session, start, wait);
+            }
+            body.flush();
+            if (reset) {
+                session.close(true);
+            }
+        }
+    }
+
+    static void textBatch(InputStream in, OutputStream out, EngineSession session, long start, long wait) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        long execution = 0;
+        int count = 0;
+        int lines = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            String apdu = line.replaceAll("\\s", "");
+            if (apdu.isEmpty() || apdu.startsWith("#")) {
+                continue;
+            }
+            final byte[] command;
+            try {
+                command = Hex.decode(apdu);
+            } catch (DecoderException e) {
+                writer.write("# error: invalid hex on line " + lines + "\n");
+                break;
+            }
+            long t = System.nanoTime();
+            final byte[] response;
+            try {
+                response = session.transmitCommand(command);
+            } catch (RuntimeException e) {
+                writer.write("# error: " + e.getClass().getSimpleName() + ": " + e.getMessage() + "\n");
+                break;
+            }
+            t = System.nanoTime() - t;
+            execution += t;
+            count++;
+            writer.write(Hex.toHexString(response).toUpperCase());
+            writer.write('\t');
+            writer.write(Long.toString(t));
+            writer.write('\n');
+        }
+        writer.write(String.format("# apdus=%d wait=%d execution=%d total=%d%n", count, wait, execution, System.nanoTime() - start));
+        writer.flush();
+    }
+
+    static void binaryBatch(InputStream in, OutputStream out, EngineSession session, long start, long wait) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        DataOutputStream output = new DataOutputStream(out);
+        long execution = 0;
+        while (true) {
+            final int len;
+            try {
+                len = input.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            if (len < 4 || len > MAX_COMMAND) {
+                error(output, "Invalid command length: " + len);
+                break;
+            }
+            byte[] command = new byte[len];
+            input.readFully(command);
+            long t = System.nanoTime();
+            final byte[] response;
+            try {
+                response = session.transmitCommand(command);
+            } catch (RuntimeException e) {
+                error(output, e.getClass().getSimpleName() + ": " + e.getMessage());
+                break;
+            }
+            t = System.nanoTime() - t;
+            execution += t;
+            output.writeInt(response.length);
+            output.write(response);
+            output.writeLong(t);
+        }
+        output.writeInt(END);
+        output.writeLong(wait);
+        output.writeLong(execution);
+        output.writeLong(System.nanoTime() - start);
+        output.flush();
+    }
+
+    static void error(DataOutputStream output, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(ERROR);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
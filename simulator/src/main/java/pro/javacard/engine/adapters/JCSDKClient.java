@@ -52,7 +52,9 @@ public class JCSDKClient implements Supplier<EngineSession>, EngineSession {
             throw new EOFException("Peer closed connection");
         }
         byte b1 = hdr.get(0);
-        log.info("Received {}", Hex.toHexString(hdr.array()));
+        if (log.isTraceEnabled()) {
+            log.trace("Received {}", Hex.toHexString(hdr.array()));
+        }
         switch (b1) {
             case (byte) 0xF0:
                 int atrlen = hdr.getShort(2);
@@ -73,7 +75,7 @@ public class JCSDKClient implements Supplier<EngineSession>, EngineSession {
     }
 
     static RemoteMessage send(SocketChannel channel, RemoteMessage message) throws IOException {
-        log.info("Sending " + message.getType());
+        log.trace("Sending {}", message.getType());
         switch (message.getType()) {
             case APDU:
                 channel.write(JCSDKServer.format((byte) 0x00, message.getPayload()));
@@ -90,7 +92,9 @@ public class JCSDKClient implements Supplier<EngineSession>, EngineSession {
                 log.warn("Unknown message for protocol: " + message.getType());
         }
         RemoteMessage received = recv(channel);
-        log.trace("Received {}: {}", received.getType(), Hex.toHexString(received.getPayload()));
+        if (log.isTraceEnabled()) {
+            log.trace("Received {}: {}", received.getType(), Hex.toHexString(received.getPayload()));
+        }
         return received;
     }
 
@@ -45,7 +45,9 @@ public final class JCSDKServer extends AbstractTCPAdapter {
         buffer.position(4);
         buffer.put(data);
         buffer.rewind();
-        log.info(Hex.toHexString(buffer.array()));
+        if (log.isTraceEnabled()) {
+            log.trace(Hex.toHexString(buffer.array()));
+        }
         return buffer;
     }
 
@@ -72,7 +74,9 @@ public final class JCSDKServer extends AbstractTCPAdapter {
             throw new EOFException("Peer closed connection");
         }
         byte b1 = hdr.get(0);
-        log.info("Received {}", Hex.toHexString(hdr.array()));
+        if (log.isTraceEnabled()) {
+            log.trace("Received {}", Hex.toHexString(hdr.array()));
+        }
         switch (b1) {
             case (byte) 0xF0:
                 return new RemoteMessage(RemoteMessage.Type.ATR);
@@ -90,7 +94,7 @@ public final class JCSDKServer extends AbstractTCPAdapter {
 
     @Override
     protected void send(SocketChannel channel, RemoteMessage message) throws IOException {
-        log.info("Sending " + message.getType());
+        log.trace("Sending {}", message.getType());
         switch (message.getType()) {
             case APDU:
                 channel.write(format((byte) 0x00, message.getPayload()));
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.adapters;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.trace.TraceFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Sits between an adapter and an upstream (usually JCSDKClient). Records every exchange into a trace
+// and answers commands matching a cache rule from previous responses, without going upstream.
+// NOTE: only cache commands that do not change upstream card state, like GET DATA, or the two will diverge.
+// Responses with an error status word are not cached, unless asked for.
+public class PassthroughProxy implements Supplier<EngineSession>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PassthroughProxy.class);
+
+    private final Supplier<EngineSession> upstream;
+    private final List<CacheRule> rules = new ArrayList<>();
+    private final Map<ByteBuffer, byte[]> cache = new ConcurrentHashMap<>();
+    private volatile TraceFile.Writer recorder;
+    private volatile boolean errors = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PassthroughProxy(Supplier<EngineSession> upstream) {
+        this.upstream = upstream;
+    }
+
+    // Matches the CLA INS P1 P2 header of a command against value/mask
+    public static final class CacheRule {
+        final int value;
+        final int mask;
+
+        public CacheRule(int value, int mask) {
+            this.value = value & mask;
+            this.mask = mask;
+        }
+
+        // "80CA0000/FFFF0000" or a header prefix like "80CA", where the given bytes must match exactly
+        public static CacheRule parse(String rule) {
+            String[] parts = rule.split("/", 2);
+            byte[] value = Hex.decode(parts[0]);
+            byte[] mask;
+            if (parts.length == 2) {
+                mask = Hex.decode(parts[1]);
+                if (mask.length != value.length) {
+                    throw new IllegalArgumentException("Mask length does not match header: " + rule);
+                }
+            } else {
+                mask = new byte[value.length];
+                Arrays.fill(mask, (byte) 0xFF);
+            }
+            if (value.length == 0 || value.length > 4) {
+                throw new IllegalArgumentException("Cache rule must cover 1..4 header bytes: " + rule);
+            }
+            return new CacheRule(header(value), header(mask));
+        }
+
+        public boolean matches(byte[] command) {
+            return command.length >= 4 && (header(command) & mask) == value;
+        }
+
+        // First four bytes, zero padded
+        static int header(byte[] b) {
+            int h = 0;
+            for (int i = 0; i < 4; i++) {
+                h = (h << 8) | (i < b.length ? b[i] & 0xFF : 0);
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%08X/%08X", value, mask);
+        }
+    }
+
+    public PassthroughProxy withCacheRule(CacheRule rule) {
+        rules.add(rule);
+        return this;
+    }
+
+    // Also cache responses with an error status word
+    public PassthroughProxy withCachedErrors(boolean flag) {
+        this.errors = flag;
+        return this;
+    }
+
+    public PassthroughProxy withRecording(Path trace) throws IOException {
+        this.recorder = TraceFile.Writer.create(trace);
+        return this;
+    }
+
+    // Seed the cache from a previously recorded trace. Returns the number of cached responses
+    public int preload(Path trace) throws IOException {
+        int count = 0;
+        for (TraceFile.Exchange e : TraceFile.read(trace)) {
+            byte[] cmd = e.getCommand();
+            if (cacheable(cmd) && cacheable(e.getResponse(), errors)) {
+                cache.put(ByteBuffer.wrap(cmd), e.getResponse());
+                count++;
+            }
+        }
+        log.debug("Preloaded {} responses from {}", count, trace);
+        return count;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    boolean cacheable(byte[] command) {
+        for (CacheRule rule : rules) {
+            if (rule.matches(command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 9000 and 61XX, or any status word with errors
+    static boolean cacheable(byte[] response, boolean errors) {
+        if (response.length < 2) {
+            return false;
+        }
+        int sw1 = response[response.length - 2] & 0xFF;
+        int sw2 = response[response.length - 1] & 0xFF;
+        return errors || (sw1 == 0x90 && sw2 == 0x00) || sw1 == 0x61;
+    }
+
+    // Finishes the recording, if any
+    @Override
+    public void close() throws IOException {
+        TraceFile.Writer writer = recorder;
+        recorder = null;
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Override
+    public EngineSession get() {
+        return new ProxySession(upstream.get());
+    }
+
+    class ProxySession implements EngineSession {
+        private final EngineSession session;
+
+        ProxySession(EngineSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public byte[] transmitCommand(byte[] commandAPDU) {
+            final byte[] response;
+            if (cacheable(commandAPDU)) {
+                ByteBuffer key = ByteBuffer.wrap(commandAPDU.clone());
+                byte[] cached = cache.get(key);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    response = cached.clone();
+                } else {
+                    misses.incrementAndGet();
+                    response = session.transmitCommand(commandAPDU);
+                    if (cacheable(response, errors)) {
+                        cache.put(key, response.clone());
+                    }
+                }
+            } else {
+                response = session.transmitCommand(commandAPDU);
+            }
+            record(commandAPDU, response);
+            return response;
+        }
+
+        private void record(byte[] command, byte[] response) {
+            TraceFile.Writer writer = recorder;
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(command, response);
+            } catch (IOException e) {
+                log.error("Could not record exchange, recording stopped: {}", e.getMessage());
+                recorder = null;
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                    // Already failed
+                }
+            }
+        }
+
+        @Override
+        public void close(boolean reset) {
+            try {
+                session.close(reset);
+            } finally {
+                TraceFile.Writer writer = recorder;
+                if (writer != null) {
+                    try {
+                        writer.flush();
+                    } catch (IOException e) {
+                        log.warn("Could not flush recording: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean isClosed() {
+            return session.isClosed();
+        }
+
+        @Override
+        public String getProtocol() {
+            return session.getProtocol();
+        }
+    }
+}
@@ -77,7 +77,7 @@ public final class VSmartCardClient extends AbstractTCPAdapter {
                 log.trace("Trying to send ignored message: " + message.getType());
                 return;
         }
-        if (message.getType() != RemoteMessage.Type.ATR) {
+        if (message.getType() != RemoteMessage.Type.ATR && log.isTraceEnabled()) {
             log.trace("Sending {}", Hex.toHexString(msg.array()));
         }
         channel.write(msg);
@@ -91,6 +91,18 @@ public class GlobalPlatform {
         return null;
     }
 
+    // Removes the package from registry, returns the Java package name or null if not found
+    public String unloadPackage(AID packageAid) {
+        for (var p : packages.keySet()) {
+            if (p.aid().equals(packageAid)) {
+                packages.remove(p);
+                log.info("Unloaded package {}", p.pkg());
+                return p.pkg();
+            }
+        }
+        return null;
+    }
+
     public SecureChannel getSecureChannel() {
         return sc;
     }
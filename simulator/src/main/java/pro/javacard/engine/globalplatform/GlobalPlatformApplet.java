@@ -47,7 +47,9 @@ public class GlobalPlatformApplet extends Applet {
     private GlobalPlatformApplet(byte[] parameters, short parametersOffset, byte parametersLength) {
     }
 
-    byte[] FCI = Hex.decode("6F108408A000000151000000A5049F6501FF");
+    // 6F108408A000000151000000A5049F6501FF. Not decoded with Hex, as the first class loaded from
+    // the (signed) BouncyCastle jar costs a jar verification, which is not needed to start the engine.
+    byte[] FCI = {0x6F, 0x10, (byte) 0x84, 0x08, (byte) 0xA0, 0x00, 0x00, 0x01, 0x51, 0x00, 0x00, 0x00, (byte) 0xA5, 0x04, (byte) 0x9F, 0x65, 0x01, (byte) 0xFF};
     public static final AID OPEN_AID = AIDUtil.create("A000000151000000");
 
     @Override
@@ -101,8 +103,21 @@ public class GlobalPlatformApplet extends Applet {
                 return;
             } else if (buffer[ISO7816.OFFSET_INS] == (byte) 0xe4) {
                 var aid = AIDUtil.create(Arrays.copyOfRange(payload, 2, payload.length));
+                var runtime = Simulator.current();
                 try {
-                    Simulator.current().internalDeleteApplet(aid);
+                    // "Delete related" removes the package with all of its instances. Otherwise the
+                    // instance is deleted, or the package if there is no such instance.
+                    if ((buffer[ISO7816.OFFSET_P2] & 0x80) != 0) {
+                        if (!runtime.internalDeletePackage(aid)) {
+                            runtime.internalDeleteApplet(aid);
+                        }
+                    } else {
+                        try {
+                            runtime.internalDeleteApplet(aid);
+                        } catch (IllegalArgumentException e) {
+                            runtime.internalDeletePackage(aid);
+                        }
+                    }
                 } catch (Exception e) {
                     // Do nothing, intentionally
 
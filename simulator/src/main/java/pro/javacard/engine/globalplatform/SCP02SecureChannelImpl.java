@@ -119,7 +119,9 @@ public class SCP02SecureChannelImpl implements SecureChannel {
             state = (byte) (SecureChannel.AUTHENTICATED | buffer[ISO7816.OFFSET_P1]);
             GPCrypto.buffer_increment(ssc);
             open = true;
-            log.debug("Secure channel #{} state is now {}", Hex.toHexString(ssc), String.format("%02x", state));
+            if (log.isDebugEnabled()) {
+                log.debug("Secure channel #{} state is now {}", Hex.toHexString(ssc), String.format("%02x", state));
+            }
             return 0;
         } else {
             ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
@@ -132,7 +134,9 @@ public class SCP02SecureChannelImpl implements SecureChannel {
         try {
             final int maclen = 8;
             byte[] mac = Arrays.copyOfRange(buffer, offset + length - maclen, offset + length);
-            log.trace("mac: {} (session open: {})", Hex.toHexString(mac), open);
+            if (log.isTraceEnabled()) {
+                log.trace("mac: {} (session open: {})", Hex.toHexString(mac), open);
+            }
             byte[] payload = Arrays.copyOfRange(buffer, offset + ISO7816.OFFSET_CDATA, offset + length - maclen);
             ByteArrayOutputStream bo = new ByteArrayOutputStream();
             bo.write(buffer[offset + ISO7816.OFFSET_CLA] | 0x04);
@@ -142,7 +146,9 @@ public class SCP02SecureChannelImpl implements SecureChannel {
             if (open && ((state & SecureChannel.C_DECRYPTION) == SecureChannel.C_DECRYPTION)) {
                 log.trace("MAC payload encrypted");
                 byte[] decrypted = des3_cbc_decrypt(payload, encKey, new byte[8]);
-                log.trace("Decrypted: {}", Hex.toHexString(decrypted));
+                if (log.isTraceEnabled()) {
+                    log.trace("Decrypted: {}", Hex.toHexString(decrypted));
+                }
                 byte[] unpadded = GPCrypto.unpad80(decrypted);
                 bo.write(unpadded.length + 8);
                 bo.write(unpadded);
@@ -152,7 +158,9 @@ public class SCP02SecureChannelImpl implements SecureChannel {
                 bo.write(payload);
             }
             byte[] mac_input = bo.toByteArray();
-            log.trace("mac input: {} icv: {}", Hex.toHexString(mac_input), Hex.toHexString(icv));
+            if (log.isTraceEnabled()) {
+                log.trace("mac input: {} icv: {}", Hex.toHexString(mac_input), Hex.toHexString(icv));
+            }
             byte[] check = GPCrypto.mac_des_3des(macKey, mac_input, icv);
             // set new icv
             System.arraycopy(check, 0, icv, 0, icv.length);
@@ -196,13 +204,17 @@ public class SCP02SecureChannelImpl implements SecureChannel {
             if ((state & SecureChannel.C_MAC) == SecureChannel.C_MAC) {
                 process_mac(bytes, offset, length);
             }
-            log.trace("Cryptogram len={} {}", cryptogram.length, Hex.toHexString(cryptogram));
+            if (log.isTraceEnabled()) {
+                log.trace("Cryptogram len={} {}", cryptogram.length, Hex.toHexString(cryptogram));
+            }
             if ((bytes[offset + ISO7816.OFFSET_CLA] & 0x04) == 0x04 && (state & SecureChannel.C_DECRYPTION) == SecureChannel.C_DECRYPTION) {
                 // Decrypt payload
                 byte[] payload = des3_cbc_decrypt(cryptogram, encKey, new byte[8]);
                 // Remove padding
                 payload = GPCrypto.unpad80(payload);
-                log.trace("Unwrapped: {}", Hex.toHexString(payload));
+                if (log.isTraceEnabled()) {
+                    log.trace("Unwrapped: {}", Hex.toHexString(payload));
+                }
                 // Copy back to location
                 Util.arrayCopyNonAtomic(payload, (short) 0, bytes, (short) (offset + ISO7816.OFFSET_CDATA), (short) payload.length);
                 bytes[offset + ISO7816.OFFSET_LC] = (byte) payload.length; // TODO: extlen
@@ -230,7 +242,9 @@ public class SCP02SecureChannelImpl implements SecureChannel {
         }
         try {
             byte[] result = des3_ecb_decrypt(Arrays.copyOfRange(buffer, offset, offset + length), dekKey);
-            log.debug("Decrypted: {}", Hex.toHexString(result));
+            if (log.isDebugEnabled()) {
+                log.debug("Decrypted: {}", Hex.toHexString(result));
+            }
             Util.arrayCopyNonAtomic(result, (short) 0, buffer, offset, (short) result.length);
             return (short) result.length;
         } catch (GeneralSecurityException e) {
@@ -116,7 +116,9 @@ public class SCP03SecureChannelImpl implements SecureChannel {
             }
             state = (byte) (SecureChannel.AUTHENTICATED | buffer[ISO7816.OFFSET_P1]);
             GPCrypto.buffer_increment(ssc);
-            log.debug("Secure channel #{} state is now {}", Hex.toHexString(ssc), String.format("%02x", state));
+            if (log.isDebugEnabled()) {
+                log.debug("Secure channel #{} state is now {}", Hex.toHexString(ssc), String.format("%02x", state));
+            }
             return 0;
         } else {
             ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
@@ -129,7 +131,9 @@ public class SCP03SecureChannelImpl implements SecureChannel {
         try {
             final int maclen = s16 ? 16 : 8;
             byte[] mac = Arrays.copyOfRange(buffer, offset + length - maclen, offset + length);
-            log.trace("mac: {}", Hex.toHexString(mac));
+            if (log.isTraceEnabled()) {
+                log.trace("mac: {}", Hex.toHexString(mac));
+            }
             byte[] payload = Arrays.copyOfRange(buffer, offset + ISO7816.OFFSET_CDATA, offset + length - maclen);
             ByteArrayOutputStream bo = new ByteArrayOutputStream();
             bo.write(chaining);
@@ -140,7 +144,9 @@ public class SCP03SecureChannelImpl implements SecureChannel {
             bo.write(buffer[offset + ISO7816.OFFSET_LC]);
             bo.write(payload);
             byte[] cmac_input = bo.toByteArray();
-            log.trace("mac input: {}", Hex.toHexString(cmac_input));
+            if (log.isTraceEnabled()) {
+                log.trace("mac input: {}", Hex.toHexString(cmac_input));
+            }
             byte[] cmac = GPCrypto.aes_cmac(macKey, cmac_input, 128);
             // set new chaining value
             System.arraycopy(cmac, 0, chaining, 0, chaining.length);
@@ -171,7 +177,9 @@ public class SCP03SecureChannelImpl implements SecureChannel {
             if ((state & SecureChannel.C_MAC) == SecureChannel.C_MAC) {
                 process_mac(bytes, offset, length);
             }
-            log.trace("Cryptogram len={} {}", cryptogram.length, Hex.toHexString(cryptogram));
+            if (log.isTraceEnabled()) {
+                log.trace("Cryptogram len={} {}", cryptogram.length, Hex.toHexString(cryptogram));
+            }
             if ((bytes[ISO7816.OFFSET_CLA] & 0x04) == 0x04 && (state & SecureChannel.C_DECRYPTION) == SecureChannel.C_DECRYPTION) {
                 // Increment counter
                 GPCrypto.buffer_increment(enc_counter);
@@ -181,7 +189,9 @@ public class SCP03SecureChannelImpl implements SecureChannel {
                 byte[] payload = GPCrypto.aes_cbc_decrypt(cryptogram, encKey, iv);
                 // Remove padding
                 payload = GPCrypto.unpad80(payload);
-                log.trace("Unwrapped: {}", Hex.toHexString(payload));
+                if (log.isTraceEnabled()) {
+                    log.trace("Unwrapped: {}", Hex.toHexString(payload));
+                }
                 // Copy back to location
                 Util.arrayCopyNonAtomic(payload, (short) 0, bytes, (short) (offset + ISO7816.OFFSET_CDATA), (short) payload.length);
                 bytes[offset + ISO7816.OFFSET_LC] = (byte) payload.length; // TODO: extlen
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pro.javacard.engine.APDU")
+@Label("APDU")
+@Category({"Java Card", "APDU"})
+@Description("Command processed by an engine session")
+public final class APDUEvent extends jdk.jfr.Event {
+    private static final EventSwitch SWITCH = new EventSwitch(APDUEvent.class);
+
+    @Label("AID")
+    @Description("Applet selected after the command")
+    String aid;
+
+    @Label("CLA")
+    String cla;
+
+    @Label("INS")
+    String ins;
+
+    @Label("SW")
+    String sw;
+
+    @Label("Command Length")
+    int commandLength;
+
+    @Label("Response Length")
+    int responseLength;
+
+    // Started only if the event is enabled, null otherwise
+    public static APDUEvent start() {
+        if (!SWITCH.isEnabled()) {
+            return null;
+        }
+        APDUEvent event = new APDUEvent();
+        event.begin();
+        return event;
+    }
+
+    // Fields are formatted only if the event is recorded
+    public void finish(String aid, byte[] command, byte[] response) {
+        end();
+        if (shouldCommit()) {
+            this.aid = aid;
+            if (command.length >= 2) {
+                cla = String.format("%02X", command[0] & 0xFF);
+                ins = String.format("%02X", command[1] & 0xFF);
+            }
+            if (response.length >= 2) {
+                sw = String.format("%02X%02X", response[response.length - 2] & 0xFF, response[response.length - 1] & 0xFF);
+            }
+            commandLength = command.length;
+            responseLength = response.length;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pro.javacard.engine.AppletDelete")
+@Label("Applet Delete")
+@Category({"Java Card", "Applet"})
+public final class AppletDeleteEvent extends jdk.jfr.Event {
+    private static final EventSwitch SWITCH = new EventSwitch(AppletDeleteEvent.class);
+
+    @Label("AID")
+    String aid;
+
+    // Started only if the event is enabled, null otherwise
+    public static AppletDeleteEvent start() {
+        if (!SWITCH.isEnabled()) {
+            return null;
+        }
+        AppletDeleteEvent event = new AppletDeleteEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String aid) {
+        end();
+        if (shouldCommit()) {
+            this.aid = aid;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pro.javacard.engine.Crypto")
+@Label("Crypto Operation")
+@Category({"Java Card", "Crypto"})
+@Description("Finishing operation of a javacard.security or javacardx.crypto object, like Cipher.doFinal()")
+public final class CryptoEvent extends jdk.jfr.Event {
+    private static final EventSwitch SWITCH = new EventSwitch(CryptoEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Algorithm")
+    @Description("Java Card algorithm constant")
+    byte algorithm;
+
+    @Label("Length")
+    @Description("Input length in bytes, or key length in bits for key generation")
+    int length;
+
+    // Started only if the event is enabled, null otherwise
+    public static CryptoEvent start() {
+        if (!SWITCH.isEnabled()) {
+            return null;
+        }
+        CryptoEvent event = new CryptoEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String operation, byte algorithm, int length) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.algorithm = algorithm;
+            this.length = length;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+// Tells if an event is enabled without creating an instance of it, so that disabled events do not
+// allocate on the APDU path. Flight Recorder is not touched unless something has started it.
+final class EventSwitch {
+    private final Class<? extends Event> klass;
+    private volatile EventType type;
+
+    EventSwitch(Class<? extends Event> klass) {
+        this.klass = klass;
+    }
+
+    boolean isEnabled() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        EventType t = type;
+        if (t == null) {
+            t = EventType.getEventType(klass);
+            type = t;
+        }
+        return t.isEnabled();
+    }
+}
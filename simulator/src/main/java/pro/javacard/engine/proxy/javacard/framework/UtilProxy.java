@@ -15,6 +15,7 @@
  */
 package pro.javacard.engine.proxy.javacard.framework;
 
+import com.licel.jcardsim.base.CostMeter;
 import javacard.framework.TransactionException;
 
 /**
@@ -66,6 +67,8 @@ public class UtilProxy {
     public static short arrayCopy(byte[] src, short srcOff, byte[] dest, short destOff, short length)
             throws ArrayIndexOutOfBoundsException, NullPointerException, TransactionException {
         System.arraycopy(src, srcOff, dest, destOff, length);
+        CostMeter.bytes("Util.arrayCopy", length);
+        CostMeter.write(dest, length);
         return (short) (destOff + length);
     }
 
@@ -112,7 +115,10 @@ public class UtilProxy {
      */
     public static short arrayCopyNonAtomic(byte[] src, short srcOff, byte[] dest, short destOff, short length)
             throws ArrayIndexOutOfBoundsException, NullPointerException {
-        return arrayCopy(src, srcOff, dest, destOff, length);
+        System.arraycopy(src, srcOff, dest, destOff, length);
+        CostMeter.bytes("Util.arrayCopyNonAtomic", length);
+        CostMeter.write(dest, length);
+        return (short) (destOff + length);
     }
 
     /**
@@ -149,6 +155,8 @@ public class UtilProxy {
         if (bLen < 0) {
             throw new ArrayIndexOutOfBoundsException();
         }
+        CostMeter.bytes("Util.arrayFillNonAtomic", bLen);
+        CostMeter.write(bArray, bLen);
         while (bLen > 0) {
             bArray[bOff++] = bValue;
             bLen--;
@@ -201,6 +209,7 @@ public class UtilProxy {
             byte tester = src[(srcOff + length) - 1];
             tester = dest[(destOff + length) - 1];
         }
+        CostMeter.bytes("Util.arrayCompare", length);
         for (short i = 0; i < length; i++) {
             if (src[srcOff + i] != dest[destOff + i]) {
                 short thisSrc = (short) (src[srcOff + i] & 0x00ff);
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Asynchronous APDU trace. Producers (adapter or session threads) copy raw bytes into a bounded
+// lock-free ring (per-slot sequence numbers, as in Vyukov's bounded queue) and a background thread
+// drains it into a TraceSink. Nothing is formatted on the hot path; when the ring is full the
+// exchange is dropped and counted instead of blocking the card.
+public final class APDUTrace implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(APDUTrace.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    static final int INITIAL_SLOT_SIZE = 512;
+
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final byte[][] buffers;
+    private final int[] commandLength;
+    private final int[] responseLength;
+    private final long[] timestamps;
+
+    private final AtomicLong head = new AtomicLong();
+    private long tail; // only touched by the drainer
+
+    private final TraceSink sink;
+    private final int sample;
+    private final AtomicLong seen = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final long start = System.nanoTime();
+
+    private final Thread drainer;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+    private volatile boolean failed = false;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Producers past the running check, close() waits for them before the last drain
+    private final AtomicInteger producing = new AtomicInteger();
+
+    // Record every sample-th exchange into sink, buffering at most capacity (rounded up to power of two) exchanges
+    public APDUTrace(TraceSink sink, int capacity, int sample) {
+        if (capacity < 1 || sample < 1) {
+            throw new IllegalArgumentException("Capacity and sample must be positive");
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        this.buffers = new byte[size][];
+        this.commandLength = new int[size];
+        this.responseLength = new int[size];
+        this.timestamps = new long[size];
+        this.sink = sink;
+        this.sample = sample;
+        this.drainer = new Thread(this::drain, "APDUTrace");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public APDUTrace(TraceSink sink) {
+        this(sink, DEFAULT_CAPACITY, 1);
+    }
+
+    public static APDUTrace toFile(Path path, int sample) throws IOException {
+        return new APDUTrace(TraceFile.Writer.create(path), DEFAULT_CAPACITY, sample);
+    }
+
+    public void record(byte[] command, byte[] response) {
+        record(command, 0, command.length, response, 0, response.length);
+    }
+
+    // Safe to call from any thread. Copies the bytes, never blocks.
+    public void record(byte[] command, int coff, int clen, byte[] response, int roff, int rlen) {
+        producing.incrementAndGet();
+        try {
+            if (running) {
+                publish(command, coff, clen, response, roff, rlen);
+            }
+        } finally {
+            producing.decrementAndGet();
+        }
+    }
+
+    private void publish(byte[] command, int coff, int clen, byte[] response, int roff, int rlen) {
+        if (sample > 1 && seen.getAndIncrement() % sample != 0) {
+            return;
+        }
+        final long now = System.nanoTime() - start;
+        long pos;
+        int slot;
+        while (true) {
+            pos = head.get();
+            slot = (int) (pos & mask);
+            long seq = sequence.get(slot);
+            if (seq == pos) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (seq < pos) {
+                // Ring is full
+                dropped.incrementAndGet();
+                return;
+            }
+            // else another producer claimed the slot, retry
+        }
+        byte[] buffer = buffers[slot];
+        if (buffer == null || buffer.length < clen + rlen) {
+            buffer = new byte[Math.max(INITIAL_SLOT_SIZE, clen + rlen)];
+            buffers[slot] = buffer;
+        }
+        System.arraycopy(command, coff, buffer, 0, clen);
+        System.arraycopy(response, roff, buffer, clen, rlen);
+        commandLength[slot] = clen;
+        responseLength[slot] = rlen;
+        timestamps[slot] = now;
+        sequence.set(slot, pos + 1); // publish
+        if (waiting) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private boolean drainAvailable() throws IOException {
+        boolean any = false;
+        while (true) {
+            int slot = (int) (tail & mask);
+            if (sequence.get(slot) != tail + 1) {
+                return any;
+            }
+            int clen = commandLength[slot];
+            sink.write(timestamps[slot], buffers[slot], 0, clen, buffers[slot], clen, responseLength[slot]);
+            sequence.set(slot, tail + mask + 1); // free for producers
+            tail++;
+            any = true;
+        }
+    }
+
+    private void drain() {
+        boolean dirty = false;
+        try {
+            while (running) {
+                if (drainAvailable()) {
+                    dirty = true;
+                    continue;
+                }
+                if (dirty) {
+                    sink.flush();
+                    dirty = false;
+                }
+                waiting = true;
+                // re-check after announcing, so that a publish in between is not missed for long
+                if (!drainAvailable()) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                } else {
+                    dirty = true;
+                }
+                waiting = false;
+            }
+            drainAvailable();
+        } catch (IOException e) {
+            log.error("Trace sink failed, tracing stopped: {}", e.getMessage());
+            failed = true;
+            running = false;
+        }
+    }
+
+    // Drains what is buffered and closes the sink
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        boolean interrupted = false;
+        while (drainer.isAlive()) {
+            try {
+                drainer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // Producers that passed the running check may publish after the last drain of the drainer
+        while (producing.get() > 0) {
+            Thread.onSpinWait();
+        }
+        if (!failed) {
+            drainAvailable();
+        }
+        if (dropped.get() > 0) {
+            log.warn("Trace dropped {} exchanges", dropped.get());
+        }
+        sink.close();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.trace;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compact binary APDU trace. After the header every exchange is a record of
+// varint(nanoseconds since previous record) varint(len) command varint(len) response
+public final class TraceFile {
+    static final byte[] MAGIC = {'J', 'C', 'T', 'R'};
+    static final int VERSION = 1;
+
+    private TraceFile() {
+    }
+
+    public static final class Exchange {
+        private final long timestamp;
+        private final byte[] command;
+        private final byte[] response;
+
+        public Exchange(long timestamp, byte[] command, byte[] response) {
+            this.timestamp = timestamp;
+            this.command = command.clone();
+            this.response = response.clone();
+        }
+
+        // Nanoseconds since start of trace
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public byte[] getCommand() {
+            return command.clone();
+        }
+
+        public byte[] getResponse() {
+            return response.clone();
+        }
+    }
+
+    public static final class Writer implements TraceSink {
+        private final OutputStream out;
+        private final long start = System.nanoTime();
+        private long last;
+
+        Writer(OutputStream out) throws IOException {
+            this.out = out;
+            out.write(MAGIC);
+            out.write(VERSION);
+        }
+
+        public static Writer create(Path path) throws IOException {
+            return new Writer(new BufferedOutputStream(Files.newOutputStream(path)));
+        }
+
+        public synchronized void write(byte[] command, byte[] response) throws IOException {
+            write(System.nanoTime() - start, command, 0, command.length, response, 0, response.length);
+        }
+
+        // Timestamp is nanoseconds since start of trace and must not go backwards
+        @Override
+        public synchronized void write(long timestamp, byte[] command, int coff, int clen, byte[] response, int roff, int rlen) throws IOException {
+            writeVarint(out, Math.max(0, timestamp - last));
+            last = Math.max(last, timestamp);
+            writeVarint(out, clen);
+            out.write(command, coff, clen);
+            writeVarint(out, rlen);
+            out.write(response, roff, rlen);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final InputStream in;
+        private long timestamp;
+
+        Reader(InputStream in) throws IOException {
+            this.in = in;
+            byte[] header = in.readNBytes(MAGIC.length + 1);
+            if (header.length != MAGIC.length + 1 || header[0] != MAGIC[0] || header[1] != MAGIC[1] || header[2] != MAGIC[2] || header[3] != MAGIC[3]) {
+                throw new IOException("Not a trace file");
+            }
+            if (header[4] != VERSION) {
+                throw new IOException("Unsupported trace version: " + header[4]);
+            }
+        }
+
+        public static Reader open(Path path) throws IOException {
+            return new Reader(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        // Returns null on end of trace
+        public Exchange next() throws IOException {
+            long delta = readVarint(in, true);
+            if (delta < 0) {
+                return null;
+            }
+            timestamp += delta;
+            byte[] command = readChunk();
+            byte[] response = readChunk();
+            return new Exchange(timestamp, command, response);
+        }
+
+        private byte[] readChunk() throws IOException {
+            long len = readVarint(in, false);
+            if (len > Integer.MAX_VALUE) {
+                throw new IOException("Invalid record length: " + len);
+            }
+            byte[] chunk = in.readNBytes((int) len);
+            if (chunk.length != len) {
+                throw new EOFException("Truncated trace");
+            }
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public static List<Exchange> read(Path path) throws IOException {
+        List<Exchange> result = new ArrayList<>();
+        try (Reader reader = Reader.open(path)) {
+            Exchange e;
+            while ((e = reader.next()) != null) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    static void writeVarint(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    // Returns -1 if stream ends before the first byte and eofOK is set
+    static long readVarint(InputStream in, boolean eofOK) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0 && eofOK) {
+                    return -1;
+                }
+                throw new EOFException("Truncated trace");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Consumer of traced exchanges. Called only from the draining thread of APDUTrace.
+// The arrays are reused after the call returns, so copy what needs to be kept.
+public interface TraceSink extends Closeable {
+    // Timestamp is nanoseconds since start of trace
+    void write(long timestamp, byte[] command, int coff, int clen, byte[] response, int roff, int rlen) throws IOException;
+
+    default void flush() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
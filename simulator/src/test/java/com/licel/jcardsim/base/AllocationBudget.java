@@ -0,0 +1,84 @@
+package com.licel.jcardsim.base;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Asserts the number of bytes allocated by the current thread per call of an operation. Budgets are kept
+// in allocation-budgets.properties, next to the test classes. The operation is warmed up first, so that
+// the numbers are those of compiled code, where escape analysis has removed what it can. Budgets are for
+// 64 bit HotSpot JVMs with compressed oops; a budget can be overridden for a Java version with a
+// "<name>.java<version>" key.
+final class AllocationBudget {
+    static final int WARMUP = 20_000;
+    static final int ITERATIONS = 2_000;
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final Properties budgets = new Properties();
+
+    static {
+        try (InputStream in = AllocationBudget.class.getResourceAsStream("/allocation-budgets.properties")) {
+            if (in == null) {
+                throw new IllegalStateException("allocation-budgets.properties not found");
+            }
+            budgets.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private AllocationBudget() {
+    }
+
+    // Object sizes, and thus the budgets, depend on the pointer size, and escape analysis needs the JIT
+    static boolean comparable() {
+        if (!"64".equals(System.getProperty("sun.arch.data.model")) || ManagementFactory.getCompilationMXBean() == null) {
+            return false;
+        }
+        HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        try {
+            return hotspot != null && Boolean.parseBoolean(hotspot.getVMOption("UseCompressedOops").getValue());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Average bytes allocated per call, after warmup
+    static long measure(Runnable operation) {
+        assumeTrue(comparable(), "Budgets are for a 64 bit JVM with compressed oops and JIT");
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocation counting not supported");
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (threads.getThreadAllocatedBytes(id) - before) / ITERATIONS;
+    }
+
+    static long budget(String name) {
+        String value = budgets.getProperty(name + ".java" + Runtime.version().feature(), budgets.getProperty(name));
+        if (value == null) {
+            throw new IllegalArgumentException("No allocation budget for " + name);
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    static void assertWithin(String name, Runnable operation) {
+        long budget = budget(name);
+        long allocated = measure(operation);
+        assertTrue(allocated <= budget, () -> String.format("%s allocates %d bytes per call, budget is %d", name, allocated, budget));
+    }
+}
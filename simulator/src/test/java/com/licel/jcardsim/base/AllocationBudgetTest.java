@@ -0,0 +1,71 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Bytes allocated per APDU on the dispatch path (_transmitCommand, CurrentAPDU, sendAPDU and the applet
+// proxy of isolated applets), against the budgets in allocation-budgets.properties. If a change makes
+// the engine allocate more, find out why before raising a budget. Skipped on JVMs the budgets are not
+// for (see AllocationBudget).
+public class AllocationBudgetTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    static final byte[] SELECT = AIDUtil.select(aid);
+    static final byte[] HELLO = Hex.decode("0101000000");
+    static final byte[] ECHO = Hex.decode("01010100050102030405");
+    static final byte[] NOP = Hex.decode("01020000");
+    static final byte[] SW = Hex.decode("0107000000");
+
+    static void withSession(boolean exposed, Consumer<EngineSession> test) {
+        try (JavaCardEngine sim = JavaCardEngine.create()) {
+            if (exposed) {
+                sim.installExposedApplet(aid, HelloWorldApplet.class);
+            } else {
+                sim.installApplet(aid, HelloWorldApplet.class);
+            }
+            try (EngineSession session = sim.connect()) {
+                assertEquals(0x9000, sw(session.transmitCommand(SELECT)));
+                test.accept(session);
+            }
+        }
+    }
+
+    static int sw(byte[] response) {
+        return ((response[response.length - 2] & 0xFF) << 8) | (response[response.length - 1] & 0xFF);
+    }
+
+    static void assertAPDU(String name, EngineSession session, byte[] command, int expected) {
+        assertEquals(expected, sw(session.transmitCommand(command)));
+        AllocationBudget.assertWithin(name, () -> session.transmitCommand(command));
+    }
+
+    @Test
+    public void testIsolated() {
+        withSession(false, session -> {
+            assertAPDU("isolated.select", session, SELECT, 0x9000);
+            assertAPDU("isolated.hello", session, HELLO, 0x9000);
+            assertAPDU("isolated.echo", session, ECHO, 0x9000);
+            assertAPDU("isolated.nop", session, NOP, 0x9000);
+            assertAPDU("isolated.sw", session, SW, 0x9B00);
+        });
+    }
+
+    @Test
+    public void testExposed() {
+        withSession(true, session -> {
+            assertAPDU("exposed.select", session, SELECT, 0x9000);
+            assertAPDU("exposed.hello", session, HELLO, 0x9000);
+            assertAPDU("exposed.echo", session, ECHO, 0x9000);
+            assertAPDU("exposed.nop", session, NOP, 0x9000);
+            assertAPDU("exposed.sw", session, SW, 0x9B00);
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.ConditionalConstructorApplet;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import javacard.framework.AID;
+import javacard.framework.ISO7816;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.AppletCoverage;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppletCoverageTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    static final byte[] HELLO = Hex.decode("0101000000");
+    static final byte[] NOP = Hex.decode("01020000");
+    static final String SAY_HELLO = "sayHello(Ljavacard/framework/APDU;S)V";
+
+    static AppletCoverage.ClassCoverage applet(AppletCoverage coverage) {
+        return coverage.getClasses().stream().filter(c -> c.getName().equals(HelloWorldApplet.class.getName())).findFirst().orElseThrow();
+    }
+
+    static void send(JavaCardEngine sim, byte[]... commands) {
+        try (EngineSession session = sim.connect()) {
+            session.transmitCommand(AIDUtil.select(aid));
+            for (byte[] command : commands) {
+                assertEquals(ISO7816.SW_NO_ERROR, ByteUtil.getSW(session.transmitCommand(command)));
+            }
+        }
+    }
+
+    @Test
+    public void testCoverage() {
+        try (JavaCardEngine sim = JavaCardEngine.create().covered(true)) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            send(sim, NOP);
+            AppletCoverage.ClassCoverage nop = applet(sim.getCoverage());
+            assertEquals("com/licel/jcardsim/samples/HelloWorldApplet.java", nop.getSource());
+            assertTrue(nop.getMethods().get("process(Ljavacard/framework/APDU;)V"));
+            assertFalse(nop.getMethods().get(SAY_HELLO));
+            assertTrue(nop.getCoveredBlocks() > 0 && nop.getCoveredBlocks() < nop.getBlocks());
+
+            send(sim, HELLO);
+            AppletCoverage coverage = sim.getCoverage();
+            AppletCoverage.ClassCoverage hello = applet(coverage);
+            assertTrue(hello.getMethods().get(SAY_HELLO));
+            assertTrue(hello.getCoveredBlocks() > nop.getCoveredBlocks());
+            assertTrue(coverage.getCoveredLineCount() > 0 && coverage.getCoveredLineCount() < coverage.getLineCount());
+
+            String lcov = coverage.toLCOV();
+            assertTrue(lcov.contains("SF:com/licel/jcardsim/samples/HelloWorldApplet.java\n"));
+            assertTrue(lcov.contains("FNDA:1," + HelloWorldApplet.class.getName() + "." + SAY_HELLO + "\n"));
+            assertTrue(lcov.contains("end_of_record\n"));
+
+            sim.resetCoverage();
+            assertEquals(0, applet(sim.getCoverage()).getCoveredBlocks());
+            send(sim, NOP);
+            assertFalse(applet(sim.getCoverage()).getMethods().get(SAY_HELLO));
+        }
+    }
+
+    @Test
+    public void testNotCovered() {
+        try (JavaCardEngine sim = JavaCardEngine.create()) {
+            assertThrows(IllegalStateException.class, sim::getCoverage);
+            sim.installApplet(aid, HelloWorldApplet.class);
+            // Too late
+            assertThrows(IllegalStateException.class, () -> sim.covered(true));
+        }
+        assertThrows(IllegalStateException.class, () -> JavaCardEngine.create().shared(true).covered(true));
+    }
+
+    @Test
+    public void testWithProfilingAndCosts() {
+        try (JavaCardEngine sim = JavaCardEngine.create().covered(true).profiled(true).withCostModel(CostMeterTest.model("bytecode", "1"))) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            send(sim, HELLO);
+            assertTrue(applet(sim.getCoverage()).getMethods().get(SAY_HELLO));
+            assertEquals(1, sim.getProfile().getCommandCount("0101"));
+        }
+    }
+
+    @Test
+    public void testConditionalConstructor() {
+        try (JavaCardEngine sim = JavaCardEngine.create().covered(true)) {
+            sim.installApplet(aid, ConditionalConstructorApplet.class);
+            send(sim, Hex.decode("8001010100"), Hex.decode("8002000000"));
+            AppletCoverage.ClassCoverage applet = sim.getCoverage().getClasses().stream()
+                    .filter(c -> c.getName().equals(ConditionalConstructorApplet.class.getName())).findFirst().orElseThrow();
+            assertTrue(applet.getCoveredBlocks() > 0 && applet.getCoveredBlocks() < applet.getBlocks());
+        }
+    }
+}
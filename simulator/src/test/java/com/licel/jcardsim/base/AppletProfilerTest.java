@@ -0,0 +1,83 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.ConditionalConstructorApplet;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.AppletProfile;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppletProfilerTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    static final byte[] HELLO = Hex.decode("0101000000");
+    static final byte[] NOP = Hex.decode("01020000");
+    static final String PROCESS = HelloWorldApplet.class.getName() + ".process(Ljavacard/framework/APDU;)V";
+    static final String SAY_HELLO = HelloWorldApplet.class.getName() + ".sayHello(Ljavacard/framework/APDU;S)V";
+
+    static long count(List<AppletProfile.Entry> entries, String name) {
+        return entries.stream().filter(e -> e.getName().equals(name)).mapToLong(AppletProfile.Entry::getCount).sum();
+    }
+
+    @Test
+    public void testProfile() {
+        try (JavaCardEngine sim = JavaCardEngine.create().profiled(true)) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+                for (int i = 0; i < 5; i++) {
+                    session.transmitCommand(HELLO);
+                    assertArrayEquals(Hex.decode("9000"), session.transmitCommand(NOP));
+                }
+            }
+            AppletProfile profile = sim.getProfile();
+            assertEquals(5, profile.getCommandCount("0101"));
+            assertEquals(5, profile.getCommandCount("0102"));
+            assertEquals(1, profile.getCommandCount("00A4"));
+
+            List<AppletProfile.Entry> methods = profile.getHottest("0101", AppletProfile.Kind.METHOD, 10);
+            assertEquals(5, count(methods, PROCESS));
+            assertEquals(5, count(methods, SAY_HELLO));
+            assertEquals(0, count(profile.getEntries("0102"), SAY_HELLO));
+            assertTrue(count(profile.getHottest("0101", AppletProfile.Kind.API, 10), "javacard.framework.APDU.getBuffer()[B") >= 10);
+            assertFalse(profile.getHottest("0101", AppletProfile.Kind.BLOCK, 10).isEmpty());
+            // Constructor and register() from install()
+            assertFalse(profile.getEntries(AppletProfile.OUTSIDE).isEmpty());
+            assertTrue(profile.format(5).contains("APDU 0101: 5 commands"));
+
+            sim.resetProfile();
+            assertEquals(0, sim.getProfile().getCommandCount("0101"));
+        }
+    }
+
+    @Test
+    public void testNotProfiled() {
+        try (JavaCardEngine sim = JavaCardEngine.create()) {
+            assertThrows(IllegalStateException.class, sim::getProfile);
+            sim.installApplet(aid, HelloWorldApplet.class);
+            // Too late
+            assertThrows(IllegalStateException.class, () -> sim.profiled(true));
+        }
+        assertThrows(IllegalStateException.class, () -> JavaCardEngine.create().shared(true).profiled(true));
+    }
+
+    // Probes must not separate a NEW from the label of its uninitialized frame values
+    @Test
+    public void testConditionalConstructor() {
+        try (JavaCardEngine sim = JavaCardEngine.create().profiled(true)) {
+            sim.installApplet(aid, ConditionalConstructorApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+                assertArrayEquals(Hex.decode("00029000"), session.transmitCommand(Hex.decode("8001010100")));
+                assertArrayEquals(Hex.decode("00039000"), session.transmitCommand(Hex.decode("8002000000")));
+            }
+            assertFalse(sim.getProfile().getHottest("8001", AppletProfile.Kind.BLOCK, 10).isEmpty());
+        }
+    }
+}
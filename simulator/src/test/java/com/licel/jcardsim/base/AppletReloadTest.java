@@ -0,0 +1,122 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.ReloadableApplet;
+import com.licel.jcardsim.samples.ReloadableAppletV2;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.framework.Applet;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppletReloadTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    // Versions of the applet are served under this name from a directory
+    static final String NAME = "com.licel.jcardsim.reload.ReloadableApplet";
+    static final byte[] INCREMENT = Hex.decode("8001000000");
+    static final byte[] GET_DATA = Hex.decode("8002000000");
+
+    @TempDir
+    Path classes;
+
+    // Copies the sample classes as the applet under NAME
+    void write(Class<?> sample, UnaryOperator<ClassVisitor> change) throws IOException {
+        String from = sample.getName().replace('.', '/');
+        String to = NAME.replace('.', '/');
+        Map<String, String> names = Map.of(from, to, from + "$Counter", to + "$Counter");
+        for (String suffix : new String[]{"", "$Counter"}) {
+            try (InputStream in = sample.getResourceAsStream(sample.getSimpleName() + suffix + ".class")) {
+                ClassWriter cw = new ClassWriter(0);
+                new ClassReader(in.readAllBytes()).accept(change.apply(new ClassRemapper(cw, new SimpleRemapper(Opcodes.ASM9, names))), 0);
+                Path file = classes.resolve(to + suffix + ".class");
+                Files.createDirectories(file.getParent());
+                Files.write(file, cw.toByteArray());
+            }
+        }
+    }
+
+    static byte[] send(JavaCardEngine sim, byte[] command) {
+        try (EngineSession session = sim.connect()) {
+            session.transmitCommand(AIDUtil.select(aid));
+            return session.transmitCommand(command);
+        }
+    }
+
+    JavaCardEngine install() throws Exception {
+        write(ReloadableApplet.class, UnaryOperator.identity());
+        URLClassLoader parent = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader());
+        JavaCardEngine sim = JavaCardEngine.create().withClassLoader(parent);
+        sim.installApplet(aid, parent.loadClass(NAME).asSubclass(Applet.class));
+        send(sim, INCREMENT);
+        assertArrayEquals(Hex.decode("0100029000"), send(sim, INCREMENT));
+        return sim;
+    }
+
+    @Test
+    public void testReloadKeepsState() throws Exception {
+        JavaCardEngine sim = install();
+
+        write(ReloadableAppletV2.class, UnaryOperator.identity());
+        sim.reloadApplets();
+        // New code, old counter, statics and persistent array
+        assertArrayEquals(Hex.decode("0200049000"), send(sim, INCREMENT));
+        assertArrayEquals(Hex.decode("000101029000"), send(sim, GET_DATA));
+
+        // And back
+        write(ReloadableApplet.class, UnaryOperator.identity());
+        sim.reloadApplets();
+        assertArrayEquals(Hex.decode("0100059000"), send(sim, INCREMENT));
+    }
+
+    @Test
+    public void testReloadDuringSession() throws Exception {
+        JavaCardEngine sim = install();
+        write(ReloadableAppletV2.class, UnaryOperator.identity());
+        try (EngineSession session = sim.connect()) {
+            assertArrayEquals(Hex.decode("9000"), session.transmitCommand(AIDUtil.select(aid)));
+            // Deferred to the next command
+            sim.reloadApplets();
+            assertArrayEquals(Hex.decode("0200049000"), session.transmitCommand(INCREMENT));
+        }
+    }
+
+    @Test
+    public void testIncompatibleLayoutKeepsOldClasses() throws Exception {
+        JavaCardEngine sim = install();
+        // Without the data field
+        write(ReloadableAppletV2.class, cv -> new ClassVisitor(Opcodes.ASM9, cv) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                return name.equals("data") ? null : super.visitField(access, name, descriptor, signature, value);
+            }
+        });
+        sim.reloadApplets();
+        assertArrayEquals(Hex.decode("0100039000"), send(sim, INCREMENT));
+    }
+
+    @Test
+    public void testSharedNotSupported() {
+        JavaCardEngine sim = JavaCardEngine.create().shared(true);
+        assertThrows(IllegalStateException.class, sim::reloadApplets);
+    }
+}
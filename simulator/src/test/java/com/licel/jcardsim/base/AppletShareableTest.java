@@ -15,13 +15,18 @@
  */
 package com.licel.jcardsim.base;
 
+import com.licel.jcardsim.samples.GlobalArrayAccess;
 import com.licel.jcardsim.samples.GlobalArrayClientApplet;
 import com.licel.jcardsim.samples.GlobalArrayServerApplet;
 import com.licel.jcardsim.utils.AIDUtil;
 import javacard.framework.AID;
 import javacard.framework.JCSystem;
+import javacard.framework.Shareable;
 import org.bouncycastle.util.encoders.Hex;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -54,4 +59,67 @@ public class AppletShareableTest {
         assertNull(JCSystem.getAppletShareableInterfaceObject(appletAID, (byte) 0));
         instance._releaseCurrent();
     }
+
+    @Test
+    public void testShareableFirewallCached() {
+        AID serverAID = AIDUtil.create(serverAppletAIDBytes);
+
+        Simulator instance = new Simulator();
+        instance.installExposedApplet(serverAID, GlobalArrayServerApplet.class);
+        assertTrue(instance.selectApplet(serverAID));
+        instance._makeCurrent();
+        Shareable first = JCSystem.getAppletShareableInterfaceObject(serverAID, (byte) 0);
+        Shareable second = JCSystem.getAppletShareableInterfaceObject(serverAID, (byte) 0);
+        instance._releaseCurrent();
+        // One gate per shareable object, which is not the server applet itself
+        assertSame(first, second);
+        assertFalse(first instanceof GlobalArrayServerApplet);
+        assertNull(((GlobalArrayAccess) first).getGlobalArrayRef());
+        // Context is restored after the call
+        assertEquals(serverAID, instance.getAID());
+        assertNull(instance.getPreviousContextAID());
+
+        // New gate after the server is deleted and installed again
+        instance.deleteApplet(serverAID);
+        instance.installExposedApplet(serverAID, GlobalArrayServerApplet.class);
+        assertTrue(instance.selectApplet(serverAID));
+        instance._makeCurrent();
+        Shareable third = JCSystem.getAppletShareableInterfaceObject(serverAID, (byte) 0);
+        instance._releaseCurrent();
+        assertNotSame(first, third);
+    }
+
+    static byte[] define(int access, String name, String superName, String... interfaces) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V11, access, name, null, superName, interfaces);
+        if ((access & Opcodes.ACC_INTERFACE) == 0) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    @Test
+    public void testGateErrorNotHidden() throws Exception {
+        // Shareable interface that is package private, inherited by a class of another package
+        ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+            {
+                byte[] hidden = define(Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "a/Hidden", "java/lang/Object", "javacard/framework/Shareable");
+                byte[] base = define(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "a/Base", "java/lang/Object", "a/Hidden");
+                byte[] impl = define(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "b/Impl", "a/Base");
+                defineClass("a.Hidden", hidden, 0, hidden.length);
+                defineClass("a.Base", base, 0, base.length);
+                defineClass("b.Impl", impl, 0, impl.length);
+            }
+        };
+        Class<?> impl = Class.forName("b.Impl", false, loader);
+        // The gate can not implement the interface, which is the error, not that the gate is missing
+        assertThrows(IllegalAccessError.class, () -> Firewall.gate(impl));
+    }
 }
@@ -0,0 +1,146 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.ConditionalConstructorApplet;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.samples.Sha1Applet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.security.MessageDigest;
+import javacard.security.Signature;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.CostModel;
+import pro.javacard.engine.CostReport;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CostMeterTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    static final byte[] HELLO = Hex.decode("0101000000");
+    static final byte[] NOP = Hex.decode("01020000");
+
+    static CostModel model(String... pairs) {
+        Properties p = new Properties();
+        for (int i = 0; i < pairs.length; i += 2) {
+            p.setProperty(pairs[i], pairs[i + 1]);
+        }
+        return CostModel.fromProperties("test", p);
+    }
+
+    static CostReport.Entry entry(CostReport report, String key) {
+        return report.getEntries().stream().filter(e -> e.getKey().equals(key)).findFirst().orElse(null);
+    }
+
+    @Test
+    public void testModel() throws Exception {
+        CostModel model = model("unit", "us", "Util", "2", "Util.arrayCopy", "3", "Util.perByte", "0.5",
+                "crypto.Signature.sign.ALG_ECDSA_SHA_256", "1000", "crypto.Signature.sign.ALG_ECDSA_SHA_256.384", "2000");
+        assertEquals(3000, model.cost("Util.arrayCopy"));
+        assertEquals(2000, model.cost("Util.arrayFill"));
+        assertEquals(500, model.costPerByte("Util.arrayCopy"));
+        assertEquals(1_000_000, model.cost("crypto.Signature.sign.ALG_ECDSA_SHA_256.256"));
+        assertEquals(2_000_000, model.cost("crypto.Signature.sign.ALG_ECDSA_SHA_256.384"));
+        // No fallback from per byte to per call costs
+        assertEquals(0, model.costPerByte("apdu"));
+        assertFalse(model.hasBytecodeCost());
+
+        assertEquals(250, model("unit", "cycles", "clock.mhz", "20", "bytecode", "5").cost("bytecode"));
+        assertThrows(IllegalArgumentException.class, () -> model("unit", "cycles", "bytecode", "5"));
+        assertThrows(IllegalArgumentException.class, () -> model("bytecode", "fast"));
+
+        for (String name : CostModel.BUILTIN) {
+            CostModel builtin = CostModel.load(name);
+            assertTrue(builtin.hasBytecodeCost());
+            assertTrue(builtin.cost("crypto.Signature.sign.ALG_ECDSA_SHA_256.256") > builtin.cost("Util.arrayCopy"));
+        }
+
+        assertEquals("ALG_ECDSA_SHA_256", CostMeter.algorithm("Signature.sign", Signature.ALG_ECDSA_SHA_256));
+        assertEquals("ALG_SHA", CostMeter.algorithm("MessageDigest.doFinal", MessageDigest.ALG_SHA));
+    }
+
+    @Test
+    public void testEstimates() {
+        CostModel model = model("bytecode", "100", "Util", "1000", "Util.perByte", "10", "apdu", "5000", "apdu.perByte", "1",
+                "eeprom.write.perByte", "1000000");
+        try (JavaCardEngine sim = JavaCardEngine.create().withCostModel(model)) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            try (EngineSession session = sim.connect()) {
+                assertFalse(session.getEstimatedDuration().isPresent());
+                session.transmitCommand(AIDUtil.select(aid));
+                session.transmitCommand(HELLO);
+                Duration hello = session.getEstimatedDuration().orElseThrow();
+                session.transmitCommand(HELLO);
+                assertEquals(hello, session.getEstimatedDuration().orElseThrow());
+                assertArrayEquals(Hex.decode("9000"), session.transmitCommand(NOP));
+                Duration nop = session.getEstimatedDuration().orElseThrow();
+                assertTrue(nop.toNanos() > 5000);
+                assertTrue(hello.compareTo(nop) > 0);
+            }
+            CostReport report = sim.getCostReport();
+            assertEquals(2, report.getEstimates().get("0101").getCount());
+            assertEquals(1, report.getEstimates().get("0102").getCount());
+            assertTrue(entry(report, "bytecode").getCalls() > 0);
+            // Into transient memory, so no EEPROM writes
+            CostReport.Entry copy = entry(report, "Util.arrayCopyNonAtomic");
+            assertTrue(copy.getCalls() >= 2);
+            assertTrue(copy.getBytes() > 0);
+            assertNull(entry(report, CostMeter.EEPROM));
+            assertEquals(4, entry(report, CostMeter.APDU).getCalls());
+            assertTrue(report.format(5).contains("APDU 0101: 2 commands"));
+
+            // Too late for instrumentation
+            assertThrows(IllegalStateException.class, () -> sim.withCostModel(null));
+        }
+    }
+
+    @Test
+    public void testWithProfiling() {
+        try (JavaCardEngine sim = JavaCardEngine.create().profiled(true).withCostModel(model("bytecode", "1"))) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+                session.transmitCommand(HELLO);
+            }
+            assertEquals(1, sim.getProfile().getCommandCount("0101"));
+            assertTrue(sim.getCostReport().getEstimates().get("0101").getMeanNanos() > 0);
+        }
+    }
+
+    @Test
+    public void testConditionalConstructor() {
+        try (JavaCardEngine sim = JavaCardEngine.create().withCostModel(model("bytecode", "1"))) {
+            sim.installApplet(aid, ConditionalConstructorApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+                assertArrayEquals(Hex.decode("00029000"), session.transmitCommand(Hex.decode("8001010100")));
+                assertArrayEquals(Hex.decode("00039000"), session.transmitCommand(Hex.decode("8002000000")));
+            }
+            assertTrue(sim.getCostReport().getEstimates().get("8002").getMeanNanos() > 0);
+        }
+    }
+
+    @Test
+    public void testCryptoWithoutBytecode() {
+        CostModel model = model("crypto.MessageDigest.doFinal.ALG_SHA", "1000", "crypto.MessageDigest.perByte", "10");
+        AID sha = AIDUtil.create("D276000085010100");
+        try (JavaCardEngine sim = JavaCardEngine.create().withCostModel(model)) {
+            sim.installApplet(sha, Sha1Applet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(sha));
+                session.transmitCommand(Hex.decode("800000000401020304"));
+                assertEquals(1040, session.getEstimatedDuration().orElseThrow().toNanos());
+            }
+            // Data goes in with update()
+            assertEquals(1, entry(sim.getCostReport(), "crypto.MessageDigest.doFinal.ALG_SHA").getCalls());
+            assertEquals(4, entry(sim.getCostReport(), "crypto.MessageDigest.update.ALG_SHA").getBytes());
+            assertNull(entry(sim.getCostReport(), CostMeter.BYTECODE));
+        }
+        assertThrows(IllegalStateException.class, () -> JavaCardEngine.create().getCostReport());
+        assertThrows(IllegalStateException.class, () -> JavaCardEngine.create().shared(true).withCostModel(model("bytecode", "1")));
+    }
+}
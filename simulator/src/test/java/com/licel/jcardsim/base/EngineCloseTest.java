@@ -0,0 +1,152 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineCloseTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+
+    static void selectAndClose(JavaCardEngine sim) {
+        try (EngineSession session = sim.connect()) {
+            byte[] response = session.transmitCommand(AIDUtil.select(aid));
+            assertArrayEquals(Hex.decode("9000"), response);
+        }
+        sim.close();
+    }
+
+    static JavaCardEngine cycle() {
+        JavaCardEngine sim = JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+        selectAndClose(sim);
+        return sim;
+    }
+
+    static long metaspace() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getName().equals("Metaspace"))
+                .mapToLong(p -> p.getUsage().getUsed())
+                .findFirst().orElse(0);
+    }
+
+    static void gc() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+    }
+
+    static void gc(WeakReference<?> ref) throws InterruptedException {
+        for (int i = 0; i < 20 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+    }
+
+    // Slow, and the numbers depend on when the GC unloads classes, thus with -Pbenchmarks
+    @Test
+    @Tag("benchmark")
+    public void testClassesUnloadedAfterClose() throws Exception {
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        // Warm up, so that engine classes and proxies are already loaded
+        for (int i = 0; i < 100; i++) {
+            cycle();
+        }
+        gc();
+        long baselineClasses = classes.getLoadedClassCount();
+        long baselineMetaspace = metaspace();
+
+        // Closed engines are kept reachable, so only close() can release their classes
+        List<JavaCardEngine> engines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            engines.add(cycle());
+        }
+        gc();
+
+        long loaded = classes.getLoadedClassCount();
+        long used = metaspace();
+        // Without unloading there would be at least one applet class per engine
+        assertTrue(loaded < baselineClasses + 1000, "Applet classes not unloaded: " + (loaded - baselineClasses));
+        if (ManagementFactory.getMemoryPoolMXBeans().stream().map(MemoryPoolMXBean::getName).anyMatch("Metaspace"::equals)) {
+            assertTrue(used < baselineMetaspace + 16 * 1024 * 1024, "Metaspace not released: " + (used - baselineMetaspace));
+        }
+        assertEquals(10_000, engines.size());
+    }
+
+    @Test
+    public void testLoadersCollectedAfterClose() throws Exception {
+        // Closed engines are kept reachable, so only close() can release their classes
+        List<JavaCardEngine> engines = new ArrayList<>();
+        List<WeakReference<ClassLoader>> loaders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Simulator sim = (Simulator) JavaCardEngine.create();
+            sim.installApplet(aid, HelloWorldApplet.class);
+            loaders.add(new WeakReference<>(sim.lookupApplet(aid).getInstanceClass().getClassLoader()));
+            selectAndClose(sim);
+            engines.add(sim);
+        }
+        for (WeakReference<ClassLoader> loader : loaders) {
+            gc(loader);
+            assertNull(loader.get());
+        }
+        assertEquals(3, engines.size());
+    }
+
+    @Test
+    public void testDeleteReleasesClasses() throws Exception {
+        Simulator sim = (Simulator) JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+        Class<?> klass = sim.lookupApplet(aid).getInstanceClass();
+        assertNotSame(HelloWorldApplet.class, klass);
+        WeakReference<ClassLoader> loader = new WeakReference<>(klass.getClassLoader());
+        klass = null;
+
+        sim.deleteApplet(aid);
+        gc(loader);
+        assertNull(loader.get());
+
+        // Engine still works, with fresh classes
+        sim.installApplet(aid, HelloWorldApplet.class);
+        selectAndClose(sim);
+    }
+
+    @Test
+    public void testClosed() {
+        JavaCardEngine sim = JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+        sim.close();
+        sim.close();
+        assertThrows(IllegalStateException.class, sim::connect);
+        assertThrows(IllegalStateException.class, () -> sim.installApplet(aid, HelloWorldApplet.class));
+    }
+
+    @Test
+    public void testClosedDuringSession() throws Exception {
+        Simulator sim = (Simulator) JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+        WeakReference<ClassLoader> loader = new WeakReference<>(sim.lookupApplet(aid).getInstanceClass().getClassLoader());
+        try (EngineSession session = sim.connect()) {
+            assertArrayEquals(Hex.decode("9000"), session.transmitCommand(AIDUtil.select(aid)));
+            sim.close();
+            assertThrows(IllegalStateException.class, () -> session.transmitCommand(AIDUtil.select(aid)));
+            // A command could still be in progress, so applets are kept until the session is closed
+            assertNotNull(sim.lookupApplet(aid));
+        }
+        gc(loader);
+        assertNull(loader.get());
+    }
+}
@@ -0,0 +1,129 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.EngineMXBean;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+import pro.javacard.engine.JavaCardEngineException;
+import pro.javacard.engine.LatencySnapshot;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineMetricsTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    static final byte[] HELLO = Hex.decode("0101000000");
+    static final byte[] SW = Hex.decode("0107000000");
+
+    static EngineMXBean proxy(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        return JMX.newMXBeanProxy(server, new ObjectName("pro.javacard.engine:type=Engine,name=" + name), EngineMXBean.class);
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("pro.javacard.engine:type=Engine,name=metrics");
+        try (JavaCardEngine sim = JavaCardEngine.create().withMBean("metrics")) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+                for (int i = 0; i < 10; i++) {
+                    session.transmitCommand(HELLO);
+                }
+                session.transmitCommand(SW);
+            }
+            EngineMXBean bean = proxy("metrics");
+            assertEquals(12, bean.getApduCount());
+            assertEquals(1, bean.getSelectCount());
+            assertEquals(1, bean.getSessionCount());
+            assertEquals(AIDUtil.select(aid).length + 10 * HELLO.length + SW.length, bean.getBytesIn());
+            assertTrue(bean.getLockWaitMaxNanos() <= bean.getLockWaitNanos());
+
+            Map<String, Long> sw = bean.getStatusWords();
+            assertEquals(Map.of("9000", 11L, "9B00", 1L), sw);
+
+            Map<String, LatencySnapshot> latency = bean.getLatency();
+            assertEquals(3, latency.size());
+            LatencySnapshot hello = latency.get("0101");
+            assertEquals(10, hello.getCount());
+            assertTrue(hello.getP50Nanos() <= hello.getP99Nanos());
+            assertTrue(hello.getP99Nanos() <= hello.getMaxNanos());
+            assertEquals(1, latency.get("00A4").getCount());
+
+            bean.reset();
+            assertEquals(0, bean.getApduCount());
+            assertTrue(bean.getLatency().isEmpty());
+            assertTrue(server.isRegistered(name));
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testDuplicateName() {
+        try (JavaCardEngine sim = JavaCardEngine.create().withMBean("duplicate")) {
+            JavaCardEngine other = JavaCardEngine.create();
+            assertThrows(JavaCardEngineException.class, () -> other.withMBean("duplicate"));
+            assertThrows(IllegalArgumentException.class, () -> other.withMBean("a,b"));
+            other.close();
+        }
+    }
+
+    @Test
+    public void testRenamed() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try (JavaCardEngine sim = JavaCardEngine.create().withMBean("first")) {
+            sim.installApplet(aid, HelloWorldApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+            }
+            // Same name again, then a new one, with the counters kept
+            sim.withMBean("first");
+            sim.withMBean("second");
+            assertFalse(server.isRegistered(new ObjectName("pro.javacard.engine:type=Engine,name=first")));
+            assertEquals(1, proxy("second").getApduCount());
+        }
+        assertFalse(server.isRegistered(new ObjectName("pro.javacard.engine:type=Engine,name=second")));
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v * 1000);
+        }
+        LatencySnapshot s = h.snapshot();
+        assertEquals(1000, s.getCount());
+        assertEquals(500_500, s.getMeanNanos());
+        assertEquals(1_000_000, s.getMaxNanos());
+        // Within the precision of a bucket
+        assertEquals(500_000, s.getP50Nanos(), 500_000 / 16.0);
+        assertEquals(990_000, s.getP99Nanos(), 990_000 / 16.0);
+        for (long v : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int i = LatencyHistogram.index(v);
+            assertTrue(v <= LatencyHistogram.highest(i), "upper bound of " + v);
+            assertTrue(i == 0 || v > LatencyHistogram.highest(i - 1), "lower bound of " + v);
+        }
+    }
+
+    // Recording does not add to the allocations of the dispatch path (see AllocationBudgetTest)
+    @Test
+    public void testNoAllocation() {
+        try (JavaCardEngine sim = JavaCardEngine.create().withMBean("allocation")) {
+            sim.installExposedApplet(aid, HelloWorldApplet.class);
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(aid));
+                AllocationBudget.assertWithin("exposed.hello", () -> session.transmitCommand(HELLO));
+            }
+        }
+    }
+}
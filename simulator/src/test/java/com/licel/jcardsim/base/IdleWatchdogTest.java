@@ -0,0 +1,67 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdleWatchdogTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+
+    @Test
+    public void testIdleSessionExpires() throws Exception {
+        JavaCardEngine sim = JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+
+        EngineSession session = sim.connectFor(Duration.ofMillis(100), "*");
+        assertArrayEquals(Hex.decode("9000"), session.transmitCommand(AIDUtil.select(aid)));
+        Thread.sleep(400);
+        assertTrue(session.isClosed());
+
+        // Lock was released, so a new session can be opened
+        try (EngineSession next = sim.connect()) {
+            assertFalse(next.isClosed());
+        }
+    }
+
+    @Test
+    public void testActiveSessionsStayOpen() throws Exception {
+        List<JavaCardEngine> engines = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            JavaCardEngine sim = JavaCardEngine.create();
+            sim.installApplet(aid, HelloWorldApplet.class);
+            // Warm up, so that first SELECT cost does not count towards idle time
+            try (EngineSession s = sim.connect()) {
+                s.transmitCommand(AIDUtil.select(aid));
+            }
+            engines.add(sim);
+        }
+        List<EngineSession> sessions = new ArrayList<>();
+        for (JavaCardEngine sim : engines) {
+            sessions.add(sim.connectFor(Duration.ofMillis(500), "*"));
+        }
+        // Keep traffic going for longer than the timeout
+        for (int round = 0; round < 10; round++) {
+            for (EngineSession s : sessions) {
+                assertArrayEquals(Hex.decode("9000"), s.transmitCommand(AIDUtil.select(aid)));
+            }
+            Thread.sleep(50);
+        }
+        for (EngineSession s : sessions) {
+            assertFalse(s.isClosed());
+        }
+        Thread.sleep(1000);
+        for (EngineSession s : sessions) {
+            assertTrue(s.isClosed());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.ReloadableApplet;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceMigratorTest {
+    static IsolatingClassLoader loader() {
+        IsolatingClassLoader loader = new IsolatingClassLoader(InstanceMigratorTest.class.getClassLoader());
+        loader.isolate(ReloadableApplet.class.getPackageName());
+        return loader;
+    }
+
+    @Test
+    public void testKeptArrayUpdatedOnCommit() throws Exception {
+        IsolatingClassLoader from = loader();
+        IsolatingClassLoader to = loader();
+        Constructor<?> c = from.loadClass(ReloadableApplet.class.getName() + "$Counter").getDeclaredConstructor();
+        c.setAccessible(true);
+        Object counter = c.newInstance();
+        Object marker = new Object();
+        InstanceMigrator migrator = new InstanceMigrator(from, to, (old, m) -> {
+            if (old == marker) {
+                throw new InstanceMigrator.IncompatibleLayoutException("marker");
+            }
+            return null;
+        });
+
+        // Failed migration leaves the array with old objects
+        Object[] failed = {counter, marker};
+        assertThrows(InstanceMigrator.IncompatibleLayoutException.class, () -> migrator.migrate(failed));
+        migrator.rollback();
+        assertSame(counter, failed[0]);
+
+        Object[] kept = {counter};
+        assertSame(kept, migrator.migrate(kept));
+        assertSame(counter, kept[0]);
+        migrator.commit();
+        assertSame(to, kept[0].getClass().getClassLoader());
+        assertSame(counter, failed[0]);
+    }
+}
@@ -0,0 +1,114 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.MemoryApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import javacard.framework.AID;
+import javacard.framework.ISO7816;
+import javacard.framework.JCSystem;
+import javacard.framework.SystemException;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+import pro.javacard.engine.MemoryFootprint;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryAccountingTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    static final AID other = AIDUtil.create("01020304050607080A");
+    // Arrays, the applet and its counter
+    static final long INSTALLED = 100 + 10 * 2 + 5 * MemoryAccounting.REFERENCE
+            + MemoryAccounting.size(MemoryApplet.class) + MemoryAccounting.size(MemoryApplet.Counter.class);
+
+    static byte[] command(int ins, int p1p2) {
+        return new byte[]{(byte) 0x80, (byte) ins, (byte) (p1p2 >> 8), (byte) p1p2};
+    }
+
+    static byte[] send(JavaCardEngine sim, byte[] command) {
+        try (EngineSession session = sim.connect()) {
+            session.transmitCommand(AIDUtil.select(aid));
+            return session.transmitCommand(command);
+        }
+    }
+
+    static short available(JavaCardEngine sim, byte type) {
+        return ByteUtil.getShort(send(sim, command(1, type << 8)), 0);
+    }
+
+    static MemoryFootprint.Usage usage(JavaCardEngine sim, AID aid) {
+        return sim.getMemoryFootprint().getUsages().stream().filter(u -> u.getContext().equals(AIDUtil.toString(aid))).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void testFootprint() {
+        try (JavaCardEngine sim = JavaCardEngine.create()) {
+            sim.installApplet(aid, MemoryApplet.class);
+            MemoryFootprint.Usage usage = usage(sim, aid);
+            assertEquals(INSTALLED, usage.getPersistent());
+            assertEquals(2, usage.getObjects());
+            assertEquals(3, usage.getArrays());
+            assertEquals(32, usage.getTransientDeselect());
+            assertEquals(16, usage.getTransientReset());
+
+            assertEquals(ISO7816.SW_NO_ERROR, ByteUtil.getSW(send(sim, command(2, 50))));
+            assertEquals(INSTALLED + 50, usage(sim, aid).getPersistent());
+            assertEquals(Short.MAX_VALUE, available(sim, JCSystem.MEMORY_TYPE_PERSISTENT));
+
+            // Separately for every instance
+            sim.installApplet(other, MemoryApplet.class);
+            assertEquals(INSTALLED, usage(sim, other).getPersistent());
+            assertEquals(2 * INSTALLED + 50, sim.getMemoryFootprint().getPersistent());
+
+            sim.deleteApplet(aid);
+            assertTrue(sim.getMemoryFootprint().getUsages().stream().noneMatch(u -> u.getContext().equals(AIDUtil.toString(aid))));
+            assertEquals(INSTALLED, sim.getMemoryFootprint().getPersistent());
+            // Transient totals agree
+            TransientMemory transients = ((Simulator) sim).transientMemory;
+            assertEquals(sim.getMemoryFootprint().getTransient(), transients.getSumCOR() + transients.getSumCOD());
+            assertEquals(16, transients.getSumCOR());
+
+            // Allocations after a delete go to the current context
+            try (EngineSession session = sim.connect()) {
+                session.transmitCommand(AIDUtil.select(other));
+                assertEquals(ISO7816.SW_NO_ERROR, ByteUtil.getSW(session.transmitCommand(command(3, 10))));
+            }
+            assertEquals(INSTALLED, usage(sim, other).getPersistent());
+            assertEquals(42, usage(sim, other).getTransientDeselect());
+        }
+    }
+
+    @Test
+    public void testWidths() {
+        assertEquals(1, MemoryAccounting.width(boolean.class));
+        assertEquals(2, MemoryAccounting.width(short.class));
+        assertEquals(8, MemoryAccounting.width(long.class));
+        assertEquals(MemoryAccounting.REFERENCE, MemoryAccounting.width(Object.class));
+        assertEquals(MemoryAccounting.width(byte.class), MemoryAccounting.width(Opcodes.T_BYTE));
+        assertEquals(MemoryAccounting.width(int.class), MemoryAccounting.width(Opcodes.T_INT));
+    }
+
+    @Test
+    public void testLimits() {
+        try (JavaCardEngine sim = JavaCardEngine.create().withMemoryLimits(1000, 100)) {
+            sim.installApplet(aid, MemoryApplet.class);
+            long persistent = sim.getMemoryFootprint().getPersistent();
+            assertEquals(1000 - persistent, available(sim, JCSystem.MEMORY_TYPE_PERSISTENT));
+            assertEquals(100 - 48, available(sim, JCSystem.MEMORY_TYPE_TRANSIENT_RESET));
+            assertEquals(100 - 48, available(sim, JCSystem.MEMORY_TYPE_TRANSIENT_DESELECT));
+
+            assertEquals(0x6F00 | SystemException.NO_RESOURCE, ByteUtil.getSW(send(sim, command(2, 1000))));
+            assertEquals(0x6F00 | SystemException.NO_TRANSIENT_SPACE, ByteUtil.getSW(send(sim, command(3, 60))));
+            // Failed allocations are not charged
+            assertEquals(persistent, sim.getMemoryFootprint().getPersistent());
+            assertEquals(48, sim.getMemoryFootprint().getTransient());
+
+            assertEquals(ISO7816.SW_NO_ERROR, ByteUtil.getSW(send(sim, command(2, 1000 - (int) persistent))));
+            assertEquals(0, available(sim, JCSystem.MEMORY_TYPE_PERSISTENT));
+            assertEquals(1000, sim.getMemoryFootprint().getPersistentLimit());
+            assertTrue(sim.getMemoryFootprint().format().contains("Persistent 1000 of 1000"));
+        }
+        assertThrows(IllegalArgumentException.class, () -> JavaCardEngine.create().withMemoryLimits(-1, 0));
+    }
+}
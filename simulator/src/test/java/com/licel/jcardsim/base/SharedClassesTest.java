@@ -0,0 +1,86 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.MultiInstanceApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedClassesTest {
+    static final AID aid1 = AIDUtil.create("010203040506070809");
+    static final AID aid2 = AIDUtil.create("010203040506070810");
+    static final byte[] GET_COUNT = Hex.decode("8002000000");
+
+    static byte[] count(JavaCardEngine sim, AID aid) {
+        try (EngineSession session = sim.connect()) {
+            assertArrayEquals(Hex.decode("9000"), tail(session.transmitCommand(AIDUtil.select(aid))));
+            return session.transmitCommand(GET_COUNT);
+        }
+    }
+
+    static byte[] tail(byte[] response) {
+        return new byte[]{response[response.length - 2], response[response.length - 1]};
+    }
+
+    @Test
+    public void testStaticsPerEngine() {
+        List<JavaCardEngine> engines = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            engines.add(JavaCardEngine.create().shared(true));
+        }
+        // Static instance counter is per engine
+        engines.get(0).installApplet(aid1, MultiInstanceApplet.class);
+        engines.get(0).installApplet(aid2, MultiInstanceApplet.class);
+        engines.get(1).installApplet(aid1, MultiInstanceApplet.class);
+        engines.get(2).installApplet(aid1, MultiInstanceApplet.class);
+
+        assertArrayEquals(Hex.decode("00029000"), count(engines.get(0), aid1));
+        assertArrayEquals(Hex.decode("00019000"), count(engines.get(1), aid1));
+        assertArrayEquals(Hex.decode("00019000"), count(engines.get(2), aid1));
+
+        engines.get(0).deleteApplet(aid2);
+        assertArrayEquals(Hex.decode("00019000"), count(engines.get(0), aid1));
+        assertArrayEquals(Hex.decode("00019000"), count(engines.get(1), aid1));
+    }
+
+    @Test
+    public void testClassLoadedOnce() throws Exception {
+        IsolatingClassLoader loader = IsolatingClassLoader.shared(getClass().getClassLoader());
+        assertSame(loader, IsolatingClassLoader.shared(getClass().getClassLoader()));
+        JavaCardEngine.create().shared(true).installApplet(aid1, MultiInstanceApplet.class);
+
+        Class<?> klass = loader.loadClass(MultiInstanceApplet.class.getName());
+        assertNotSame(MultiInstanceApplet.class, klass);
+        assertSame(loader, klass.getClassLoader());
+        // Holder class with the virtualized field
+        Class<?> holder = loader.loadClass(MultiInstanceApplet.class.getName() + StaticFieldVirtualizer.SUFFIX);
+        assertEquals(short.class, holder.getField("instanceCounter").getType());
+        // Constants stay in the class
+        assertThrows(NoSuchFieldException.class, () -> holder.getField("CLA"));
+    }
+
+    @Test
+    public void testParentNotPinned() throws Exception {
+        ClassLoader parent = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        IsolatingClassLoader loader = IsolatingClassLoader.shared(parent);
+        loader.isolate("com.licel.jcardsim.samples");
+        loader.isolate("com.licel.jcardsim.samples");
+        assertSame(loader, IsolatingClassLoader.shared(parent));
+
+        WeakReference<ClassLoader> ref = new WeakReference<>(parent);
+        parent = null;
+        loader = null;
+        EngineCloseTest.gc(ref);
+        assertNull(ref.get());
+    }
+}
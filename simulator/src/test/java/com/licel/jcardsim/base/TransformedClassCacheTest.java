@@ -0,0 +1,110 @@
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformedClassCacheTest {
+
+    @Test
+    public void testTransformedOncePerSource() throws Exception {
+        ClassLoader parent = getClass().getClassLoader();
+        String name = HelloWorldApplet.class.getName();
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger transforms = new AtomicInteger();
+        TransformedClassCache.Source source = n -> {
+            reads.incrementAndGet();
+            return new byte[]{1, 2, 3};
+        };
+        TransformedClassCache.Transformer transformer = b -> {
+            transforms.incrementAndGet();
+            return b.clone();
+        };
+
+        byte[] first = TransformedClassCache.get(parent, "test", name, source, transformer);
+        for (int i = 0; i < 100; i++) {
+            assertSame(first, TransformedClassCache.get(parent, "test", name, source, transformer));
+        }
+        assertEquals(1, reads.get());
+        assertEquals(1, transforms.get());
+
+        // Same bytes from a different source are read, but not transformed again
+        ClassLoader other = new ClassLoader(parent) {
+        };
+        assertSame(first, TransformedClassCache.get(other, "test", name, source, transformer));
+        assertEquals(2, reads.get());
+        assertEquals(1, transforms.get());
+
+        // Different variant is transformed separately
+        assertNotSame(first, TransformedClassCache.get(parent, "other", name, source, transformer));
+        assertEquals(2, transforms.get());
+    }
+
+    @Test
+    public void testDiskCache(@TempDir Path dir) throws Exception {
+        byte[] original = {4, 5, 6};
+        String hash = TransformedClassCache.sha256(original);
+        TransformedClassCache.setDirectory(dir);
+        try {
+            // Written on first transformation
+            byte[] transformed = TransformedClassCache.get(getClass().getClassLoader(), "disk", "a.A", n -> original, b -> new byte[]{7});
+            assertArrayEquals(new byte[]{7}, transformed);
+            assertArrayEquals(transformed, Files.readAllBytes(dir.resolve("disk").resolve("a.A-" + hash + ".class")));
+
+            // Read instead of transforming, as if by a new process
+            Files.createDirectories(dir.resolve("disk2"));
+            Files.write(dir.resolve("disk2").resolve("a.A-" + hash + ".class"), new byte[]{8});
+            assertArrayEquals(new byte[]{8}, TransformedClassCache.get(getClass().getClassLoader(), "disk2", "a.A", n -> original, b -> fail("Transformed")));
+        } finally {
+            TransformedClassCache.setDirectory(null);
+        }
+    }
+
+    @Test
+    public void testBySource(@TempDir Path dir) throws Exception {
+        ClassLoader parent = getClass().getClassLoader();
+        ClassLoader other = new ClassLoader(parent) {
+        };
+        AtomicInteger transforms = new AtomicInteger();
+        TransformedClassCache.Transformer transformer = b -> {
+            transforms.incrementAndGet();
+            return b.clone();
+        };
+        TransformedClassCache.setDirectory(dir);
+        try {
+            byte[] first = TransformedClassCache.getBySource(parent, "source", "a.A", n -> new byte[]{1}, transformer);
+            assertSame(first, TransformedClassCache.getBySource(parent, "source", "a.A", n -> new byte[]{1}, transformer));
+            assertEquals(1, transforms.get());
+            // Same bytes from a different source are transformed again, and nothing goes to disk
+            assertNotSame(first, TransformedClassCache.getBySource(other, "source", "a.A", n -> new byte[]{1}, transformer));
+            assertEquals(2, transforms.get());
+            assertFalse(Files.exists(dir.resolve("source")));
+        } finally {
+            TransformedClassCache.setDirectory(null);
+        }
+    }
+
+    @Test
+    public void testMissingClass() throws Exception {
+        assertNull(TransformedClassCache.get(getClass().getClassLoader(), "test", "no.such.Class", n -> null, b -> b));
+    }
+
+    @Test
+    public void testEnginesStillIsolated() throws Exception {
+        IsolatingClassLoader a = new IsolatingClassLoader(getClass().getClassLoader());
+        IsolatingClassLoader b = new IsolatingClassLoader(getClass().getClassLoader());
+        a.isolate(HelloWorldApplet.class.getPackageName());
+        b.isolate(HelloWorldApplet.class.getPackageName());
+        Class<?> ca = a.loadClass(HelloWorldApplet.class.getName());
+        Class<?> cb = b.loadClass(HelloWorldApplet.class.getName());
+        assertNotSame(ca, cb);
+        assertNotSame(HelloWorldApplet.class, ca);
+        assertEquals(ca.getName(), cb.getName());
+    }
+}
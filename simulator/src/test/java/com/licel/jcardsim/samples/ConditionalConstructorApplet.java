@@ -0,0 +1,73 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.samples;
+
+import javacard.framework.*;
+
+/**
+ * Sample applet for instrumentation tests, with objects created inside branches and with
+ * conditional constructor arguments.
+ *
+ * <p>Supported APDUs:</p>
+ *
+ * <ul>
+ *     <li><code>CLA=0x80 INS=1 P1=create P2=choice</code> create a value of 1 or 2 if P1 is set, return it</li>
+ *     <li><code>CLA=0x80 INS=2 P1=keep P2=choice</code> create a value of 3 or 4 unless P1 is set, return it</li>
+ * </ul>
+ */
+public class ConditionalConstructorApplet extends Applet {
+    private static final byte INS_CREATE = 1;
+    private static final byte INS_KEEP = 2;
+
+    public static class Value {
+        final short value;
+
+        Value(short value) {
+            this.value = value;
+        }
+    }
+
+    private Value value = new Value((short) 0);
+
+    public static void install(byte[] bArray, short bOffset, byte bLength) {
+        new ConditionalConstructorApplet().register();
+    }
+
+    @Override
+    public void process(APDU apdu) {
+        if (selectingApplet()) {
+            return;
+        }
+        byte[] buffer = apdu.getBuffer();
+        byte p1 = buffer[ISO7816.OFFSET_P1];
+        byte p2 = buffer[ISO7816.OFFSET_P2];
+        switch (buffer[ISO7816.OFFSET_INS]) {
+            case INS_CREATE:
+                if (p1 != 0) {
+                    value = new Value(p2 == 0 ? (short) 1 : (short) 2);
+                }
+                break;
+            case INS_KEEP:
+                // NEW at a branch target
+                value = p1 != 0 ? value : new Value(p2 == 0 ? (short) 3 : (short) 4);
+                break;
+            default:
+                ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+        }
+        Util.setShort(buffer, (short) 0, value.value);
+        apdu.setOutgoingAndSend((short) 0, (short) 2);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.samples;
+
+import javacard.framework.*;
+
+/**
+ * Sample applet for memory accounting tests.
+ *
+ * <p>Supported APDUs:</p>
+ *
+ * <ul>
+ *     <li><code>CLA=0x80 INS=1 P1=type</code> return available memory of type</li>
+ *     <li><code>CLA=0x80 INS=2 P1P2=length</code> allocate a persistent byte array</li>
+ *     <li><code>CLA=0x80 INS=3 P1P2=length</code> allocate a CLEAR_ON_DESELECT byte array</li>
+ * </ul>
+ *
+ * <p>Allocation failures are returned as 0x6F00 with the reason of the SystemException.</p>
+ */
+public class MemoryApplet extends Applet {
+    private static final byte INS_AVAILABLE = 1;
+    private static final byte INS_PERSISTENT = 2;
+    private static final byte INS_TRANSIENT = 3;
+
+    public static class Counter {
+        short value;
+    }
+
+    private final byte[] data = new byte[100];
+    private final short[] shorts = new short[10];
+    private final Object[] objects = new Object[5];
+    private final Counter counter = new Counter();
+    private final byte[] deselect;
+    private final short[] reset;
+    private Object kept;
+
+    protected MemoryApplet() {
+        deselect = JCSystem.makeTransientByteArray((short) 32, JCSystem.CLEAR_ON_DESELECT);
+        reset = JCSystem.makeTransientShortArray((short) 8, JCSystem.CLEAR_ON_RESET);
+        objects[0] = counter;
+        register();
+    }
+
+    public static void install(byte[] bArray, short bOffset, byte bLength) {
+        new MemoryApplet();
+    }
+
+    @Override
+    public void process(APDU apdu) {
+        if (selectingApplet()) {
+            return;
+        }
+        byte[] buffer = apdu.getBuffer();
+        short length = Util.getShort(buffer, ISO7816.OFFSET_P1);
+        try {
+            switch (buffer[ISO7816.OFFSET_INS]) {
+                case INS_AVAILABLE:
+                    Util.setShort(buffer, (short) 0, JCSystem.getAvailableMemory(buffer[ISO7816.OFFSET_P1]));
+                    apdu.setOutgoingAndSend((short) 0, (short) 2);
+                    break;
+                case INS_PERSISTENT:
+                    kept = new byte[length];
+                    break;
+                case INS_TRANSIENT:
+                    kept = JCSystem.makeTransientByteArray(length, JCSystem.CLEAR_ON_DESELECT);
+                    break;
+                default:
+                    ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+            }
+        } catch (SystemException e) {
+            ISOException.throwIt((short) (0x6F00 | e.getReason()));
+        }
+    }
+}
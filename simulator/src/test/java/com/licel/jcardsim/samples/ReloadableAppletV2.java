@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 Martin Paljak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.samples;
+
+import javacard.framework.*;
+
+/**
+ * Next version of {@link ReloadableApplet}, with the same layout but different code.
+ *
+ * <p>Supported APDUs:</p>
+ *
+ * <ul>
+ *     <li><code>CLA=0x80 INS=1</code> increment counter, return version and counter</li>
+ *     <li><code>CLA=0x80 INS=2</code> return number of installs and data</li>
+ * </ul>
+ */
+public class ReloadableAppletV2 extends Applet {
+    private static final byte INS_INCREMENT = 1;
+    private static final byte INS_GET_DATA = 2;
+    private static final byte VERSION = 2;
+
+    private static short installs = 0;
+
+    static class Counter {
+        short value;
+    }
+
+    private final Counter counter = new Counter();
+    private final byte[] data;
+
+    public static void install(byte[] bArray, short bOffset, byte bLength) {
+        new ReloadableAppletV2().register();
+    }
+
+    protected ReloadableAppletV2() {
+        installs++;
+        data = new byte[]{0x01, 0x02};
+    }
+
+    public void process(APDU apdu) {
+        if (selectingApplet()) {
+            return;
+        }
+        byte[] buffer = apdu.getBuffer();
+        switch (buffer[ISO7816.OFFSET_INS]) {
+            case INS_INCREMENT:
+                counter.value += 2;
+                buffer[0] = VERSION;
+                Util.setShort(buffer, (short) 1, counter.value);
+                apdu.setOutgoingAndSend((short) 0, (short) 3);
+                break;
+            case INS_GET_DATA:
+                Util.setShort(buffer, (short) 0, installs);
+                Util.arrayCopyNonAtomic(data, (short) 0, buffer, (short) 2, (short) data.length);
+                apdu.setOutgoingAndSend((short) 0, (short) (2 + data.length));
+                break;
+            default:
+                ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package pro.javacard.engine.adapters;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HTTPBatchServerTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+    HTTPBatchServer server;
+    HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JavaCardEngine sim = JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+        server = new HTTPBatchServer().withPort(0).withCard("card", sim);
+        server.start(executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+        executor.shutdownNow();
+    }
+
+    URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    public void testTextBatch() throws Exception {
+        String script = "# select\n00A4040009010203040506070809\n\n00 01 00 00 00\n";
+        HttpRequest request = HttpRequest.newBuilder(uri("/cards/card/batch")).POST(HttpRequest.BodyPublishers.ofString(script)).build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("X-Session-Wait-Nanos").isPresent());
+        String[] lines = response.body().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("9000\t"));
+        assertTrue(lines[1].split("\t")[0].endsWith("9000"));
+        assertTrue(lines[2].startsWith("# apdus=2 "));
+    }
+
+    @Test
+    public void testBinaryBatch() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        byte[][] commands = {Hex.decode("00A4040009010203040506070809"), Hex.decode("0002000000")};
+        for (byte[] c : commands) {
+            dos.writeInt(c.length);
+            dos.write(c);
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri("/cards/card/batch"))
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(bos.toByteArray())).build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response.body()));
+        for (int i = 0; i < commands.length; i++) {
+            byte[] r = new byte[in.readInt()];
+            in.readFully(r);
+            assertArrayEquals(Hex.decode("9000"), r);
+            assertTrue(in.readLong() > 0);
+        }
+        assertEquals(-1, in.readInt());
+        long wait = in.readLong();
+        long execution = in.readLong();
+        long total = in.readLong();
+        assertTrue(wait >= 0);
+        assertTrue(total >= execution);
+    }
+
+    @Test
+    public void testTextErrors() throws Exception {
+        String script = "# select\n00A4040009010203040506070809\n\nzz\n";
+        HttpRequest request = HttpRequest.newBuilder(uri("/cards/card/batch")).POST(HttpRequest.BodyPublishers.ofString(script)).build();
+        String[] lines = client.send(request, HttpResponse.BodyHandlers.ofString()).body().split("\n");
+        assertEquals("# error: invalid hex on line 4", lines[1]);
+    }
+
+    @Test
+    public void testBinaryError() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        // Lc longer than the data
+        byte[] command = Hex.decode("0001000002AA");
+        dos.writeInt(command.length);
+        dos.write(command);
+        HttpRequest request = HttpRequest.newBuilder(uri("/cards/card/batch"))
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(bos.toByteArray())).build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response.body()));
+        assertEquals(HTTPBatchServer.ERROR, in.readInt());
+        byte[] message = new byte[in.readInt()];
+        in.readFully(message);
+        assertFalse(new String(message, StandardCharsets.UTF_8).isEmpty());
+        assertEquals(HTTPBatchServer.END, in.readInt());
+        in.readLong();
+        assertEquals(0, in.readLong());
+        in.readLong();
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testUnknownCard() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/cards/nope/batch")).POST(HttpRequest.BodyPublishers.ofString("00A4040000")).build();
+        assertEquals(404, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        request = HttpRequest.newBuilder(uri("/cards")).GET().build();
+        assertEquals("card\n", client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+}
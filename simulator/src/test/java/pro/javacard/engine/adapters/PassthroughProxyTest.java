@@ -0,0 +1,144 @@
+package pro.javacard.engine.adapters;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+import pro.javacard.engine.trace.TraceFile;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassthroughProxyTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+    // GET DATA for CPLC, answered by CountingSession like a card would
+    static final byte[] GET_DATA = Hex.decode("80CA9F7F00");
+    static final byte[] CPLC = Hex.decode("9F7F030102039000");
+
+    @Test
+    public void testRuleParsing() {
+        PassthroughProxy.CacheRule getData = PassthroughProxy.CacheRule.parse("80CA");
+        assertTrue(getData.matches(GET_DATA));
+        assertFalse(getData.matches(Hex.decode("80CB9F7F00")));
+
+        PassthroughProxy.CacheRule anyCla = PassthroughProxy.CacheRule.parse("00B00000/00FF0000");
+        assertTrue(anyCla.matches(Hex.decode("84B0123400")));
+        assertFalse(anyCla.matches(Hex.decode("84B2123400")));
+        assertFalse(anyCla.matches(Hex.decode("00B0")));
+
+        assertThrows(IllegalArgumentException.class, () -> PassthroughProxy.CacheRule.parse("00A4/FF"));
+    }
+
+    @Test
+    public void testRecordAndCache(@TempDir Path tmp) throws Exception {
+        JavaCardEngine sim = JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+
+        AtomicInteger upstreamCommands = new AtomicInteger();
+        Path trace = tmp.resolve("passthrough.trace");
+
+        PassthroughProxy proxy = new PassthroughProxy(() -> new CountingSession(sim.connect(), upstreamCommands))
+                .withCacheRule(PassthroughProxy.CacheRule.parse("80CA"))
+                .withRecording(trace);
+
+        byte[] select = Hex.decode("00A4040009010203040506070809");
+        try (EngineSession session = proxy.get()) {
+            assertArrayEquals(Hex.decode("9000"), session.transmitCommand(select));
+            assertArrayEquals(CPLC, session.transmitCommand(GET_DATA));
+            assertArrayEquals(CPLC, session.transmitCommand(GET_DATA));
+        }
+        proxy.close();
+
+        // Second GET DATA was served from cache
+        assertEquals(2, upstreamCommands.get());
+        assertEquals(1, proxy.getHits());
+        assertEquals(1, proxy.getMisses());
+
+        List<TraceFile.Exchange> recorded = TraceFile.read(trace);
+        assertEquals(3, recorded.size());
+        assertArrayEquals(select, recorded.get(0).getCommand());
+        assertArrayEquals(GET_DATA, recorded.get(1).getCommand());
+        assertTrue(recorded.get(2).getTimestamp() >= recorded.get(1).getTimestamp());
+
+        // A new proxy, seeded from the trace, answers GET DATA without going upstream
+        PassthroughProxy replay = new PassthroughProxy(() -> new CountingSession(sim.connect(), upstreamCommands))
+                .withCacheRule(PassthroughProxy.CacheRule.parse("80CA"));
+        assertEquals(2, replay.preload(trace));
+        try (EngineSession session = replay.get()) {
+            assertArrayEquals(CPLC, session.transmitCommand(GET_DATA));
+        }
+        assertEquals(2, upstreamCommands.get());
+    }
+
+    @Test
+    public void testErrorsNotCached() {
+        JavaCardEngine sim = JavaCardEngine.create();
+        sim.installApplet(aid, HelloWorldApplet.class);
+        AtomicInteger upstreamCommands = new AtomicInteger();
+        // Not answered by the applet
+        byte[] other = Hex.decode("80CA00FE00");
+
+        PassthroughProxy proxy = new PassthroughProxy(() -> new CountingSession(sim.connect(), upstreamCommands))
+                .withCacheRule(PassthroughProxy.CacheRule.parse("80CA"));
+        try (EngineSession session = proxy.get()) {
+            session.transmitCommand(AIDUtil.select(aid));
+            assertArrayEquals(Hex.decode("6D00"), session.transmitCommand(other));
+            assertArrayEquals(Hex.decode("6D00"), session.transmitCommand(other));
+        }
+        assertEquals(3, upstreamCommands.get());
+        assertEquals(0, proxy.getHits());
+
+        PassthroughProxy errors = new PassthroughProxy(() -> new CountingSession(sim.connect(), upstreamCommands))
+                .withCacheRule(PassthroughProxy.CacheRule.parse("80CA"))
+                .withCachedErrors(true);
+        try (EngineSession session = errors.get()) {
+            session.transmitCommand(AIDUtil.select(aid));
+            assertArrayEquals(Hex.decode("6D00"), session.transmitCommand(other));
+            assertArrayEquals(Hex.decode("6D00"), session.transmitCommand(other));
+        }
+        assertEquals(5, upstreamCommands.get());
+        assertEquals(1, errors.getHits());
+    }
+
+    static class CountingSession implements EngineSession {
+        final EngineSession session;
+        final AtomicInteger counter;
+
+        CountingSession(EngineSession session, AtomicInteger counter) {
+            this.session = session;
+            this.counter = counter;
+        }
+
+        @Override
+        public byte[] transmitCommand(byte[] commandAPDU) {
+            counter.incrementAndGet();
+            if (Arrays.equals(commandAPDU, GET_DATA)) {
+                return CPLC.clone();
+            }
+            return session.transmitCommand(commandAPDU);
+        }
+
+        @Override
+        public void close(boolean reset) {
+            session.close(reset);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return session.isClosed();
+        }
+
+        @Override
+        public String getProtocol() {
+            return session.getProtocol();
+        }
+    }
+}
@@ -104,6 +104,31 @@ public class GlobalPlatformTest {
             gp.deleteAID(jcaid, false);
         }
     }
+    @Test
+    public void globalPlatformDeletePackageTest() throws Exception {
+        JavaCardEngine sim = JavaCardEngine.create();
+
+        AID packageAID = AIDUtil.create("0102030405060708");
+        AID appletAID = AIDUtil.create("010203040506070809");
+        pro.javacard.capfile.AID pkgaid = new pro.javacard.capfile.AID(AIDUtil.bytes(packageAID));
+        pro.javacard.capfile.AID jcaid = new pro.javacard.capfile.AID(AIDUtil.bytes(appletAID));
+        sim.loadApplet(packageAID, appletAID, GlobalPlatformTestApplet.class);
+
+        try (EngineSession instance = sim.connect()) {
+            APDUBIBO bibo = SimulatorBIBO.wrap(instance);
+            GPSession gp = GPSession.discover(bibo);
+            gp.openSecureChannel(PlaintextKeys.defaultKey(), null, null, EnumSet.of(GPSession.APDUMode.ENC));
+            gp.installAndMakeSelectable(pkgaid, jcaid, jcaid, EnumSet.noneOf(GPRegistryEntry.Privilege.class), new byte[4]);
+            assertEquals(0x9000, bibo.transmit(new CommandAPDU(AIDUtil.select(appletAID))).getSW());
+
+            // Deleting the package with related objects removes the instance as well
+            gp = GPSession.connect(bibo, new pro.javacard.capfile.AID(AIDUtil.bytes(GlobalPlatformApplet.OPEN_AID)));
+            gp.openSecureChannel(PlaintextKeys.defaultKey(), null, null, EnumSet.of(GPSession.APDUMode.ENC));
+            gp.deleteAID(pkgaid, true);
+            assertEquals(ISO7816.SW_FILE_NOT_FOUND, bibo.transmit(new CommandAPDU(AIDUtil.select(appletAID))).getSW());
+        }
+    }
+
     public static class SimulatorBIBO implements BIBO {
         final EngineSession sim;
 
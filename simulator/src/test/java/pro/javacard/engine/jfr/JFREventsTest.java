@@ -0,0 +1,88 @@
+package pro.javacard.engine.jfr;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.security.MessageDigest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JFREventsTest {
+    static final AID aid = AIDUtil.create("010203040506070809");
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void testEvents() throws Exception {
+        Path file = tmp.resolve("engine.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"APDU", "AppletInstall", "AppletDelete", "Select", "Deselect", "Transaction", "Crypto"}) {
+                recording.enable("pro.javacard.engine." + name).withoutThreshold();
+            }
+            recording.start();
+
+            try (JavaCardEngine sim = JavaCardEngine.create()) {
+                sim.installApplet(aid, HelloWorldApplet.class);
+                try (EngineSession session = sim.connect()) {
+                    session.transmitCommand(AIDUtil.select(aid));
+                    session.transmitCommand(Hex.decode("0101000000"));
+                }
+                sim.deleteApplet(aid);
+            }
+
+            Simulator runtime = new Simulator();
+            runtime._makeCurrent();
+            try {
+                runtime.beginTransaction();
+                runtime.commitTransaction();
+                runtime.beginTransaction();
+                runtime.abortTransaction();
+                MessageDigest.getInstance(MessageDigest.ALG_SHA_256, false).doFinal(new byte[10], (short) 0, (short) 10, new byte[32], (short) 0);
+            } finally {
+                runtime._releaseCurrent();
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Map<String, List<RecordedEvent>> byName = events.stream().collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+
+        RecordedEvent hello = byName.get("pro.javacard.engine.APDU").stream()
+                .filter(e -> "01".equals(e.getString("ins"))).findFirst().orElseThrow();
+        assertEquals("9000", hello.getString("sw"));
+        assertEquals(AIDUtil.toString(aid), hello.getString("aid"));
+
+        RecordedEvent install = byName.get("pro.javacard.engine.AppletInstall").stream()
+                .filter(e -> AIDUtil.toString(aid).equals(e.getString("aid"))).findFirst().orElseThrow();
+        assertEquals(HelloWorldApplet.class.getName(), install.getClass("appletClass").getName());
+        assertFalse(install.getBoolean("exposed"));
+
+        assertTrue(byName.get("pro.javacard.engine.Select").stream().anyMatch(e -> e.getBoolean("success")));
+        assertEquals(1, byName.get("pro.javacard.engine.Deselect").size());
+        assertEquals(1, byName.get("pro.javacard.engine.AppletDelete").size());
+
+        List<String> outcomes = byName.get("pro.javacard.engine.Transaction").stream().map(e -> e.getString("outcome")).collect(Collectors.toList());
+        assertEquals(List.of(TransactionEvent.COMMIT, TransactionEvent.ABORT), outcomes);
+
+        RecordedEvent digest = byName.get("pro.javacard.engine.Crypto").get(0);
+        assertEquals("MessageDigest.doFinal", digest.getString("operation"));
+        assertEquals(MessageDigest.ALG_SHA_256, digest.getByte("algorithm"));
+        assertEquals(10, digest.getInt("length"));
+    }
+}
@@ -0,0 +1,111 @@
+package pro.javacard.engine.trace;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class APDUTraceTest {
+
+    static class CollectingSink implements TraceSink {
+        final List<byte[]> commands = new ArrayList<>();
+        final List<byte[]> responses = new ArrayList<>();
+        boolean closed;
+
+        @Override
+        public void write(long timestamp, byte[] command, int coff, int clen, byte[] response, int roff, int rlen) {
+            commands.add(Arrays.copyOfRange(command, coff, coff + clen));
+            responses.add(Arrays.copyOfRange(response, roff, roff + rlen));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        APDUTrace trace = new APDUTrace(sink, 1 << 16, 1);
+        int threads = 4;
+        int each = 5000;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final byte id = (byte) t;
+            Thread thread = new Thread(() -> {
+                byte[] cmd = new byte[]{id, 0, 0, 0};
+                byte[] resp = new byte[]{(byte) 0x90, 0x00};
+                for (int i = 0; i < each; i++) {
+                    trace.record(cmd, resp);
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread t : producers) {
+            t.join();
+        }
+        trace.close();
+        assertTrue(sink.closed);
+        assertEquals(0, trace.getDropped());
+        assertEquals(threads * each, sink.commands.size());
+        int[] perThread = new int[threads];
+        for (byte[] c : sink.commands) {
+            perThread[c[0]]++;
+        }
+        for (int count : perThread) {
+            assertEquals(each, count);
+        }
+    }
+
+    @Test
+    public void testSamplingAndOverflow() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        APDUTrace trace = new APDUTrace(sink, 16, 10);
+        for (int i = 0; i < 100; i++) {
+            trace.record(new byte[]{(byte) i}, new byte[]{(byte) 0x90, 0x00});
+            Thread.sleep(1);
+        }
+        trace.close();
+        assertEquals(10 - trace.getDropped(), sink.commands.size());
+        assertArrayEquals(new byte[]{0}, sink.commands.get(0));
+    }
+
+    @Test
+    public void testEngineTraceToFile(@TempDir Path tmp) throws IOException {
+        Path file = tmp.resolve("engine.trace");
+        APDUTrace trace = APDUTrace.toFile(file, 1);
+        AID aid = AIDUtil.create("010203040506070809");
+        JavaCardEngine sim = JavaCardEngine.create().withTrace(trace);
+        sim.installApplet(aid, HelloWorldApplet.class);
+
+        byte[] select = Hex.decode("00A4040009010203040506070809");
+        byte[] hello = Hex.decode("0001000000");
+        byte[] response;
+        try (EngineSession session = sim.connect()) {
+            session.transmitCommand(select);
+            response = session.transmitCommand(hello);
+        }
+        trace.close();
+
+        List<TraceFile.Exchange> recorded = TraceFile.read(file);
+        assertEquals(2, recorded.size());
+        assertArrayEquals(select, recorded.get(0).getCommand());
+        assertArrayEquals(Hex.decode("9000"), recorded.get(0).getResponse());
+        assertArrayEquals(hello, recorded.get(1).getCommand());
+        assertArrayEquals(response, recorded.get(1).getResponse());
+    }
+}
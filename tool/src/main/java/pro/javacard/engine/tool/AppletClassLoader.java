@@ -15,75 +15,194 @@
  */
 package pro.javacard.engine.tool;
 
+import org.bouncycastle.util.encoders.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+// Classes from .cap and .jar files are served directly from the archive, via an index of
+// resource name to zip entry. Directories are added to the URL classpath. Archived classes get the
+// archive as their code source and packages from its manifest, like with a jar on the URL classpath.
 class AppletClassLoader extends URLClassLoader {
     private static final Logger log = LoggerFactory.getLogger(AppletClassLoader.class);
 
+    static {
+        registerAsParallelCapable();
+    }
+
+    private record Archive(ZipFile zip, URL url, ProtectionDomain domain, Manifest manifest) {
+    }
+
+    private record Archived(Archive archive, ZipEntry entry) {
+    }
+
+    // Resource name (like "com/example/App.class") to archive entry
+    private final Map<String, Archived> index = new ConcurrentHashMap<>();
+    private final List<ZipFile> archives = new CopyOnWriteArrayList<>();
+
+    // Applet lists of .cap/.jar files, keyed by SHA-256 of the file
+    private Path cache;
+
     AppletClassLoader() {
         super(new URL[0], AppletClassLoader.class.getClassLoader());
     }
 
+    void setCache(Path dir) {
+        this.cache = dir;
+    }
+
     List<String> addApplet(Path file) throws IOException {
         if (Files.isDirectory(file)) {
             addURL(file.toUri().toURL());
             return locateApplets(file, this);
         }
-        Path tmp = Files.createTempDirectory("applet");
-        String name = file.getFileName().toString().toLowerCase();
+        // Add to index here, so that locateApplets would have access to loaded classes.
+        List<String> classes = addArchive(file);
+        if (cache == null) {
+            return locateApplets(classes);
+        }
 
-        try (FileSystem fs = FileSystems.newFileSystem(file, (ClassLoader) null)) {
-            Path src = name.endsWith(".cap") ?
-                    fs.getPath("APPLET-INF", "classes") :
-                    fs.getPath("/");
+        // <cache>/<hash>/applets.txt
+        Path entry = cache.resolve(sha256(file));
+        Path applets = entry.resolve("applets.txt");
+        if (Files.isRegularFile(applets)) {
+            log.debug("Using cached {} for {}", applets, file);
+            return Files.readAllLines(applets, StandardCharsets.UTF_8);
+        }
+        List<String> result = locateApplets(classes);
+        Files.createDirectories(entry);
+        Path tmp = Files.createTempFile(entry, "applets", ".tmp");
+        Files.write(tmp, result, StandardCharsets.UTF_8);
+        Files.move(tmp, applets, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return result;
+    }
 
-            if (Files.exists(src)) {
-                Files.walk(src)
-                        .filter(p -> p.toString().endsWith(".class"))
-                        .forEach(p -> copy(p, tmp.resolve(src.relativize(p).toString())));
-            } else {
-                throw new FileNotFoundException("APPLET-INF/classes is missing from " + file.getFileName());
+    // Returns the resource names of classes in the archive
+    private List<String> addArchive(Path file) throws IOException {
+        String name = String.valueOf(file.getFileName()).toLowerCase();
+        String prefix = name.endsWith(".cap") ? "APPLET-INF/classes/" : "";
+        ZipFile zip = new ZipFile(file.toFile());
+        Archive archive = archive(zip, file);
+        List<String> classes = new ArrayList<>();
+        for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+            ZipEntry e = entries.nextElement();
+            if (e.isDirectory() || !e.getName().startsWith(prefix)) {
+                continue;
+            }
+            String resource = e.getName().substring(prefix.length());
+            if (resource.isEmpty() || resource.startsWith("META-INF/")) {
+                continue;
+            }
+            // First one wins, like with a classpath
+            index.putIfAbsent(resource, new Archived(archive, e));
+            if (resource.endsWith(".class")) {
+                classes.add(resource);
             }
         }
-        // Add to classpath here, so that locateApplets would have access to loaded classes.
-        addURL(tmp.toUri().toURL());
-        log.trace("adding {}", tmp);
-        return locateApplets(tmp, this);
+        if (!prefix.isEmpty() && classes.isEmpty()) {
+            zip.close();
+            throw new FileNotFoundException("APPLET-INF/classes is missing from " + file.getFileName());
+        }
+        archives.add(zip);
+        log.trace("indexed {} classes from {}", classes.size(), file);
+        return classes;
     }
 
-    private void copy(Path from, Path to) {
+    private Archive archive(ZipFile zip, Path file) throws IOException {
+        URL url = file.toUri().toURL();
+        ProtectionDomain domain = new ProtectionDomain(new CodeSource(url, (CodeSigner[]) null), null, this, null);
+        ZipEntry entry = zip.getEntry(JarFile.MANIFEST_NAME);
+        Manifest manifest = null;
+        if (entry != null) {
+            try (InputStream in = zip.getInputStream(entry)) {
+                manifest = new Manifest(in);
+            } catch (IOException e) {
+                zip.close();
+                throw e;
+            }
+        }
+        return new Archive(zip, url, domain, manifest);
+    }
+
+    static String sha256(Path file) throws IOException {
         try {
-            Files.createDirectories(to.getParent());
-            Files.copy(from, to);
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Class files are checked in parallel on the common fork-join pool, with shared superclass verdicts
+    private List<String> locateApplets(List<String> classes) {
+        InstallableAppletChecker checker = new InstallableAppletChecker(this);
+        return classes.parallelStream()
+                .filter(resource -> checker.isValidApplet(read(index.get(resource))))
+                .map(AppletClassLoader::toClassName)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> locateApplets(Path src, ClassLoader cl) throws IOException {
+        InstallableAppletChecker checker = new InstallableAppletChecker(cl);
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(src)) {
+            files = walk.filter(p -> p.toString().endsWith(".class")).collect(Collectors.toList());
+        }
+        return files.parallelStream()
+                .filter(p -> checker.isValidApplet(read(p)))
+                .map(p -> toClassName(src.relativize(p).toString()))
+                .collect(Collectors.toList());
+    }
+
+    private static String toClassName(String resource) {
+        String cls = resource.replace(File.separatorChar, '/').replace("/", ".");
+        return cls.substring(0, cls.length() - 6); // bite off ".class"
+    }
+
+    private static byte[] read(Path file) {
+        try {
+            return Files.readAllBytes(file);
         } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            throw new UncheckedIOException("Error reading class file", e);
         }
     }
 
-    private static List<String> locateApplets(Path src, URLClassLoader cl) throws IOException {
-        List<String> applets = new ArrayList<>();
-        Files.walk(src)
-                .filter(p -> p.toString().endsWith(".class"))
-                .forEach(p -> {
-                    if (InstallableAppletChecker.isValidApplet(p, cl)) {
-                        String cls = src.relativize(p).toString().replace("/", ".");
-                        applets.add(cls.substring(0, cls.length() - 6)); // bite off ".class"
-                    }
-                });
-        return applets;
+    private static byte[] read(Archived archived) {
+        try (InputStream in = archived.archive().zip().getInputStream(archived.entry())) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading " + archived.entry().getName(), e);
+        }
     }
 
     @Override
@@ -91,4 +210,96 @@ class AppletClassLoader extends URLClassLoader {
         log.trace("loadClass {}", name);
         return super.loadClass(name);
     }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Archived archived = index.get(name.replace('.', '/') + ".class");
+        if (archived == null) {
+            return super.findClass(name);
+        }
+        try {
+            byte[] bytes = read(archived);
+            int dot = name.lastIndexOf('.');
+            if (dot > 0) {
+                definePackage(name.substring(0, dot), archived.archive());
+            }
+            return defineClass(name, bytes, 0, bytes.length, archived.archive().domain());
+        } catch (UncheckedIOException e) {
+            throw new ClassNotFoundException("Could not read " + name, e);
+        }
+    }
+
+    private void definePackage(String name, Archive archive) {
+        if (getDefinedPackage(name) != null) {
+            return;
+        }
+        try {
+            if (archive.manifest() != null) {
+                definePackage(name, archive.manifest(), archive.url());
+            } else {
+                definePackage(name, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            // Defined by a parallel load
+            if (getDefinedPackage(name) == null) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        Archived archived = index.get(name);
+        if (archived == null) {
+            return super.findResource(name);
+        }
+        try {
+            return new URL("jar:" + archived.archive().url() + "!/" + archived.entry().getName());
+        } catch (MalformedURLException e) {
+            log.warn("Could not create URL for {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        URL url = index.containsKey(name) ? findResource(name) : null;
+        if (url == null) {
+            return super.findResources(name);
+        }
+        List<URL> urls = new ArrayList<>();
+        urls.add(url);
+        urls.addAll(Collections.list(super.findResources(name)));
+        return Collections.enumeration(urls);
+    }
+
+    // Bytes of archived resources are read straight from the zip, without going through jar: URL-s
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        Archived archived = index.get(name);
+        if (archived != null) {
+            // Parent first, like with the rest of the classpath
+            InputStream in = getParent().getResourceAsStream(name);
+            if (in != null) {
+                return in;
+            }
+            try {
+                return new ByteArrayInputStream(read(archived));
+            } catch (UncheckedIOException e) {
+                log.warn("Could not read {}: {}", name, e.getMessage());
+                return null;
+            }
+        }
+        return super.getResourceAsStream(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ZipFile zip : archives) {
+            zip.close();
+        }
+        archives.clear();
+        index.clear();
+        super.close();
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 Martin Paljak <martin@martinpaljak.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Watches classes directories and reloads applets of the engines when .class files change. A build
+// writes many files, so reload happens once the directory has been quiet for a moment.
+final class AppletWatcher implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(AppletWatcher.class);
+    static final long QUIET_MS = 300;
+
+    private final WatchService watcher;
+    private final List<JavaCardEngine> engines;
+
+    AppletWatcher(List<Path> directories, List<JavaCardEngine> engines) throws IOException {
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.engines = List.copyOf(engines);
+        for (Path dir : directories) {
+            register(dir);
+        }
+    }
+
+    // Registers the directory and its subdirectories
+    private void register(Path dir) throws IOException {
+        try (Stream<Path> tree = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) tree.filter(Files::isDirectory)::iterator) {
+                p.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    // Returns true if any classes changed
+    private boolean drain(WatchKey key) throws IOException {
+        boolean changed = false;
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+                continue;
+            }
+            Path p = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(p)) {
+                // New package
+                register(p);
+                changed = true;
+            } else if (p.toString().endsWith(".class")) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean changed = drain(watcher.take());
+                // Wait for the build to finish
+                WatchKey more;
+                while ((more = watcher.poll(QUIET_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(more);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Stopped watching applet classes: " + e.getMessage());
+        } finally {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.debug("Could not close watcher: {}", e.getMessage());
+            }
+        }
+    }
+
+    void reload() {
+        long start = System.nanoTime();
+        for (JavaCardEngine engine : engines) {
+            try {
+                engine.reloadApplets();
+            } catch (RuntimeException e) {
+                System.err.println("Could not reload applets: " + e.getMessage());
+            }
+        }
+        System.err.printf("Reloaded applet classes in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
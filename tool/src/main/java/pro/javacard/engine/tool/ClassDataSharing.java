@@ -0,0 +1,224 @@
+/*
+ * Copyright 2025 Martin Paljak <martin@martinpaljak.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.tool;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.framework.Applet;
+import pro.javacard.capfile.CAPFile;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+import pro.javacard.engine.adapters.JCSDKServer;
+import pro.javacard.engine.adapters.VSmartCardClient;
+import pro.javacard.engine.tool.training.TrainingApplet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.Collectors;
+
+// AppCDS support: most of the startup time of the tool goes to loading and verifying classes of the
+// engine and its dependencies. --train runs a representative workload in a child JVM, which dumps the
+// loaded classes into a dynamic CDS archive on exit. When the archive is found next to the jar, the
+// tool re-launches itself with it. JVM options of the re-launched tool come from JDK_JAVA_OPTIONS,
+// options on the command line are not passed on. To skip the extra JVM, start with the archive:
+// java -XX:SharedArchiveFile=<archive> -Dpro.javacard.engine.cds=false -jar jcard.jar
+final class ClassDataSharing {
+    // Set to "false" to disable re-launching (also set for the re-launched and training JVM-s)
+    static final String PROPERTY = "pro.javacard.engine.cds";
+    // Read by the java launcher of the child as well
+    static final String OPTIONS = "JDK_JAVA_OPTIONS";
+
+    static final byte[] CRYPTO_APDU = {(byte) 0x80, TrainingApplet.INS_CRYPTO, 0x00, 0x00};
+
+    private ClassDataSharing() {
+    }
+
+    // The jar of the tool, empty if not running from a jar
+    static Optional<Path> jar() {
+        CodeSource source = ClassDataSharing.class.getProtectionDomain().getCodeSource();
+        String classpath = System.getProperty("java.class.path");
+        if (source == null || source.getLocation() == null || classpath == null) {
+            return Optional.empty();
+        }
+        try {
+            Path p = Paths.get(source.getLocation().toURI());
+            return Files.isRegularFile(p) && p.equals(Paths.get(classpath).toAbsolutePath()) ? Optional.of(p) : Optional.empty();
+        } catch (URISyntaxException | InvalidPathException | SecurityException e) {
+            return Optional.empty();
+        }
+    }
+
+    // An archive is only usable with the exact same JVM, so the default name includes the version
+    static Path defaultArchive(Path jar) {
+        String name = String.valueOf(jar.getFileName()).replaceFirst("\\.jar$", "");
+        return jar.resolveSibling(name + "-" + System.getProperty("java.vm.version") + ".jsa");
+    }
+
+    static String java() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    // Re-launches the tool with the default archive, if there is one. Returns the exit code of the child.
+    static OptionalInt relaunch(String[] args) throws IOException, InterruptedException {
+        if ("false".equals(System.getProperty(PROPERTY))) {
+            return OptionalInt.empty();
+        }
+        Optional<Path> jar = jar();
+        if (jar.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        Path archive = defaultArchive(jar.get());
+        // The JVM would reject the archive of an updated jar anyway
+        if (!Files.isRegularFile(archive) || Files.getLastModifiedTime(archive).compareTo(Files.getLastModifiedTime(jar.get())) < 0) {
+            return OptionalInt.empty();
+        }
+        // Not asking the JVM for its arguments, as that would initialize the management classes
+        String options = System.getenv(OPTIONS);
+        // Already running with an explicitly given archive
+        if (options != null && options.contains("-XX:SharedArchiveFile=")) {
+            return OptionalInt.empty();
+        }
+        List<String> cmd = new ArrayList<>();
+        cmd.add(java());
+        cmd.add("-XX:SharedArchiveFile=" + archive);
+        cmd.add("-D" + PROPERTY + "=false");
+        cmd.add("-jar");
+        cmd.add(jar.get().toString());
+        cmd.addAll(Arrays.asList(args));
+        ProcessBuilder builder = new ProcessBuilder(cmd).inheritIO();
+        if (options != null) {
+            String filtered = withoutAgents(options);
+            if (!filtered.equals(options)) {
+                builder.environment().put(OPTIONS, filtered);
+            }
+        }
+        Process child = builder.start();
+        // If we get killed, so does the child
+        Thread hook = new Thread(child::destroy);
+        Runtime.getRuntime().addShutdownHook(hook);
+        int exit = child.waitFor();
+        Runtime.getRuntime().removeShutdownHook(hook);
+        return OptionalInt.of(exit);
+    }
+
+    // Agents, like a debugger listening on a port, are already attached to this JVM and would clash in the child
+    static String withoutAgents(String options) {
+        return Arrays.stream(options.trim().split("\\s+"))
+                .filter(o -> !(o.startsWith("-agentlib:") || o.startsWith("-agentpath:") || o.startsWith("-javaagent:") || o.startsWith("-Xrunjdwp") || o.equals("-Xdebug")))
+                .collect(Collectors.joining(" "));
+    }
+
+    // Runs the training workload in a child JVM that writes the archive on exit
+    static int train(Path archive, List<File> applets) throws IOException, InterruptedException {
+        Optional<Path> jar = jar();
+        if (jar.isEmpty()) {
+            throw new IllegalArgumentException("--train only works with the tool jar (java -jar)");
+        }
+        if (archive == null) {
+            archive = defaultArchive(jar.get());
+        }
+        List<String> cmd = new ArrayList<>();
+        cmd.add(java());
+        cmd.add("-XX:ArchiveClassesAtExit=" + archive);
+        cmd.add("-D" + PROPERTY + "=false");
+        cmd.add("-cp");
+        cmd.add(jar.get().toString());
+        cmd.add(ClassDataSharing.class.getName());
+        for (File f : applets) {
+            cmd.add(f.getAbsolutePath());
+        }
+        System.err.println("Training with " + (applets.isEmpty() ? "built-in applet" : applets));
+        int exit = new ProcessBuilder(cmd).inheritIO().start().waitFor();
+        if (exit != 0 || !Files.isRegularFile(archive)) {
+            System.err.println("Training failed");
+            return exit == 0 ? 1 : exit;
+        }
+        System.err.printf("Wrote %s (%d KB)%n", archive, Files.size(archive) / 1024);
+        // The default archive is picked up by re-launching, which costs one extra JVM start
+        if (archive.equals(defaultArchive(jar.get()))) {
+            System.err.println("Used automatically, or without re-launching with: java -XX:SharedArchiveFile=" + archive + " -D" + PROPERTY + "=false -jar " + jar.get());
+        } else {
+            System.err.println("Use with: java -XX:SharedArchiveFile=" + archive + " -D" + PROPERTY + "=false -jar " + jar.get());
+        }
+        return 0;
+    }
+
+    // Training workload: everything a typical run does up to serving the first APDU-s, plus some crypto
+    public static void main(String[] args) throws Exception {
+        String[] sample = {"--jcsdk", "--vsmartcard", "--trace-sample", "1", "--cards", "1"};
+        JCardTool.parser.parse(sample);
+
+        List<JavaCardEngine> engines = new ArrayList<>();
+        JavaCardEngine builtin = JavaCardEngine.create();
+        engines.add(builtin);
+        AID aid = AIDUtil.create("A000000000747261696E");
+        builtin.installApplet(aid, TrainingApplet.class);
+        exercise(builtin, aid, CRYPTO_APDU);
+
+        // User applets, with the same loader as a real run
+        for (String arg : args) {
+            Path p = Paths.get(arg);
+            Map<String, byte[]> defaultAID = new HashMap<>();
+            if (arg.endsWith(".cap")) {
+                CAPFile cap = CAPFile.fromFile(p);
+                cap.getApplets().forEach((k, v) -> defaultAID.put(v, k.getBytes()));
+            }
+            int n = 0;
+            for (String name : JCardTool.loader.addApplet(p)) {
+                @SuppressWarnings("unchecked")
+                Class<? extends Applet> klass = (Class<? extends Applet>) JCardTool.loader.loadClass(name);
+                AID appletAID = defaultAID.containsKey(name) ? AIDUtil.create(defaultAID.get(name)) : AIDUtil.create(String.format("A0000000007472616E%02X", n++));
+                JavaCardEngine sim = JavaCardEngine.create().withClassLoader(JCardTool.loader);
+                engines.add(sim);
+                try {
+                    sim.installApplet(appletAID, klass, new byte[0]);
+                    exercise(sim, appletAID, null);
+                } catch (RuntimeException e) {
+                    System.err.println("Could not train with " + name + ": " + e.getMessage());
+                }
+            }
+        }
+        // Adapter classes, without listening
+        new JCSDKServer(() -> builtin.connect("*"));
+        new VSmartCardClient(() -> builtin.connect("*"));
+        engines.forEach(JavaCardEngine::close);
+    }
+
+    static void exercise(JavaCardEngine sim, AID aid, byte[] command) {
+        try (EngineSession session = sim.connect()) {
+            session.transmitCommand(AIDUtil.select(aid));
+            if (command != null) {
+                byte[] response = session.transmitCommand(command);
+                if (response.length < 2 || response[response.length - 2] != (byte) 0x90) {
+                    throw new IllegalStateException("Training workload failed");
+                }
+            }
+        }
+    }
+}
@@ -20,36 +20,90 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Use ASM to filter out classes that extend javacard.framework.Applet
 // and have static install(byte[], short, byte) method
+// An instance memoizes the "extends Applet" verdict of every class in visited superclass chains,
+// so that common base classes are read only once, and can be shared by parallel checks.
 // TODO: bytebuddy
 public class InstallableAppletChecker {
+    private static final String APPLET = "javacard/framework/Applet";
+    private static final String OBJECT = "java/lang/Object";
+
+    private final ClassLoader cl;
+    // Internal class name -> extends Applet
+    private final Map<String, Boolean> verdicts = new ConcurrentHashMap<>();
+
+    public InstallableAppletChecker(ClassLoader cl) {
+        this.cl = cl;
+    }
 
     public static boolean isValidApplet(Path classFilePath, ClassLoader cl) {
         try {
-            ClassReader reader = new ClassReader(Files.readAllBytes(classFilePath));
-            AppletVisitor visitor = new AppletVisitor(cl);
-            reader.accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-            return visitor.isValid();
+            return isValidApplet(Files.readAllBytes(classFilePath), cl);
         } catch (IOException e) {
             throw new RuntimeException("Error reading class file", e);
         }
     }
 
+    public static boolean isValidApplet(byte[] classBytes, ClassLoader cl) {
+        return new InstallableAppletChecker(cl).isValidApplet(classBytes);
+    }
+
+    public boolean isValidApplet(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        AppletVisitor visitor = new AppletVisitor();
+        reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        boolean applet = extendsApplet(visitor.superName);
+        // Candidates can be superclasses of other candidates
+        verdicts.putIfAbsent(reader.getClassName(), applet);
+        return visitor.hasInstall && applet;
+    }
+
+    // Iterative, so that a deep hierarchy does not blow the stack
+    boolean extendsApplet(String name) {
+        Deque<String> chain = new ArrayDeque<>();
+        String current = name;
+        Boolean verdict = null;
+        while (verdict == null) {
+            if (current == null || OBJECT.equals(current)) {
+                verdict = false;
+            } else if (APPLET.equals(current)) {
+                verdict = true;
+            } else if ((verdict = verdicts.get(current)) == null) {
+                chain.push(current);
+                current = superName(current); // null if not readable
+            }
+        }
+        for (String c : chain) {
+            verdicts.put(c, verdict);
+        }
+        return verdict;
+    }
+
+    private String superName(String name) {
+        try (InputStream is = cl.getResourceAsStream(name + ".class")) {
+            if (is == null) return null;
+            return new ClassReader(is.readAllBytes()).getSuperName();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     private static class AppletVisitor extends ClassVisitor {
-        private final ClassLoader cl;
         private String superName;
         private boolean hasInstall;
 
-        AppletVisitor(ClassLoader cl) {
+        AppletVisitor() {
             super(Opcodes.ASM9);
-            this.cl = cl;
         }
 
         @Override
@@ -64,33 +118,5 @@ public class InstallableAppletChecker {
             }
             return null;
         }
-
-        boolean isValid() {
-            return hasInstall && extendsApplet();
-        }
-
-        private  static byte[] readAllBytes(InputStream inputStream) throws IOException {
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            int nRead;
-            byte[] data = new byte[1024];
-            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
-            }
-            return buffer.toByteArray();
-        }
-
-        private boolean extendsApplet() {
-            String current = superName;
-            while (current != null && !"java/lang/Object".equals(current)) {
-                if ("javacard/framework/Applet".equals(current)) return true;
-                try (InputStream is = cl.getResourceAsStream(current + ".class")) {
-                    if (is == null) return false;
-                    current = new ClassReader(readAllBytes(is)).getSuperName();
-                } catch (IOException e) {
-                    return false;
-                }
-            }
-            return false;
-        }
     }
-}
\ No newline at end of file
+}
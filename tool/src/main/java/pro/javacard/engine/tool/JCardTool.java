@@ -16,6 +16,7 @@
 package pro.javacard.engine.tool;
 
 import com.licel.jcardsim.base.InstallSpec;
+import com.licel.jcardsim.base.IsolatingClassLoader;
 import javacard.framework.Applet;
 import javacard.framework.SystemException;
 import joptsimple.OptionException;
@@ -27,20 +28,30 @@ import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 import org.jline.utils.NonBlockingReader;
 import pro.javacard.capfile.CAPFile;
+import pro.javacard.engine.AppletCoverage;
+import pro.javacard.engine.CostModel;
 import pro.javacard.engine.JavaCardEngine;
 import pro.javacard.engine.adapters.AbstractTCPAdapter;
+import pro.javacard.engine.adapters.HTTPBatchServer;
 import pro.javacard.engine.adapters.JCSDKClient;
 import pro.javacard.engine.adapters.JCSDKServer;
+import pro.javacard.engine.adapters.PassthroughProxy;
 import pro.javacard.engine.adapters.VSmartCardClient;
+import pro.javacard.engine.trace.APDUTrace;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class JCardTool {
     static OptionParser parser = new OptionParser();
@@ -63,9 +74,41 @@ public class JCardTool {
     static OptionSpec<String> OPT_JCSDK_HOST = parser.accepts("jcsdk-host", "JCSDK host").withRequiredArg().ofType(String.class).defaultsTo(JCSDKServer.DEFAULT_JCSDK_HOST);
     static OptionSpec<String> OPT_JCSDK_ATR = parser.accepts("jcsdk-atr", "JCSDK ATR").withRequiredArg().ofType(String.class).defaultsTo(AbstractTCPAdapter.DEFAULT_ATR_HEX);
     static OptionSpec<String> OPT_JCSDK_PROTOCOL = parser.accepts("jcsdk-protocol", "JCSDK protocol").withRequiredArg().ofType(String.class).defaultsTo("*");
+    static OptionSpec<Integer> OPT_JCSDK_PORT_BASE = parser.accepts("jcsdk-port-base", "JCSDK port of first card (with --cards)").withRequiredArg().ofType(Integer.class);
+
+    // Multiple cards
+    static OptionSpec<Integer> OPT_CARDS = parser.accepts("cards", "Number of cards to run").withRequiredArg().ofType(Integer.class).defaultsTo(1);
+    static OptionSpec<Void> OPT_SHARED_CLASSES = parser.accepts("shared-classes", "Load applet classes once for all cards, with per-card static fields");
+    static OptionSpec<Integer> OPT_PERSISTENT_MEMORY = parser.accepts("persistent-memory", "Persistent memory of cards, in bytes").withRequiredArg().ofType(Integer.class);
+    static OptionSpec<Integer> OPT_TRANSIENT_MEMORY = parser.accepts("transient-memory", "Transient memory of cards, in bytes").withRequiredArg().ofType(Integer.class);
+    static OptionSpec<Void> OPT_WATCH = parser.accepts("watch", "Reload applets, keeping their state, when classes in given directories change");
 
     // Passthrough
     static OptionSpec<String> OPT_PASSTHROUGH_HOST = parser.accepts("passthrough-host", "JCSDK simulator host").withRequiredArg().ofType(String.class);
+    static OptionSpec<File> OPT_PASSTHROUGH_RECORD = parser.accepts("passthrough-record", "Record passthrough exchanges to trace file").withRequiredArg().ofType(File.class);
+    static OptionSpec<String> OPT_PASSTHROUGH_CACHE = parser.accepts("passthrough-cache", "Cache responses for commands matching header[/mask] (hex, like 80CA), only for commands that do not change card state").withRequiredArg().ofType(String.class);
+    static OptionSpec<Void> OPT_PASSTHROUGH_CACHE_ERRORS = parser.accepts("passthrough-cache-errors", "Also cache responses with an error status word");
+    static OptionSpec<File> OPT_PASSTHROUGH_PRELOAD = parser.accepts("passthrough-preload", "Preload passthrough cache from trace file").withRequiredArg().ofType(File.class);
+
+    // HTTP batch endpoint
+    static OptionSpec<Integer> OPT_HTTP = parser.accepts("http", "Run HTTP batch endpoint on port").withOptionalArg().ofType(Integer.class).defaultsTo(HTTPBatchServer.DEFAULT_HTTP_PORT);
+    static OptionSpec<String> OPT_HTTP_HOST = parser.accepts("http-host", "HTTP batch endpoint host").withRequiredArg().ofType(String.class).defaultsTo(HTTPBatchServer.DEFAULT_HTTP_HOST);
+
+    // APDU trace
+    static OptionSpec<File> OPT_TRACE = parser.accepts("trace", "Write binary APDU trace to file (suffixed with card number for --cards)").withRequiredArg().ofType(File.class);
+    static OptionSpec<Integer> OPT_TRACE_SAMPLE = parser.accepts("trace-sample", "Trace every N-th APDU").withRequiredArg().ofType(Integer.class).defaultsTo(1);
+
+    // Monitoring
+    static OptionSpec<Integer> OPT_PROFILE = parser.accepts("profile", "Profile applet code, print the N hottest methods, API calls and blocks per APDU type on exit").withOptionalArg().ofType(Integer.class).defaultsTo(10);
+    static OptionSpec<String> OPT_COST_MODEL = parser.accepts("cost-model", "Estimate on-card durations of APDU-s with a cost model (" + String.join(", ", CostModel.BUILTIN) + " or a .properties file), print a report on exit").withRequiredArg().ofType(String.class);
+    static OptionSpec<File> OPT_COVERAGE = parser.accepts("coverage", "Record applet code coverage, write LCOV to file on exit (suffixed with card number for --cards)").withRequiredArg().ofType(File.class);
+    static OptionSpec<Void> OPT_MEMORY = parser.accepts("memory", "Print memory footprint of applets on exit");
+    static OptionSpec<Void> OPT_JMX = parser.accepts("jmx", "Expose APDU counters and latencies of cards as MBeans (pro.javacard.engine:type=Engine,name=cardN)");
+
+    // Startup cache
+    static OptionSpec<File> OPT_CACHE_DIR = parser.accepts("cache-dir", "Cache discovered applets and transformed classes in directory").withRequiredArg().ofType(File.class);
+    static OptionSpec<Void> OPT_TRAIN = parser.accepts("train", "Run a training workload with given applets and write a class data sharing archive next to jar, to be used automatically");
+    static OptionSpec<File> OPT_TRAIN_ARCHIVE = parser.accepts("train-archive", "Write the class data sharing archive to file instead").withRequiredArg().ofType(File.class);
 
     // Generic override.
     static OptionSpec<String> OPT_ATR = parser.accepts("atr", "ATR to use (hex)").withRequiredArg().ofType(String.class).defaultsTo(AbstractTCPAdapter.DEFAULT_ATR_HEX);
@@ -110,26 +153,68 @@ public class JCardTool {
                 return;
             }
 
+            if (options.has(OPT_TRAIN) || options.has(OPT_TRAIN_ARCHIVE)) {
+                Path archive = options.has(OPT_TRAIN_ARCHIVE) ? options.valueOf(OPT_TRAIN_ARCHIVE).toPath().toAbsolutePath() : null;
+                System.exit(ClassDataSharing.train(archive, options.valuesOf(toLoad)));
+            }
+
             if (options.nonOptionArguments().isEmpty() && !options.has(OPT_PASSTHROUGH_HOST)) {
                 System.err.println("Missing applets. Check --help");
                 System.exit(2);
             }
 
 
-            ExecutorService exec = Executors.newFixedThreadPool(3);
+            int cards = options.valueOf(OPT_CARDS);
+            if (cards < 1) {
+                throw new IllegalArgumentException("--cards must be positive");
+            }
+            if (cards > 1 && options.has(OPT_PASSTHROUGH_HOST)) {
+                throw new IllegalArgumentException("--cards can not be used with --passthrough-host");
+            }
+            if (options.has(OPT_HTTP) && options.has(OPT_PASSTHROUGH_HOST)) {
+                throw new IllegalArgumentException("--http can not be used with --passthrough-host");
+            }
+            if (options.has(OPT_WATCH) && (options.has(OPT_SHARED_CLASSES) || options.has(OPT_PASSTHROUGH_HOST))) {
+                throw new IllegalArgumentException("--watch can not be used with --shared-classes or --passthrough-host");
+            }
+
+            ExecutorService exec = adapterExecutor();
             List<AbstractTCPAdapter> adapters = new ArrayList<>();
+            List<APDUTrace> traces = new ArrayList<>();
+            PassthroughProxy proxy = null;
+            HTTPBatchServer http = null;
+            List<JavaCardEngine> engines = new ArrayList<>();
 
             if (options.has(OPT_PASSTHROUGH_HOST)) {
                 JCSDKClient upstream = new JCSDKClient(options.valueOf(OPT_PASSTHROUGH_HOST), options.valueOf(OPT_JCSDK_PORT));
-                AbstractTCPAdapter adapter = new VSmartCardClient(upstream);
+                proxy = new PassthroughProxy(upstream).withCachedErrors(options.has(OPT_PASSTHROUGH_CACHE_ERRORS));
+                for (String rule : options.valuesOf(OPT_PASSTHROUGH_CACHE)) {
+                    proxy = proxy.withCacheRule(PassthroughProxy.CacheRule.parse(rule));
+                }
+                if (options.has(OPT_PASSTHROUGH_PRELOAD)) {
+                    int n = proxy.preload(options.valueOf(OPT_PASSTHROUGH_PRELOAD).toPath());
+                    System.err.printf("Preloaded %d cached responses%n", n);
+                }
+                if (options.has(OPT_PASSTHROUGH_RECORD)) {
+                    proxy = proxy.withRecording(options.valueOf(OPT_PASSTHROUGH_RECORD).toPath());
+                }
+                AbstractTCPAdapter adapter = new VSmartCardClient(proxy);
+                if (options.has(OPT_TRACE)) {
+                    APDUTrace trace = trace(options, 0, 1);
+                    traces.add(trace);
+                    adapter = adapter.withTrace(trace);
+                }
                 adapter = configureVSmartCard(adapter, options);
                 adapters.add(adapter);
             } else {
                 Set<String> availableApplets = new TreeSet<>();
                 Map<String, byte[]> defaultAID = new HashMap<>();
 
-                // Set up simulator. Right now a sample thingy
-                JavaCardEngine sim = JavaCardEngine.create().withClassLoader(loader);
+                if (options.has(OPT_CACHE_DIR)) {
+                    Path dir = options.valueOf(OPT_CACHE_DIR).toPath();
+                    loader.setCache(dir.resolve("applets"));
+                    IsolatingClassLoader.setCacheDirectory(dir.resolve("classes"));
+                }
 
                 // Load non-options as applets & classes
                 for (File f : options.valuesOf(toLoad)) {
@@ -178,44 +263,127 @@ public class JCardTool {
                     System.exit(1);
                 }
 
-                for (InstallSpec s : spec) {
-                    sim.installApplet(s.getAID(), s.getAppletClass(), s.getParamters());
+                // Applet classes are resolved once, above. Each card is a separate engine with the same applets installed
+                boolean vsmartcard = options.has(OPT_VSMARTCARD) || options.has(OPT_VSMARTCARD_PORT) || options.has(OPT_VSMARTCARD_HOST) || options.has(OPT_VSMARTCARD_PROTOCOL) || options.has(OPT_VSMARTCARD_ATR);
+                boolean jcsdk = options.has(OPT_JCSDK) || options.has(OPT_JCSDK_PORT) || options.has(OPT_JCSDK_HOST) || options.has(OPT_JCSDK_PROTOCOL) || options.has(OPT_JCSDK_ATR) || options.has(OPT_JCSDK_PORT_BASE);
+                int jcsdkPortBase = options.has(OPT_JCSDK_PORT_BASE) ? options.valueOf(OPT_JCSDK_PORT_BASE) : options.valueOf(OPT_JCSDK_PORT);
+                if (options.has(OPT_HTTP)) {
+                    http = new HTTPBatchServer().withHost(options.valueOf(OPT_HTTP_HOST)).withPort(options.valueOf(OPT_HTTP));
                 }
 
-                if (options.has(OPT_VSMARTCARD) || options.has(OPT_VSMARTCARD_PORT) || options.has(OPT_VSMARTCARD_HOST) || options.has(OPT_VSMARTCARD_PROTOCOL) || options.has(OPT_VSMARTCARD_ATR)) {
-                    String protocol = options.has(OPT_VSMARTCARD_PROTOCOL) ? options.valueOf(OPT_VSMARTCARD_PROTOCOL) : options.valueOf(OPT_PROTOCOL);
-                    AbstractTCPAdapter adapter = new VSmartCardClient(() -> sim.connectFor(Duration.ofSeconds(1), protocol)); // TODO: parameter for timeout
-                    adapter = configureVSmartCard(adapter, options);
-                    adapters.add(adapter);
-                }
+                CostModel costModel = options.has(OPT_COST_MODEL) ? CostModel.load(options.valueOf(OPT_COST_MODEL)) : null;
+
+                for (int i = 0; i < cards; i++) {
+                    JavaCardEngine sim = JavaCardEngine.create().withClassLoader(loader).shared(options.has(OPT_SHARED_CLASSES));
+                    engines.add(sim);
+                    if (options.has(OPT_PROFILE)) {
+                        sim.profiled(true);
+                    }
+                    if (costModel != null) {
+                        sim.withCostModel(costModel);
+                    }
+                    if (options.has(OPT_COVERAGE)) {
+                        sim.covered(true);
+                    }
+                    if (options.has(OPT_PERSISTENT_MEMORY) || options.has(OPT_TRANSIENT_MEMORY)) {
+                        sim.withMemoryLimits(options.has(OPT_PERSISTENT_MEMORY) ? options.valueOf(OPT_PERSISTENT_MEMORY) : 0,
+                                options.has(OPT_TRANSIENT_MEMORY) ? options.valueOf(OPT_TRANSIENT_MEMORY) : 0);
+                    }
+                    if (options.has(OPT_TRACE)) {
+                        APDUTrace trace = trace(options, i, cards);
+                        traces.add(trace);
+                        sim.withTrace(trace);
+                    }
+                    if (options.has(OPT_JMX)) {
+                        sim.withMBean("card" + i);
+                    }
+                    if (http != null) {
+                        // Cards are named by their number: POST /cards/0/batch
+                        http.withCard(Integer.toString(i), sim);
+                    }
+                    for (InstallSpec s : spec) {
+                        sim.installApplet(s.getAID(), s.getAppletClass(), s.getParamters());
+                    }
 
-                if (options.has(OPT_JCSDK) || options.has(OPT_JCSDK_PORT) || options.has(OPT_JCSDK_HOST) || options.has(OPT_JCSDK_PROTOCOL) || options.has(OPT_JCSDK_ATR)) {
-                    String protocol = options.has(OPT_JCSDK_PROTOCOL) ? options.valueOf(OPT_JCSDK_PROTOCOL) : options.valueOf(OPT_PROTOCOL);
-                    AbstractTCPAdapter adapter = new JCSDKServer(() -> sim.connect(protocol));
-                    adapter = adapter.withHost(options.valueOf(OPT_JCSDK_HOST));
-                    adapter = adapter.withPort(options.valueOf(OPT_JCSDK_PORT));
-                    if (options.has(OPT_ATR)) {
-                        adapter = adapter.withATR(Hex.decode(options.valueOf(OPT_ATR)));
+                    if (vsmartcard) {
+                        String protocol = options.has(OPT_VSMARTCARD_PROTOCOL) ? options.valueOf(OPT_VSMARTCARD_PROTOCOL) : options.valueOf(OPT_PROTOCOL);
+                        AbstractTCPAdapter adapter = new VSmartCardClient(() -> sim.connectFor(Duration.ofSeconds(1), protocol)); // TODO: parameter for timeout
+                        adapter = configureVSmartCard(adapter, options);
+                        adapter = adapter.withPort(options.valueOf(OPT_VSMARTCARD_PORT) + i);
+                        adapters.add(adapter);
                     }
-                    if (options.has(OPT_JCSDK_ATR)) {
-                        adapter = adapter.withATR(Hex.decode(options.valueOf(OPT_JCSDK_ATR)));
+
+                    if (jcsdk) {
+                        String protocol = options.has(OPT_JCSDK_PROTOCOL) ? options.valueOf(OPT_JCSDK_PROTOCOL) : options.valueOf(OPT_PROTOCOL);
+                        AbstractTCPAdapter adapter = new JCSDKServer(() -> sim.connect(protocol));
+                        adapter = adapter.withHost(options.valueOf(OPT_JCSDK_HOST));
+                        adapter = adapter.withPort(jcsdkPortBase + i);
+                        if (options.has(OPT_ATR)) {
+                            adapter = adapter.withATR(Hex.decode(options.valueOf(OPT_ATR)));
+                        }
+                        if (options.has(OPT_JCSDK_ATR)) {
+                            adapter = adapter.withATR(Hex.decode(options.valueOf(OPT_JCSDK_ATR)));
+                        }
+                        adapters.add(adapter);
                     }
-                    adapters.add(adapter);
+                }
+                if (cards > 1) {
+                    System.err.printf("Running %d cards%n", cards);
                 }
             }
 
             // Trap ctrl-c and similar signals
+            final PassthroughProxy passthrough = proxy;
+            final HTTPBatchServer httpServer = http;
             Thread shutdownThread = new Thread(() -> {
                 System.err.println("Ctrl-C, quitting JCardEngine");
+                if (httpServer != null) {
+                    httpServer.stop();
+                }
                 exec.shutdownNow();
+                if (passthrough != null) {
+                    try {
+                        passthrough.close();
+                    } catch (IOException e) {
+                        System.err.println("Could not finish recording: " + e.getMessage());
+                    }
+                }
+                closeTraces(traces);
+                if (options.has(OPT_PROFILE)) {
+                    printProfiles(engines, options.valueOf(OPT_PROFILE));
+                }
+                if (options.has(OPT_COST_MODEL)) {
+                    printCosts(engines);
+                }
+                if (options.has(OPT_COVERAGE)) {
+                    writeCoverage(options.valueOf(OPT_COVERAGE).toPath(), engines);
+                }
+                if (options.has(OPT_MEMORY)) {
+                    printMemory(engines);
+                }
             });
 
-            if (adapters.isEmpty()) {
-                System.err.println("Use one of --vsmartcard or --jcsdk or --passthrough-host");
+            if (adapters.isEmpty() && http == null) {
+                System.err.println("Use one of --vsmartcard or --jcsdk or --http or --passthrough-host");
                 System.exit(2);
             }
 
             Runtime.getRuntime().addShutdownHook(shutdownThread);
+            if (options.has(OPT_WATCH)) {
+                // Only directories change in place
+                List<Path> dirs = options.valuesOf(toLoad).stream().map(File::toPath).filter(Files::isDirectory).collect(Collectors.toList());
+                if (dirs.isEmpty()) {
+                    throw new IllegalArgumentException("--watch needs a classes directory");
+                }
+                Thread watcher = new Thread(new AppletWatcher(dirs, engines), "applet-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+                System.err.println("Watching " + dirs + " for changes");
+            }
+            if (http != null) {
+                http.start(exec);
+                System.err.println("HTTP batch endpoint at http://" + http.getAddress().getHostString() + ":" + http.getAddress().getPort() + "/cards");
+            }
             if (options.has(OPT_CONTROL)) {
                 adapters.forEach(exec::submit);
                 boolean connected = true;
@@ -247,17 +415,42 @@ public class JCardTool {
                         }
                     }
                 }
+            } else if (adapters.isEmpty()) {
+                // Only HTTP, serve until ctrl-c
+                new CountDownLatch(1).await();
             } else {
                 // This blocks until all are done, unless ctrl-c is hit
                 exec.invokeAll(adapters);
             }
 
             Runtime.getRuntime().removeShutdownHook(shutdownThread);
+            if (http != null) {
+                http.stop();
+            }
             exec.shutdownNow();
             while (!exec.isTerminated()) {
                 if (exec.awaitTermination(1, TimeUnit.MINUTES))
                     break;
             }
+            closeTraces(traces);
+            if (options.has(OPT_PROFILE)) {
+                printProfiles(engines, options.valueOf(OPT_PROFILE));
+            }
+            if (options.has(OPT_COST_MODEL)) {
+                printCosts(engines);
+            }
+            if (options.has(OPT_COVERAGE)) {
+                writeCoverage(options.valueOf(OPT_COVERAGE).toPath(), engines);
+            }
+            if (options.has(OPT_MEMORY)) {
+                printMemory(engines);
+            }
+            if (proxy != null) {
+                proxy.close();
+                if (options.has(OPT_PASSTHROUGH_CACHE)) {
+                    System.err.printf("Passthrough cache: %d hits, %d misses%n", proxy.getHits(), proxy.getMisses());
+                }
+            }
             System.err.println("Thank you for using JCardEngine v" + version + "!");
         } catch (OptionException e) {
             System.err.println("Error: " + e.getMessage());
@@ -271,6 +464,73 @@ public class JCardTool {
         }
     }
 
+    static APDUTrace trace(OptionSet options, int card, int cards) throws IOException {
+        Path path = options.valueOf(OPT_TRACE).toPath();
+        if (cards > 1) {
+            path = path.resolveSibling(path.getFileName() + "." + card);
+        }
+        return APDUTrace.toFile(path, options.valueOf(OPT_TRACE_SAMPLE));
+    }
+
+    static void printProfiles(List<JavaCardEngine> engines, int top) {
+        for (int i = 0; i < engines.size(); i++) {
+            System.err.printf("%nProfile%s%n", engines.size() > 1 ? " of card " + i : "");
+            System.err.print(engines.get(i).getProfile().format(top));
+        }
+    }
+
+    static void printCosts(List<JavaCardEngine> engines) {
+        for (int i = 0; i < engines.size(); i++) {
+            System.err.printf("%nEstimated on-card time%s%n", engines.size() > 1 ? " of card " + i : "");
+            System.err.print(engines.get(i).getCostReport().format(20));
+        }
+    }
+
+    static void printMemory(List<JavaCardEngine> engines) {
+        for (int i = 0; i < engines.size(); i++) {
+            System.err.printf("%nMemory%s%n", engines.size() > 1 ? " of card " + i : "");
+            System.err.print(engines.get(i).getMemoryFootprint().format());
+        }
+    }
+
+    static void writeCoverage(Path path, List<JavaCardEngine> engines) {
+        for (int i = 0; i < engines.size(); i++) {
+            Path file = engines.size() > 1 ? path.resolveSibling(path.getFileName() + "." + i) : path;
+            AppletCoverage coverage = engines.get(i).getCoverage();
+            try {
+                Files.writeString(file, coverage.toLCOV());
+                System.err.printf("Coverage: %d of %d lines, written to %s%n", coverage.getCoveredLineCount(), coverage.getLineCount(), file);
+            } catch (IOException e) {
+                System.err.println("Could not write coverage: " + e.getMessage());
+            }
+        }
+    }
+
+    static void closeTraces(List<APDUTrace> traces) {
+        for (APDUTrace trace : traces) {
+            try {
+                trace.close();
+            } catch (IOException e) {
+                System.err.println("Could not finish trace: " + e.getMessage());
+            }
+        }
+    }
+
+    // Adapters spend their life blocked on sockets, so use virtual threads when available (Java 21+)
+    static ExecutorService adapterExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread t = new Thread(r, "adapter-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static Class<? extends Applet> requireExtendsApplet(Class<?> cls) {
         System.out.println("Validating " + cls.getName());
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2025 Martin Paljak <martin@martinpaljak.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.tool;
+
+import java.io.IOException;
+import java.util.OptionalInt;
+
+// Main class of the jar. Kept minimal, so that deciding to re-launch with the class data sharing
+// archive does not load (and verify) the classes the archive is meant to speed up.
+public final class Launcher {
+    private Launcher() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            OptionalInt relaunched = ClassDataSharing.relaunch(args);
+            if (relaunched.isPresent()) {
+                System.exit(relaunched.getAsInt());
+            }
+        } catch (IOException e) {
+            System.err.println("Could not use class data sharing archive: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(130);
+        }
+        JCardTool.main(args);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2025 Martin Paljak <martin@martinpaljak.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.javacard.engine.tool.training;
+
+import javacard.framework.*;
+import javacard.security.*;
+import javacardx.crypto.Cipher;
+
+// Built-in applet for the --train workload. Touches the commonly used parts of the crypto API,
+// so that their classes end up in the class data sharing archive.
+public final class TrainingApplet extends Applet {
+    public static final byte INS_CRYPTO = 0x01;
+
+    private final RandomData random;
+    private final MessageDigest digest;
+    private final AESKey aes;
+    private final Cipher cipher;
+    private final KeyPair ec;
+    private final Signature ecdsa;
+    private final KeyPair rsa;
+    private final Signature pkcs1;
+    private final byte[] scratch;
+
+    private TrainingApplet() {
+        random = RandomData.getInstance(RandomData.ALG_SECURE_RANDOM);
+        digest = MessageDigest.getInstance(MessageDigest.ALG_SHA_256, false);
+        aes = (AESKey) KeyBuilder.buildKey(KeyBuilder.TYPE_AES, KeyBuilder.LENGTH_AES_128, false);
+        cipher = Cipher.getInstance(Cipher.ALG_AES_BLOCK_128_CBC_NOPAD, false);
+        ec = new KeyPair(KeyPair.ALG_EC_FP, KeyBuilder.LENGTH_EC_FP_256);
+        ecdsa = Signature.getInstance(Signature.ALG_ECDSA_SHA_256, false);
+        rsa = new KeyPair(KeyPair.ALG_RSA, KeyBuilder.LENGTH_RSA_1024);
+        pkcs1 = Signature.getInstance(Signature.ALG_RSA_SHA_256_PKCS1, false);
+        scratch = JCSystem.makeTransientByteArray((short) 256, JCSystem.CLEAR_ON_DESELECT);
+    }
+
+    public static void install(byte[] bArray, short bOffset, byte bLength) {
+        new TrainingApplet().register();
+    }
+
+    @Override
+    public void process(APDU apdu) {
+        if (selectingApplet()) {
+            return;
+        }
+        byte[] buffer = apdu.getBuffer();
+        if (buffer[ISO7816.OFFSET_INS] != INS_CRYPTO) {
+            ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+        }
+        random.nextBytes(scratch, (short) 0, (short) 32);
+        digest.doFinal(scratch, (short) 0, (short) 32, scratch, (short) 32);
+
+        aes.setKey(scratch, (short) 0);
+        cipher.init(aes, Cipher.MODE_ENCRYPT);
+        cipher.doFinal(scratch, (short) 0, (short) 64, scratch, (short) 64);
+
+        ec.genKeyPair();
+        ecdsa.init(ec.getPrivate(), Signature.MODE_SIGN);
+        short len = ecdsa.sign(scratch, (short) 0, (short) 32, scratch, (short) 128);
+        ecdsa.init(ec.getPublic(), Signature.MODE_VERIFY);
+        if (!ecdsa.verify(scratch, (short) 0, (short) 32, scratch, (short) 128, len)) {
+            ISOException.throwIt(ISO7816.SW_DATA_INVALID);
+        }
+
+        rsa.genKeyPair();
+        pkcs1.init(rsa.getPrivate(), Signature.MODE_SIGN);
+        pkcs1.sign(scratch, (short) 0, (short) 32, scratch, (short) 128);
+    }
+}
@@ -0,0 +1,112 @@
+package pro.javacard.engine.tool;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.framework.Applet;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import pro.javacard.engine.EngineSession;
+import pro.javacard.engine.JavaCardEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppletClassLoaderTest {
+    static final String NAME = "fixture.HelloApplet";
+    static final AID aid = AIDUtil.create("010203040506070809");
+
+    @TempDir
+    Path dir;
+
+    // Applet that only registers itself, not visible to the parent loader
+    static byte[] applet() {
+        String name = NAME.replace('.', '/');
+        String applet = "javacard/framework/Applet";
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, applet, null);
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, applet, "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "install", "([BSB)V", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(Opcodes.NEW, name);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "()V", false);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, name, "register", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "process", "(Ljavacard/framework/APDU;)V", null, null);
+        mv.visitCode();
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    Path archive(String file, String prefix) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, "1.2.3");
+        Path path = dir.resolve(file);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(path))) {
+            zip.putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+            manifest.write(zip);
+            zip.putNextEntry(new ZipEntry(prefix + NAME.replace('.', '/') + ".class"));
+            zip.write(applet());
+            zip.closeEntry();
+        }
+        return path;
+    }
+
+    static void check(Path file) throws Exception {
+        try (AppletClassLoader loader = new AppletClassLoader()) {
+            assertEquals(List.of(NAME), loader.addApplet(file));
+            Class<?> cls = loader.loadClass(NAME);
+            assertSame(loader, cls.getClassLoader());
+            assertEquals(file.toUri().toURL(), cls.getProtectionDomain().getCodeSource().getLocation());
+            assertEquals("fixture", cls.getPackage().getName());
+            assertEquals("1.2.3", cls.getPackage().getImplementationVersion());
+
+            JavaCardEngine sim = JavaCardEngine.create().withClassLoader(loader);
+            sim.installApplet(aid, cls.asSubclass(Applet.class));
+            try (EngineSession session = sim.connect()) {
+                assertArrayEquals(Hex.decode("9000"), session.transmitCommand(AIDUtil.select(aid)));
+            } finally {
+                sim.close();
+            }
+        }
+    }
+
+    @Test
+    public void testJar() throws Exception {
+        check(archive("hello.jar", ""));
+    }
+
+    @Test
+    public void testCap() throws Exception {
+        check(archive("hello.cap", "APPLET-INF/classes/"));
+    }
+}
@@ -0,0 +1,16 @@
+package pro.javacard.engine.tool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ClassDataSharingTest {
+    @Test
+    public void testWithoutAgents() {
+        assertEquals("-Xmx1g -Dfoo=bar", ClassDataSharing.withoutAgents("-Xmx1g -agentlib:jdwp=transport=dt_socket,server=y,address=5005 -Dfoo=bar"));
+        assertEquals("-Xss2m", ClassDataSharing.withoutAgents(" -javaagent:/tmp/agent.jar -Xss2m -agentpath:/tmp/libagent.so"));
+        assertEquals("", ClassDataSharing.withoutAgents("-Xdebug -Xrunjdwp:transport=dt_socket"));
+        String plain = "-Xmx1g -Dfoo=bar";
+        assertEquals(plain, ClassDataSharing.withoutAgents(plain));
+    }
+}